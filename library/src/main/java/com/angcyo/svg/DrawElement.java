@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.pixplicity.sharp.Sharp;
+import com.pixplicity.sharp.SvgPathData;
 
 import java.util.ArrayList;
 import java.util.Stack;
@@ -64,6 +65,8 @@ public class DrawElement {
 
     /**
      * 元素的数据, 比如: 路径数据, 文本数据
+     * <p>
+     * polygon/polyline的数据在绘制时才从[pathData]生成
      */
     @Nullable
     public String data;
@@ -79,6 +82,13 @@ public class DrawElement {
      */
     public RectF pathBounds;
 
+    /**
+     * 路径的绘制命令, 只在[type == DrawElement.DrawType.PATH]时有值
+     * 可以直接计算bounds/长度, 不需要从[android.graphics.Path]中提取
+     */
+    @Nullable
+    public SvgPathData pathData;
+
     /**
      * 当前元素绘制时作用的矩阵
      */
@@ -158,4 +168,27 @@ public class DrawElement {
             }
         }
     }
+
+    /**
+     * 将折线的绘制命令转成svg path数据, 用于polygon/polyline
+     */
+    public void updatePointsData(@NonNull SvgPathData path) {
+        int verbCount = path.getVerbCount();
+        if (verbCount == 0) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder(path.getPointCount() * 8);
+        int point = 0;
+        for (int i = 0; i < verbCount; i++) {
+            byte verb = path.getVerb(i);
+            if (verb == SvgPathData.CLOSE) {
+                builder.append('Z');
+                continue;
+            }
+            builder.append(verb == SvgPathData.MOVE ? 'M' : 'L');
+            builder.append(path.getPoint(point)).append(',').append(path.getPoint(point + 1));
+            point += 2;
+        }
+        data = builder.toString();
+    }
 }
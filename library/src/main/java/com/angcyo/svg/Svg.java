@@ -15,8 +15,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.pixplicity.sharp.Sharp;
+import com.pixplicity.sharp.SharpBitmapPool;
 import com.pixplicity.sharp.SharpDrawable;
 import com.pixplicity.sharp.SharpPicture;
+import com.pixplicity.sharp.SvgDocument;
+import com.pixplicity.sharp.SvgPathData;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,11 +32,12 @@ public class Svg {
 
     /**
      * [path] 转成 [bitmap] 对象
+     * 位图取自[SharpBitmapPool], 不再使用时可以通过[SharpBitmapPool.release]归还
      */
     public static Bitmap pathToBitmap(Path path, Paint.Style drawStyle) {
         RectF pathRect = new RectF();
         path.computeBounds(pathRect, true);
-        Bitmap bitmap = Bitmap.createBitmap((int) Math.ceil(pathRect.width()), (int) Math.ceil(pathRect.height()), Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = SharpBitmapPool.obtain((int) Math.ceil(pathRect.width()), (int) Math.ceil(pathRect.height()), Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(bitmap);
         canvas.translate(-pathRect.left, -pathRect.top);
         Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -89,9 +93,17 @@ public class Svg {
      */
     @Nullable
     public static SharpDrawable loadSvgPathDrawable(Sharp sharp, final int color, Paint.Style drawStyle, Paint pathPaint, int viewWidth, int viewHeight) {
+        return loadSvgPathDrawable(sharp.getSvgDocument(), color, drawStyle, pathPaint, viewWidth, viewHeight);
+    }
+
+    /**
+     * 从已经解析好的[SvgDocument]中提取路径, 同一个[document]可以多次提取, 不需要重新解析xml
+     */
+    @Nullable
+    public static SharpDrawable loadSvgPathDrawable(SvgDocument document, final int color, Paint.Style drawStyle, Paint pathPaint, int viewWidth, int viewHeight) {
         final RectF pathBounds = new RectF(Float.MAX_VALUE, Float.MAX_VALUE, Float.MIN_VALUE, Float.MIN_VALUE);
         final List<Path> pathList = new ArrayList<>();
-        sharp.setOnElementListener(new SvgElementListener() {
+        SvgElementListener listener = new SvgElementListener() {
             @Override
             public boolean onCanvasDraw(Canvas canvas, DrawElement drawElement) {
                 if (drawElement == null || drawElement.element == null || drawElement.readingDefs) {
@@ -99,7 +111,16 @@ public class Svg {
                 }
                 //拦截
                 StylePath path = null;
-                if (drawElement.type == DrawElement.DrawType.PATH) {
+                RectF pathRect = null;
+                if (drawElement.type == DrawElement.DrawType.PATH && drawElement.pathData != null) {
+                    //直接使用路径命令, 变换和bounds都不经过Path
+                    SvgPathData pathData = drawElement.pathData;
+                    pathData.transform(canvas.getMatrix());
+                    pathRect = new RectF();
+                    pathData.computeBounds(pathRect, true);
+                    path = drawElement.createCustomPath(color);
+                    pathData.appendTo(path);
+                } else if (drawElement.type == DrawElement.DrawType.PATH) {
                     path = drawElement.createCustomPath(color);
                     path.addPath((Path) drawElement.element);
                 } else if (drawElement.type != DrawElement.DrawType.TEXT &&
@@ -128,10 +149,12 @@ public class Svg {
                 }
 
                 if (path != null) {
-                    Matrix matrix = canvas.getMatrix();
-                    path.transform(matrix);
-                    RectF pathRect = new RectF();
-                    path.computeBounds(pathRect, true);
+                    if (pathRect == null) {
+                        Matrix matrix = canvas.getMatrix();
+                        path.transform(matrix);
+                        pathRect = new RectF();
+                        path.computeBounds(pathRect, true);
+                    }
                     pathList.add(path);
 
                     pathBounds.left = min(pathBounds.left, pathRect.left);
@@ -142,9 +165,9 @@ public class Svg {
 
                 return true;
             }
-        });
-        //触发解析, 之后才有回调
-        SharpPicture sharpPicture = sharp.getSharpPicture();
+        };
+        //触发绘制, 之后才有回调
+        SharpPicture sharpPicture = document.getSharpPicture(listener);
         if (pathBounds.width() <= 0 || pathBounds.height() <= 0) {
             return null;
         }
@@ -0,0 +1,100 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a {@link ByteBuffer}, typically a memory-mapped file, without copying it. Supports
+ * mark/reset at any position.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer mBuffer;
+    //mark的位置, -1表示没有mark
+    private int mMark = -1;
+
+    ByteBufferInputStream(@NonNull ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (!mBuffer.hasRemaining()) {
+            return -1;
+        }
+        return mBuffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int remaining = mBuffer.remaining();
+        if (remaining == 0) {
+            return -1;
+        }
+        len = Math.min(len, remaining);
+        mBuffer.get(b, off, len);
+        return len;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, mBuffer.remaining());
+        mBuffer.position(mBuffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return mBuffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        mMark = mBuffer.position();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (mMark < 0) {
+            throw new IOException("Mark not set");
+        }
+        mBuffer.position(mMark);
+    }
+}
@@ -29,16 +29,11 @@ import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.DashPathEffect;
-import android.graphics.LinearGradient;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Path;
-import android.graphics.Picture;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
@@ -46,10 +41,10 @@ import android.graphics.Shader.TileMode;
 import android.graphics.Typeface;
 import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
 import android.os.Looper;
 import android.text.TextPaint;
 import android.text.TextUtils;
-import android.util.Base64;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageView;
@@ -66,19 +61,23 @@ import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Locale;
-import java.util.Scanner;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
 import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -97,6 +96,7 @@ import javax.xml.parsers.SAXParserFactory;
  * @see #loadString(String)
  * @see #loadInputStream(java.io.InputStream)
  * @see #loadPath(String)
+ * @see #loadCompiled(File)
  */
 public abstract class Sharp {
 
@@ -111,13 +111,24 @@ public abstract class Sharp {
     public @interface LogLevel {
     }
 
-    private static String sAssumedUnit;
-    private static HashMap<String, String> sTextDynamic = null;
+    //读取svg数据时的缓冲区大小
+    private static final int BUFFER_SIZE = 16 * 1024;
+    //读取gzip文件时的缓冲区大小, 减少大文件的read调用
+    private static final int GZIP_BUFFER_SIZE = 256 * 1024;
 
-    private final SvgHandler mSvgHandler;
+    //prepareTexts设置的文本, 由下一个创建的Sharp取走
+    private static Map<String, String> sPreparedTexts = null;
+
+    //当前线程正在解析的handler, 见checkAssumedUnits
+    private static final ThreadLocal<SvgHandler> sParsing = new ThreadLocal<>();
+
+    //替换的文本, 见withTexts
+    private Map<String, String> mTexts;
 
     private OnSvgElementListener mOnElementListener;
     private AssetManager mAssetManager;
+    //一个文档中所有图片解码后的像素数上限, 0表示不限制
+    private long mMaxImagePixels;
 
     /**
      * 单位
@@ -126,7 +137,11 @@ public abstract class Sharp {
         PERCENT("%"),
         PT("pt"),
         PX("px"),
-        MM("mm", 100);
+        MM("mm", 100),
+        CM("cm", 100),
+        IN("in", 100);
+
+        private static final Unit[] UNITS = values();
 
         public final String mAbbreviation;
         public final float mScaleFactor;
@@ -140,23 +155,73 @@ public abstract class Sharp {
             mScaleFactor = scaleFactor;
         }
 
-        public static Unit matches(String value) {
-            for (Unit unit : Unit.values()) {
-                if (value.endsWith(unit.mAbbreviation)) {
+        /**
+         * The unit spelled by the characters of value from start to end, without a substring.
+         */
+        @Nullable
+        static Unit match(String value, int start, int end) {
+            int length = end - start;
+            for (Unit unit : UNITS) {
+                if (unit.mAbbreviation.length() == length
+                        && value.regionMatches(start, unit.mAbbreviation, 0, length)) {
                     return unit;
                 }
             }
             return null;
         }
+
+        /**
+         * Converts a value in this unit, before {@link #mScaleFactor} is applied.
+         */
+        float convert(float value) {
+            switch (this) {
+                case PT:
+                    return value + 0.5f;
+                case PERCENT:
+                    return value / 100f;
+                case MM:
+                    return value * 96f / 25.4f;
+                case CM:
+                    return value * 96f / 2.54f;
+                case IN:
+                    return value * 96f;
+                default:
+                    return value;
+            }
+        }
     }
 
     public static void setLogLevel(@LogLevel int logLevel) {
         LOG_LEVEL = logLevel;
     }
 
+    /**
+     * Sets the texts to replace in the next Sharp that is created.
+     *
+     * @deprecated not safe when SVGs are loaded on several threads; use
+     * {@link #withTexts(Map)} instead.
+     */
+    @Deprecated
     @SuppressWarnings("unused")
     public static void prepareTexts(HashMap<String, String> texts) {
-        sTextDynamic = texts;
+        synchronized (Sharp.class) {
+            sPreparedTexts = texts;
+        }
+    }
+
+    /**
+     * Checks that the SVG being parsed on this thread uses only one unit.
+     *
+     * @throws IllegalStateException if the SVG already used a different unit
+     * @deprecated the unit check is part of every parse; outside of a parse this does nothing.
+     */
+    @Deprecated
+    @SuppressWarnings("unused")
+    public static void checkAssumedUnits(String unit) {
+        SvgHandler handler = sParsing.get();
+        if (handler != null) {
+            handler.checkAssumedUnits(unit);
+        }
     }
 
     /**
@@ -188,6 +253,11 @@ public abstract class Sharp {
     @SuppressWarnings("unused")
     public static Sharp loadString(final String svgData) {
         return new Sharp() {
+            @Override
+            String getCacheKey() {
+                return SharpCache.contentKey(svgData);
+            }
+
             @Override
             protected InputStream getInputStream() {
                 return new ByteArrayInputStream(svgData.getBytes());
@@ -210,17 +280,28 @@ public abstract class Sharp {
     public static Sharp loadResource(final Resources resources, final int resId) {
         return new Sharp() {
             @Override
-            protected InputStream getInputStream() {
-                InputStream inputStream = resources.openRawResource(resId);
-                if (Looper.myLooper() != Looper.getMainLooper()) {
-                    // Read the contents of the resource if we're not on the main thread
-                    inputStream = readInputStream(inputStream);
+            String getCompiledKey() {
+                return SharpCompiledStore.rawKey(resources, resId);
+            }
+
+            @Override
+            String getCacheKey() {
+                String compiledKey = getCompiledKey();
+                if (compiledKey != null) {
+                    return "sha1:" + compiledKey;
                 }
-                return inputStream;
+                // Raw resources may be qualified, e.g. for night mode
+                return "res:" + resId + ":" + resources.getConfiguration().hashCode();
             }
 
             @Override
-            protected void close(InputStream inputStream) {
+            protected InputStream getInputStream() {
+                return resources.openRawResource(resId);
+            }
+
+            @Override
+            protected void close(InputStream inputStream) throws IOException {
+                inputStream.close();
             }
         };
     }
@@ -236,13 +317,22 @@ public abstract class Sharp {
     public static Sharp loadAsset(final AssetManager assetMngr, final String svgPath) {
         return new Sharp() {
             @Override
-            protected InputStream getInputStream() throws IOException {
-                InputStream inputStream = assetMngr.open(svgPath);
-                if (Looper.myLooper() != Looper.getMainLooper()) {
-                    // Read the contents of the resource if we're not on the main thread
-                    inputStream = readInputStream(inputStream);
+            String getCompiledKey() {
+                return SharpCompiledStore.assetKey(svgPath);
+            }
+
+            @Override
+            String getCacheKey() {
+                String compiledKey = getCompiledKey();
+                if (compiledKey != null) {
+                    return "sha1:" + compiledKey;
                 }
-                return inputStream;
+                return "asset:" + svgPath;
+            }
+
+            @Override
+            protected InputStream getInputStream() throws IOException {
+                return assetMngr.open(svgPath);
             }
 
             @Override
@@ -263,6 +353,11 @@ public abstract class Sharp {
         return new Sharp() {
             private FileInputStream mFis;
 
+            @Override
+            String getCacheKey() {
+                return getFileCacheKey(imageFile);
+            }
+
             @Override
             protected InputStream getInputStream() throws FileNotFoundException {
                 mFis = new FileInputStream(imageFile);
@@ -277,6 +372,138 @@ public abstract class Sharp {
         };
     }
 
+    /**
+     * Parse SVG data from a file, optionally memory-mapping it.
+     * <p>
+     * A mapped file is parsed straight from the page cache, without read calls or copies, which
+     * speeds up loading large files. Gzipped files are read through a large buffer instead, as
+     * inflating copies the data anyway.
+     *
+     * @param imageFile    the SVG file, or a compiled document.
+     * @param memoryMapped whether to map the file; false is the same as {@link #loadFile(File)}.
+     * @return this Sharp object
+     */
+    @SuppressWarnings("unused")
+    public static Sharp loadFile(final File imageFile, boolean memoryMapped) {
+        if (!memoryMapped) {
+            return loadFile(imageFile);
+        }
+        return new Sharp() {
+            //由getCompiledData映射, getInputStream使用
+            private ByteBuffer mBuffer;
+
+            @Override
+            String getCacheKey() {
+                return getFileCacheKey(imageFile);
+            }
+
+            @Override
+            ByteBuffer getCompiledData() throws IOException {
+                mBuffer = mapFile(imageFile);
+                byte[] header = new byte[4];
+                int r = Math.min(header.length, mBuffer.remaining());
+                mBuffer.duplicate().get(header, 0, r);
+                return SvgDocumentReader.isCompiled(header, r) ? mBuffer : null;
+            }
+
+            @Override
+            protected InputStream getInputStream() throws IOException {
+                ByteBuffer buffer = mBuffer != null ? mBuffer : mapFile(imageFile);
+                mBuffer = null;
+                if (buffer.remaining() >= 2
+                        && ((buffer.get(0) & 0xff) | ((buffer.get(1) & 0xff) << 8)) == GZIPInputStream.GZIP_MAGIC) {
+                    return new BufferedInputStream(new FileInputStream(imageFile), GZIP_BUFFER_SIZE);
+                }
+                return new ByteBufferInputStream(buffer);
+            }
+
+            @Override
+            protected void close(InputStream inputStream) throws IOException {
+                inputStream.close();
+            }
+        };
+    }
+
+    /**
+     * Load a document compiled with {@link SvgDocument#writeTo(java.io.OutputStream)}.
+     *
+     * @param compiledData the compiled document.
+     * @return this Sharp object
+     */
+    @SuppressWarnings("unused")
+    public static Sharp loadCompiled(final byte[] compiledData) {
+        return new Sharp() {
+            @Override
+            ByteBuffer getCompiledData() {
+                return ByteBuffer.wrap(compiledData);
+            }
+
+            @Override
+            protected InputStream getInputStream() {
+                return new ByteArrayInputStream(compiledData);
+            }
+
+            @Override
+            protected void close(InputStream inputStream) {
+            }
+        };
+    }
+
+    /**
+     * Load a compiled document from a buffer, starting at its current position. The buffer's
+     * position is not changed.
+     *
+     * @param compiledData the compiled document, e.g. a memory-mapped file.
+     * @return this Sharp object
+     */
+    @SuppressWarnings("unused")
+    public static Sharp loadCompiled(final ByteBuffer compiledData) {
+        return new Sharp() {
+            @Override
+            ByteBuffer getCompiledData() {
+                return compiledData.duplicate();
+            }
+
+            @Override
+            protected InputStream getInputStream() {
+                ByteBuffer buffer = compiledData.duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            protected void close(InputStream inputStream) {
+            }
+        };
+    }
+
+    /**
+     * Load a compiled document from a file. The file is memory-mapped rather than read.
+     *
+     * @param compiledFile the file written by {@link SvgDocument#writeTo(java.io.OutputStream)}.
+     * @return this Sharp object
+     */
+    @SuppressWarnings("unused")
+    public static Sharp loadCompiled(final File compiledFile) {
+        return new Sharp() {
+            @Override
+            ByteBuffer getCompiledData() throws IOException {
+                return mapFile(compiledFile);
+            }
+
+            @Override
+            protected InputStream getInputStream() throws FileNotFoundException {
+                return new FileInputStream(compiledFile);
+            }
+
+            @Override
+            protected void close(InputStream inputStream) throws IOException {
+                inputStream.close();
+            }
+        };
+    }
+
     /**
      * Parses a single SVG path and returns it as a <code>android.graphics.Path</code> object.
      * An example path is <code>M250,150L150,350L350,350Z</code>, which draws a triangle.
@@ -289,42 +516,83 @@ public abstract class Sharp {
     }
 
     @NonNull
-    private static InputStream readInputStream(InputStream inputStream) {
-        StringBuilder svgData = new StringBuilder();
-        Scanner scanner = new Scanner(inputStream);
-        String lineSeparator = System.getProperty("line.separator");
-        // Try-with-resources is only for API level 19 and up
-        //noinspection TryFinallyCanBeTryWithResources
+    private static byte[] readBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int r;
+        while ((r = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, r);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Maps a file read-only. The mapping stays valid after the channel is closed.
+     */
+    @NonNull
+    static ByteBuffer mapFile(@NonNull File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
         try {
-            while (scanner.hasNextLine()) {
-                svgData.append(scanner.nextLine()).append(lineSeparator);
-            }
+            FileChannel channel = fis.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         } finally {
-            scanner.close();
+            fis.close();
         }
-        inputStream = new ByteArrayInputStream(svgData.toString().getBytes());
-        return inputStream;
     }
 
-    public static void checkAssumedUnits(String unit) {
-        if (sAssumedUnit == null) {
-            sAssumedUnit = unit;
-        }
-        if (!sAssumedUnit.equals(unit)) {
-            throw new IllegalStateException("Mixing units; SVG contains both " + sAssumedUnit + " and " + unit);
+    @NonNull
+    private static String getFileCacheKey(@NonNull File file) {
+        return "file:" + file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    /**
+     * Buffers the stream unless it already supports mark/reset, which is needed to recognize
+     * compiled and gzipped data. The data is streamed to the parser, never copied as a whole.
+     */
+    @NonNull
+    private static InputStream bufferInputStream(@NonNull InputStream inputStream) {
+        if (inputStream.markSupported()) {
+            return inputStream;
         }
+        return new BufferedInputStream(inputStream, BUFFER_SIZE);
     }
 
     private Sharp() {
         //Log.d(TAG, "Parsing SVG...");
-        sAssumedUnit = null;
-        mSvgHandler = new SvgHandler(this);
+        synchronized (Sharp.class) {
+            mTexts = sPreparedTexts;
+            sPreparedTexts = null;
+        }
     }
 
     private AssetManager getAssetManager() {
         return mAssetManager;
     }
 
+    /**
+     * Replaces texts while parsing: the content of every <code>&lt;text&gt;</code> and
+     * <code>&lt;tspan&gt;</code> element that equals a key is replaced by its value. Documents
+     * parsed with texts are neither cached nor compiled.
+     */
+    @SuppressWarnings("unused")
+    public Sharp withTexts(@Nullable Map<String, String> texts) {
+        mTexts = texts;
+        return this;
+    }
+
+    /**
+     * Limits the pixels of all <code>&lt;image&gt;</code> elements of the document together.
+     * Images are decoded in document order, each downsampled further as needed to fit in what
+     * is left; images that do not fit at all are skipped.
+     *
+     * @param maxPixels the most pixels, 0 for no limit
+     */
+    @SuppressWarnings("unused")
+    public Sharp withMaxImagePixels(long maxPixels) {
+        mMaxImagePixels = Math.max(maxPixels, 0);
+        return this;
+    }
+
     @SuppressWarnings("unused")
     public Sharp setOnElementListener(OnSvgElementListener onElementListener) {
         mOnElementListener = onElementListener;
@@ -333,6 +601,30 @@ public abstract class Sharp {
 
     protected abstract InputStream getInputStream() throws IOException;
 
+    /**
+     * 已编译的文档数据, 非null时直接加载, 不再解析xml
+     */
+    @Nullable
+    ByteBuffer getCompiledData() throws IOException {
+        return null;
+    }
+
+    /**
+     * 在{@link SharpCache}中的key, null表示不缓存
+     */
+    @Nullable
+    String getCacheKey() {
+        return null;
+    }
+
+    /**
+     * 在{@link SharpCompiledStore}中的key, null表示不存储
+     */
+    @Nullable
+    String getCompiledKey() {
+        return null;
+    }
+
     protected abstract void close(InputStream inputStream) throws IOException;
 
     @SuppressWarnings("unused")
@@ -410,7 +702,11 @@ public abstract class Sharp {
 
     /**
      * Processes the SVG and provides the resulting drawable. Runs in a background thread.
+     *
+     * @deprecated Use {@link #getDrawable(View, Executor, long, DrawableCallback, ErrorCallback)}
+     * instead, which can load in parallel and be cancelled.
      */
+    @Deprecated
     @SuppressWarnings("unused")
     public void getDrawable(final View view, final DrawableCallback callback) {
         getSharpPicture(new PictureCallback() {
@@ -423,38 +719,32 @@ public abstract class Sharp {
     }
 
     /**
-     * read入口
-     * [SharpPicture]
+     * Reads only the size of the SVG from its root <code>&lt;svg&gt;</code> element, without
+     * parsing the rest of the document. The bounds are the same as those of the picture
+     * {@link #getSharpPicture()} would record, unless the SVG has a hidden "bounds" layer.
      */
-    private SharpPicture getSharpPicture(InputStream inputStream) throws SvgParseException {
-        if (inputStream == null) {
-            throw new NullPointerException("An InputStream must be provided");
-        }
+    @SuppressWarnings("unused")
+    public SvgInfo probe() throws SvgParseException {
         try {
-            //入口
-            mSvgHandler.read(inputStream);
-        } finally {
-            try {
-                close(inputStream);
-            } catch (IOException e) {
-                //noinspection ThrowFromFinallyBlock
-                throw new SvgParseException(e);
+            ByteBuffer compiledData = getCompiledData();
+            if (compiledData != null) {
+                return SvgDocumentReader.readInfo(compiledData);
             }
+        } catch (IOException e) {
+            throw new SvgParseException(e);
         }
-        SharpPicture result = new SharpPicture(mSvgHandler.mPicture, mSvgHandler.mBounds);
-        // Skip bounds if it was an empty pic
-        if (!Float.isInfinite(mSvgHandler.mLimits.top)) {
-            result.setLimits(mSvgHandler.mLimits);
-        }
-        return result;
-    }
-
-    @SuppressWarnings("unused")
-    public SharpPicture getSharpPicture() throws SvgParseException {
         InputStream inputStream = null;
         try {
             inputStream = getInputStream();
-            return getSharpPicture(inputStream);
+            if (inputStream == null) {
+                throw new NullPointerException("An InputStream must be provided");
+            }
+            InputStream in = bufferInputStream(inputStream);
+            if (isCompiled(in)) {
+                return SvgDocumentReader.readInfo(ByteBuffer.wrap(readBytes(in)));
+            }
+            // A new handler, so probing does not leave state behind for a later parse
+            return new SvgHandler(this, null).probe(in);
         } catch (IOException e) {
             throw new SvgParseException(e);
         } finally {
@@ -469,228 +759,256 @@ public abstract class Sharp {
         }
     }
 
-    @SuppressLint("StaticFieldLeak")
-    public AsyncTask<Void, Void, SharpPicture> getSharpPicture(final PictureCallback callback) {
-        return new AsyncTask<Void, Void, SharpPicture>() {
-            @Override
-            protected SharpPicture doInBackground(Void... params) {
-                InputStream inputStream = null;
-                try {
-                    inputStream = getInputStream();
-                    return getSharpPicture(inputStream);
-                } catch (IOException e) {
-                    throw new SvgParseException(e);
-                } finally {
-                    try {
-                        if (inputStream != null) {
-                            close(inputStream);
-                        }
-                    } catch (IOException e) {
-                        //noinspection ThrowFromFinallyBlock
-                        throw new SvgParseException(e);
-                    }
-                }
-            }
-
-            @Override
-            protected void onPostExecute(SharpPicture sharpPicture) {
-                callback.onPictureReady(sharpPicture);
-            }
-        }.execute();
+    /**
+     * Whether the stream, which must support mark/reset, holds a compiled document.
+     */
+    private static boolean isCompiled(@NonNull InputStream in) throws IOException {
+        in.mark(4);
+        byte[] header = new byte[4];
+        int r = in.read(header, 0, 4);
+        in.reset();
+        return SvgDocumentReader.isCompiled(header, r);
     }
 
     /**
-     * 从字符串中解析出所哟的浮点数字
+     * read入口
+     * [SvgDocument]
      */
-    private static ArrayList<Float> parseNumbers(String s) {
-        //Log.d(TAG, "Parsing numbers from: '" + s + "'");
-        int n = s.length();
-        int p = 0;
-        ArrayList<Float> numbers = new ArrayList<>();
-        boolean skipChar = false;
-        for (int i = 1; i < n; i++) {
-            if (skipChar) {
-                skipChar = false;
-                continue;
-            }
-            char c = s.charAt(i);
-            switch (c) {
-                // This ends the parsing, as we are on the next element
-                case 'M':
-                case 'm':
-                case 'Z':
-                case 'z':
-                case 'L':
-                case 'l':
-                case 'H':
-                case 'h':
-                case 'V':
-                case 'v':
-                case 'C':
-                case 'c':
-                case 'S':
-                case 's':
-                case 'Q':
-                case 'q':
-                case 'T':
-                case 't':
-                case 'a':
-                case 'A':
-                case ')': {
-                    String str = s.substring(p, i);
-                    if (str.trim().length() > 0) {
-                        //Log.d(TAG, "  Last: " + str);
-                        Float f = Float.parseFloat(str);
-                        numbers.add(f);
-                    }
-                    return numbers;
-                }
-                case 'e':
-                case 'E': {
-                    // exponent in float number - skip eventual minus sign following the exponent
-                    skipChar = true;
-                    break;
-                }
-                case '\n':
-                case '\t':
-                case ' ':
-                case ',':
-                case '-': {
-                    String str = s.substring(p, i);
-                    // Just keep moving if multiple whitespace
-                    if (str.trim().length() > 0) {
-                        //Log.d(TAG, "  Next: " + str);
-                        Float f = Float.parseFloat(str);
-                        numbers.add(f);
-                        if (c == '-') {
-                            p = i;
-                        } else {
-                            p = i + 1;
-                            skipChar = true;
-                        }
-                    } else {
-                        p++;
-                    }
-                    break;
-                }
-            }
+    private SvgDocument getSvgDocument(InputStream inputStream, @Nullable SharpTask task) throws SvgParseException {
+        if (inputStream == null) {
+            throw new NullPointerException("An InputStream must be provided");
         }
-        String last = s.substring(p);
-        if (last.length() > 0) {
-            //Log.d(TAG, "  Last: " + last);
+        try {
+            InputStream in = bufferInputStream(inputStream);
+            // Compiled documents can be loaded through any of the load methods as well
+            if (isCompiled(in)) {
+                return SvgDocumentReader.read(ByteBuffer.wrap(readBytes(in)), mAssetManager);
+            }
+            //入口
+            // Every parse has its own handler, so a Sharp can be parsed again and on any thread
+            return new SvgHandler(this, task).read(in);
+        } catch (IOException e) {
+            throw new SvgParseException(e);
+        } finally {
             try {
-                numbers.add(Float.parseFloat(last));
-            } catch (NumberFormatException nfe) {
-                // Just white-space, forget it
+                close(inputStream);
+            } catch (IOException e) {
+                //noinspection ThrowFromFinallyBlock
+                throw new SvgParseException(e);
             }
         }
-        return numbers;
     }
 
-    private static ArrayList<Float> readTransform(String attr, String type) {
-        int i = attr.indexOf(type + "(");
-        if (i > -1) {
-            i += type.length() + 1;
-            int j = attr.indexOf(")", i);
-            if (j > -1) {
-                ArrayList<Float> np = parseNumbers(attr.substring(i, j));
-                if (np.size() > 0) {
-                    return np;
+    /**
+     * Parses the SVG without recording it. The resulting document can be rendered into pictures
+     * and drawables as often as needed without parsing the SVG again.
+     */
+    @SuppressWarnings("unused")
+    public SvgDocument getSvgDocument() throws SvgParseException {
+        return getSvgDocument(null);
+    }
+
+    /**
+     * @param task checked while parsing, null if the parse cannot be abandoned
+     */
+    private SvgDocument getSvgDocument(@Nullable SharpTask task) throws SvgParseException {
+        SharpCache cache = SharpCache.getInstance();
+        // Dynamic texts are baked into the document, so such documents cannot be shared
+        String cacheKey = cache != null && mTexts == null ? getCacheKey() : null;
+        if (cacheKey != null && mMaxImagePixels > 0) {
+            cacheKey += "-px" + mMaxImagePixels;
+        }
+        if (cacheKey != null) {
+            SvgDocument document = cache.get(cacheKey);
+            if (document != null && canShare(document)) {
+                if (LOG_LEVEL >= LOG_LEVEL_INFO) {
+                    Log.i(TAG, "Cache hit for " + cacheKey);
                 }
+                return document;
             }
         }
-        return null;
+        SvgDocument document = loadSvgDocument(task);
+        if (cacheKey != null && canShare(document)) {
+            cache.put(cacheKey, document);
+        }
+        return document;
     }
 
-    @Nullable
-    private static Matrix parseTransform(String s) {
-        Matrix matrix = null;
+    /**
+     * Whether a document is the same for every load of the SVG. Text is measured with the
+     * typefaces of {@link #withAssets(AssetManager)} while parsing, so documents with text are
+     * only shared between loads without assets.
+     */
+    private boolean canShare(SvgDocument document) {
+        return mAssetManager == null || !document.hasText();
+    }
 
-        if (s.startsWith("matrix(")) {
-            ArrayList<Float> np = parseNumbers(s.substring("matrix(".length()));
-            if (np.size() == 6) {
-                //noinspection ConstantConditions
-                if (matrix == null) {
-                    matrix = new Matrix();
+    private SvgDocument loadSvgDocument(@Nullable SharpTask task) throws SvgParseException {
+        try {
+            ByteBuffer compiledData = getCompiledData();
+            if (compiledData != null) {
+                return SvgDocumentReader.read(compiledData, mAssetManager);
+            }
+        } catch (IOException e) {
+            throw new SvgParseException(e);
+        }
+        // Dynamic texts are baked into the document, so such documents cannot be stored
+        String compiledKey = mTexts == null ? getCompiledKey() : null;
+        if (compiledKey != null && mMaxImagePixels > 0) {
+            compiledKey += "-px" + mMaxImagePixels;
+        }
+        if (compiledKey != null) {
+            ByteBuffer stored = SharpCompiledStore.load(compiledKey);
+            if (stored != null) {
+                try {
+                    SvgDocument document = SvgDocumentReader.read(stored, mAssetManager);
+                    if (canShare(document)) {
+                        return document;
+                    }
+                } catch (RuntimeException e) {
+                    // Whatever is wrong with the stored copy, the SVG itself can still be parsed
+                    if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                        Log.w(TAG, "Discarding unreadable compiled SVG " + compiledKey, e);
+                    }
+                    SharpCompiledStore.remove(compiledKey);
                 }
-                matrix.setValues(new float[]{
-                        // Row 1
-                        np.get(0),
-                        np.get(2),
-                        np.get(4),
-                        // Row 2
-                        np.get(1),
-                        np.get(3),
-                        np.get(5),
-                        // Row 3
-                        0,
-                        0,
-                        1,
-                });
             }
         }
-
-        ArrayList<Float> np = readTransform(s, "scale");
-        if (np != null) {
-            float sx = np.get(0);
-            float sy = sx;
-            if (np.size() > 1) {
-                sy = np.get(1);
+        InputStream inputStream = null;
+        try {
+            inputStream = getInputStream();
+            SvgDocument document = getSvgDocument(inputStream, task);
+            if (compiledKey != null && canShare(document)) {
+                SharpCompiledStore.save(compiledKey, document);
             }
-            if (matrix == null) {
-                matrix = new Matrix();
+            return document;
+        } catch (IOException e) {
+            throw new SvgParseException(e);
+        } finally {
+            try {
+                if (inputStream != null) {
+                    close(inputStream);
+                }
+            } catch (IOException e) {
+                //noinspection ThrowFromFinallyBlock
+                throw new SvgParseException(e);
             }
-            matrix.postScale(sx, sy);
         }
+    }
 
-        np = readTransform(s, "skewX");
-        if (np != null) {
-            float angle = np.get(0);
-            if (matrix == null) {
-                matrix = new Matrix();
-            }
-            matrix.preSkew((float) Math.tan(angle), 0);
-        }
+    @SuppressWarnings("unused")
+    public SharpPicture getSharpPicture() throws SvgParseException {
+        return getSvgDocument().getSharpPicture(mOnElementListener);
+    }
 
-        np = readTransform(s, "skewY");
-        if (np != null) {
-            float angle = np.get(0);
-            if (matrix == null) {
-                matrix = new Matrix();
-            }
-            matrix.preSkew(0, (float) Math.tan(angle));
-        }
+    /**
+     * Processes the SVG on the executor and provides the resulting picture on the main thread.
+     *
+     * @see #getSharpPicture(Executor, long, PictureCallback, ErrorCallback)
+     */
+    @SuppressWarnings("unused")
+    public SharpTask getSharpPicture(@NonNull Executor executor, @NonNull PictureCallback callback) {
+        return getSharpPicture(executor, 0, callback, null);
+    }
 
-        np = readTransform(s, "rotate");
-        if (np != null) {
-            float angle = np.get(0);
-            float cx, cy;
-            if (matrix == null) {
-                matrix = new Matrix();
-            }
-            if (np.size() > 2) {
-                cx = np.get(1);
-                cy = np.get(2);
-                matrix.preRotate(angle, cx, cy);
-            } else {
-                matrix.preRotate(angle);
+    /**
+     * Processes the SVG on the executor and provides the resulting picture on the main thread.
+     * Unlike {@link #getSharpPicture(PictureCallback)}, any number of SVGs can be loaded in
+     * parallel, and loads can be abandoned.
+     *
+     * @param executor      runs the parsing and recording, e.g. a thread pool
+     * @param timeoutMillis the time after which the load is abandoned, or 0 for no limit
+     * @param callback      called on the main thread with the picture
+     * @param errorCallback called on the main thread if the SVG cannot be loaded or the load
+     *                      timed out; may be null
+     * @return a handle to cancel the load; a cancelled load calls neither callback
+     */
+    @SuppressWarnings("unused")
+    public SharpTask getSharpPicture(@NonNull Executor executor,
+                                     long timeoutMillis,
+                                     @NonNull final PictureCallback callback,
+                                     @Nullable final ErrorCallback errorCallback) {
+        final SharpTask task = new SharpTask(timeoutMillis);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SharpPicture picture = null;
+                SvgParseException error = null;
+                try {
+                    // It may have waited in the executor's queue for a while
+                    task.throwIfStopped();
+                    SvgDocument document = getSvgDocument(task);
+                    task.throwIfStopped();
+                    picture = document.getSharpPicture(mOnElementListener);
+                } catch (SvgParseException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    // E.g. a missing resource; thrown here it would kill the process instead
+                    error = new SvgParseException(e);
+                }
+                final SharpPicture result = picture;
+                final SvgParseException failure = error;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (task.isCancelled()) {
+                            return;
+                        }
+                        task.setDone();
+                        if (result != null) {
+                            callback.onPictureReady(result);
+                        } else if (errorCallback != null) {
+                            errorCallback.onError(failure);
+                        } else if (LOG_LEVEL >= LOG_LEVEL_ERROR) {
+                            Log.e(TAG, "Failed loading SVG", failure);
+                        }
+                    }
+                });
             }
-        }
+        });
+        return task;
+    }
 
-        np = readTransform(s, "translate");
-        if (np != null) {
-            float tx = np.get(0);
-            float ty = 0;
-            if (np.size() > 1) {
-                ty = np.get(1);
+    /**
+     * Processes the SVG on the executor and provides the resulting drawable on the main thread.
+     *
+     * @see #getSharpPicture(Executor, long, PictureCallback, ErrorCallback)
+     */
+    @SuppressWarnings("unused")
+    public SharpTask getDrawable(@NonNull final View view,
+                                 @NonNull Executor executor,
+                                 long timeoutMillis,
+                                 @NonNull final DrawableCallback callback,
+                                 @Nullable ErrorCallback errorCallback) {
+        return getSharpPicture(executor, timeoutMillis, new PictureCallback() {
+            @Override
+            public void onPictureReady(SharpPicture sharpPicture) {
+                callback.onDrawableReady(sharpPicture.getDrawable(view));
             }
-            if (matrix == null) {
-                matrix = new Matrix();
+        }, errorCallback);
+    }
+
+    /**
+     * Processes the SVG and provides the resulting picture. Runs on AsyncTask's single background
+     * thread and cannot be cancelled.
+     *
+     * @deprecated Use {@link #getSharpPicture(Executor, PictureCallback)} instead.
+     */
+    @Deprecated
+    @SuppressLint("StaticFieldLeak")
+    public AsyncTask<Void, Void, SharpPicture> getSharpPicture(final PictureCallback callback) {
+        return new AsyncTask<Void, Void, SharpPicture>() {
+            @Override
+            protected SharpPicture doInBackground(Void... params) {
+                return getSharpPicture();
             }
-            matrix.postTranslate(tx, ty);
-        }
 
-        return matrix;
+            @Override
+            protected void onPostExecute(SharpPicture sharpPicture) {
+                callback.onPictureReady(sharpPicture);
+            }
+        }.execute();
     }
 
     /**
@@ -719,10 +1037,20 @@ public abstract class Sharp {
      */
     @NonNull
     private static Path doPath(@NonNull String s) {
+        return doPathData(s).toPath();
+    }
+
+    /**
+     * 路径解析成绝对坐标的绘制指令
+     *
+     * @see #doPath(String)
+     */
+    @NonNull
+    static SvgPathData doPathData(@NonNull String s) {
         int n = s.length();
         SvgParserHelper ph = new SvgParserHelper(s, 0);
         ph.skipWhitespace();
-        Path p = new Path();
+        SvgPathData p = new SvgPathData();
         float lastX = 0;
         float lastY = 0;
         float lastX1 = 0;
@@ -787,7 +1115,7 @@ public abstract class Sharp {
                         //subPathStartY += y;
                         subPathStartX = lastX + x;
                         subPathStartY = lastY + y;
-                        p.rMoveTo(x, y);
+                        p.moveTo(lastX + x, lastY + y);
                         lastX += x;
                         lastY += y;
                     } else {
@@ -805,7 +1133,7 @@ public abstract class Sharp {
                     float x = ph.nextFloat();
                     float y = ph.nextFloat();
                     if (Character.isLowerCase(cmd)) {
-                        p.rLineTo(x, y);
+                        p.lineTo(lastX + x, lastY + y);
                         lastX += x;
                         lastY += y;
                     } else {
@@ -820,7 +1148,7 @@ public abstract class Sharp {
                     // Horizontal line
                     float x = ph.nextFloat();
                     if (Character.isLowerCase(cmd)) {
-                        p.rLineTo(x, 0);
+                        p.lineTo(lastX + x, lastY);
                         lastX += x;
                     } else {
                         p.lineTo(x, lastY);
@@ -833,7 +1161,7 @@ public abstract class Sharp {
                     // Vertical line
                     float y = ph.nextFloat();
                     if (Character.isLowerCase(cmd)) {
-                        p.rLineTo(0, y);
+                        p.lineTo(lastX, lastY + y);
                         lastY += y;
                     } else {
                         p.lineTo(lastX, y);
@@ -947,7 +1275,7 @@ public abstract class Sharp {
                         x += lastX;
                         y += lastY;
                     }
-                    drawArc(p, lastX, lastY, x, y, rx, ry, theta, largeArc, sweepArc);
+                    SvgArcHelper.arcTo(p, lastX, lastY, x, y, rx, ry, theta, largeArc, sweepArc);
                     lastX = x;
                     lastY = y;
                     break;
@@ -962,192 +1290,83 @@ public abstract class Sharp {
         return p;
     }
 
-    private static float angle(float y1, float x1, float y2, float x2) {
-        return (float) Math.toDegrees(Math.atan2(y1, x1) - Math.atan2(y2, x2)) % 360;
+    @Nullable
+    private static float[] getFloatsAttr(String name, SvgAttributes attributes) {
+        String value = getStringAttr(name, attributes);
+        return value == null ? null : SvgParserHelper.parseFloats(value);
     }
 
-    private static final RectF arcRectf = new RectF();
-    private static final Matrix arcMatrix = new Matrix();
-    private static final Matrix arcMatrix2 = new Matrix();
-
-    private static void drawArc(Path p, float lastX, float lastY, float x, float y, float rx, float ry, float theta, int largeArc, int sweepArc) {
-        //Log.d("drawArc", "from (" + lastX + "," + lastY + ") to (" + x + ","+ y + ") r=(" + rx + "," + ry + ") theta=" + theta + " flags="+ largeArc + "," + sweepArc);
+    private static String getStringAttr(String name, SvgAttributes attributes) {
+        return attributes.get(name);
+    }
 
-        // http://www.w3.org/TR/SVG/implnote.html#ArcImplementationNotes
+    /**
+     * Parses a number with an optional unit, such as <code>12.5</code>, <code>10px</code> or
+     * <code>50%</code>.
+     *
+     * @param absent returned if the value is null, not a number or in an unsupported unit such
+     *               as <code>em</code>, e.g. {@link Float#NaN}
+     */
+    static float parseFloat(@Nullable String value, float absent) {
+        return parseFloat(value, absent, null);
+    }
 
-        if (rx == 0 || ry == 0) {
-            p.lineTo(x, y);
-            return;
+    /**
+     * @param handler the parse to check the unit against and whose number parser to reuse, or
+     *                null not to check it
+     */
+    private static float parseFloat(@Nullable String value, float absent, @Nullable SvgHandler handler) {
+        if (value == null) {
+            return absent;
         }
-
-        if (x == lastX && y == lastY) {
-            return; // nothing to draw
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
         }
-
-        rx = Math.abs(rx);
-        ry = Math.abs(ry);
-
-        final float thrad = theta * (float) Math.PI / 180;
-        final float st = (float) Math.sin(thrad);
-        final float ct = (float) Math.cos(thrad);
-
-        final float xc = (lastX - x) / 2;
-        final float yc = (lastY - y) / 2;
-        final float x1t = ct * xc + st * yc;
-        final float y1t = -st * xc + ct * yc;
-
-        final float x1ts = x1t * x1t;
-        final float y1ts = y1t * y1t;
-        float rxs = rx * rx;
-        float rys = ry * ry;
-
-        float lambda = (x1ts / rxs + y1ts / rys) * 1.001f; // add 0.1% to be sure that no out of range occurs due to limited precision
-        if (lambda > 1) {
-            float lambdasr = (float) Math.sqrt(lambda);
-            rx *= lambdasr;
-            ry *= lambdasr;
-            rxs = rx * rx;
-            rys = ry * ry;
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
         }
-
-        final float R = (float) Math.sqrt((rxs * rys - rxs * y1ts - rys * x1ts) / (rxs * y1ts + rys * x1ts))
-                * ((largeArc == sweepArc) ? -1 : 1);
-        final float cxt = R * rx * y1t / ry;
-        final float cyt = -R * ry * x1t / rx;
-        final float cx = ct * cxt - st * cyt + (lastX + x) / 2;
-        final float cy = st * cxt + ct * cyt + (lastY + y) / 2;
-
-        final float th1 = angle(1, 0, (x1t - cxt) / rx, (y1t - cyt) / ry);
-        float dth = angle((x1t - cxt) / rx, (y1t - cyt) / ry, (-x1t - cxt) / rx, (-y1t - cyt) / ry);
-
-        if (sweepArc == 0 && dth > 0) {
-            dth -= 360;
-        } else if (sweepArc != 0 && dth < 0) {
-            dth += 360;
+        if (start == end) {
+            return absent;
         }
-
-        // draw
-        if ((theta % 360) == 0) {
-            // no rotate and translate need
-            arcRectf.set(cx - rx, cy - ry, cx + rx, cy + ry);
-            p.arcTo(arcRectf, th1, dth);
+        SvgParserHelper ph;
+        if (handler != null) {
+            ph = handler.mNumberParser;
+            ph.reset(value, start);
         } else {
-            // this is the hard and slow part :-)
-            arcRectf.set(-rx, -ry, rx, ry);
-
-            arcMatrix.reset();
-            arcMatrix.postRotate(theta);
-            arcMatrix.postTranslate(cx, cy);
-            arcMatrix.invert(arcMatrix2);
-
-            p.transform(arcMatrix2);
-            p.arcTo(arcRectf, th1, dth);
-            p.transform(arcMatrix);
+            ph = new SvgParserHelper(value, start);
         }
-    }
-
-    private static ArrayList<Float> getNumberParseAttr(String name, Attributes attributes) {
-        int n = attributes.getLength();
-        for (int i = 0; i < n; i++) {
-            if (attributes.getLocalName(i).equals(name)) {
-                return parseNumbers(attributes.getValue(i));
+        float valueF;
+        try {
+            valueF = ph.parseFloat();
+        } catch (RuntimeException e) {
+            // Malformed exponent, or a unit such as em that starts like one
+            if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                Log.w(TAG, "Unsupported number or unit: " + value);
             }
+            return absent;
         }
-        return null;
-    }
-
-    private static String getStringAttr(String name, Attributes attributes) {
-        int n = attributes.getLength();
-        for (int i = 0; i < n; i++) {
-            if (attributes.getLocalName(i).equals(name)) {
-                return attributes.getValue(i);
-            }
+        if (Float.isNaN(valueF)) {
+            return absent;
         }
-        return null;
-    }
-
-    private static Float getFloatAttr(String name, Attributes attributes) {
-        return getFloatAttr(name, attributes, null);
-    }
-
-    private static Float getFloatAttr(String name, Attributes attributes, Float defaultValue) {
-        String value = getStringAttr(name, attributes);
-        return parseFloat(value, defaultValue);
-    }
-
-    private static Float parseFloat(String value, Float defaultValue) {
-        if (value == null) {
-            return defaultValue;
-        } else {
-            float scaleFactor = 1f;
-            Unit unit = Unit.matches(value);
-            if (unit != null) {
-                value = value.substring(0, value.length() - unit.mAbbreviation.length());
-            }
-            float valueF = Float.parseFloat(value);
-            if (unit != null) {
-                switch (unit) {
-                    case PT:
-                        valueF = valueF + 0.5f;
-                        break;
-                    case PERCENT:
-                        valueF = valueF / 100f;
-                        break;
-                    case MM:
-                        valueF = valueF * 96f / 25.4f;
-                        break;
+        if (ph.pos < end) {
+            Unit unit = Unit.match(value, ph.pos, end);
+            if (unit == null) {
+                // A unit such as pc or ex would scale the number by an unknown factor
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Unsupported unit: " + value);
                 }
-                checkAssumedUnits(unit.mAbbreviation);
-                scaleFactor = unit.mScaleFactor;
+                return absent;
             }
-            return valueF * scaleFactor;
-        }
-    }
-
-    //<editor-fold desc="回调">
-
-    private void onSvgStart(@NonNull Canvas canvas, @Nullable RectF bounds) {
-        if (mOnElementListener != null) {
-            mOnElementListener.onSvgStart(canvas, bounds);
-        }
-    }
-
-    private void onSvgEnd(@NonNull Canvas canvas, @Nullable RectF bounds) {
-        if (mOnElementListener != null) {
-            mOnElementListener.onSvgEnd(canvas, bounds);
-        }
-    }
-
-    private <T> T onSvgElement(@Nullable String id,
-                               @NonNull T element,
-                               @Nullable RectF elementBounds,
-                               @NonNull Canvas canvas,
-                               @Nullable RectF canvasBounds,
-                               @Nullable Paint paint) {
-        if (mOnElementListener != null) {
-            return mOnElementListener.onSvgElement(id, element, elementBounds, canvas, canvasBounds, paint);
-        }
-        return element;
-    }
-
-    private <T> void onSvgElementDrawn(@Nullable String id,
-                                       @NonNull T element,
-                                       @NonNull Canvas canvas,
-                                       @Nullable Paint paint) {
-        if (mOnElementListener != null) {
-            mOnElementListener.onSvgElementDrawn(id, element, canvas, paint);
-        }
-    }
-
-    private boolean onCanvasDraw(Canvas canvas, DrawElement drawElement) {
-        if (mOnElementListener != null) {
-            return mOnElementListener.onCanvasDraw(canvas, drawElement);
+            if (handler != null) {
+                handler.checkAssumedUnits(unit.mAbbreviation);
+            }
+            valueF = unit.convert(valueF) * unit.mScaleFactor;
         }
-        return false;
+        return valueF;
     }
 
-    //</editor-fold desc="回调">
-
     private static class Gradient {
 
         private String mId;
@@ -1159,10 +1378,26 @@ public abstract class Sharp {
         private ArrayList<Integer> mColors = new ArrayList<>();
         private Matrix mMatrix = null;
 
+        private int[] mColorArray;
+        private float[] mPositionArray;
+
         public Shader mShader = null;
+        //mShader的描述
+        public SvgPaint.ShaderSpec mSpec = null;
         public boolean mBoundingBox = false;
         public TileMode mTileMode;
 
+        /**
+         * Describes a shader for this gradient, so that each element filled with a bounding box
+         * gradient gets its own local matrix.
+         */
+        public SvgPaint.ShaderSpec createSpec(@Nullable Matrix localMatrix) {
+            float[] geometry = mIsLinear
+                    ? new float[]{mX1, mY1, mX2, mY2}
+                    : new float[]{mX, mY, mRadius};
+            return new SvgPaint.ShaderSpec(mIsLinear, geometry, mColorArray, mPositionArray, mTileMode, localMatrix);
+        }
+
         public void inherit(Gradient parent) {
             Gradient child = this;
             child.mXlink = parent.mId;
@@ -1178,137 +1413,43 @@ public abstract class Sharp {
         }
     }
 
-    private static class StyleSet {
-        HashMap<String, String> styleMap = new HashMap<>();
-
-        private StyleSet(String string) {
-            String[] styles = string.split(";");
-            for (String s : styles) {
-                String[] style = s.split(":");
-                if (style.length == 2) {
-                    styleMap.put(style[0].trim(), style[1].trim());
-                }
-            }
-        }
-
-        public String getStyle(String name) {
-            return styleMap.get(name);
-        }
-    }
-
     private static class Properties {
 
-        StyleSet mStyles = null;
-        Attributes mAttrs;
-
-        private HashMap<String, HashMap<String, String>> mClsStyle;
+        SvgAttributes mAttrs;
+        //颜色解析, 缓存了本次解析中出现过的颜色
+        SvgColorParser mColors;
 
-        private Properties(Attributes attrs, HashMap<String, HashMap<String, String>> clsStyle) {
+        private Properties(SvgAttributes attrs, SvgColorParser colors) {
             mAttrs = attrs;
-            mClsStyle = clsStyle;
-            String styleAttr = getStringAttr("style", attrs);
-            if (styleAttr != null) {
-                mStyles = new StyleSet(styleAttr);
-            }
-        }
-
-        private String getAttr(String name) {
-            return getAttr(name, false);
-        }
-
-        public String getAttr(String name, boolean isClass) {
-            String v = null;
-            if (mStyles != null) {
-                v = mStyles.getStyle(name);
-            }
-            if (v == null) {
-                v = getStringAttr(name, mAttrs);
-            }
-            if (v == null && !isClass) {
-                String clsStr = getAttr("class", true);
-                if (clsStr == null || clsStr.isEmpty()) {
-                    //no op
-                } else {
-                    String[] clss = clsStr.split(" ");
-                    for (String cls : clss) {
-                        String style = getClassStyle(cls.trim(), name);
-                        if (style != null) {
-                            v = style;
-                        }
-                    }
-                }
-            }
-            return v;
+            mColors = colors;
         }
 
         /**
-         * 获取指定类, 指定的属性对应的值
-         * [className] 不包含.的类名
+         * 获取属性值, 优先级: style声明 > css样式表 > 元素属性
          */
-        private String getClassStyle(String className, String name) {
-            HashMap<String, String> clsMap = mClsStyle.get("." + className);
-            if (clsMap != null) {
-                return clsMap.get(name);
-            }
-            return null;
+        private String getAttr(String name) {
+            return mAttrs.getComputed(name);
         }
 
         public String getString(String name) {
             return getAttr(name);
         }
 
-        private Integer rgb(int r, int g, int b) {
-            return ((r & 0xff) << 16) | ((g & 0xff) << 8) | (b & 0xff);
-        }
-
-        private int parseNum(String v) throws NumberFormatException {
-            if (v.endsWith("%")) {
-                v = v.substring(0, v.length() - 1);
-                return Math.round(Float.parseFloat(v) / 100 * 255);
-            }
-            return Integer.parseInt(v);
-        }
-
+        /**
+         * @return the color as ARGB, or null if it is absent or not a valid color
+         */
         public Integer getColor(String name) {
-            String v = getAttr(name);
-            if (v == null) {
-                return null;
-            } else if (v.startsWith("#")) {
-                try {
-                    int c = Integer.parseInt(v.substring(1), 16);
-                    if (v.length() == 4) {
-                        // short form color, i.e. #FFF
-                        c = hex3Tohex6(c);
-                    }
-                    return c;
-                } catch (NumberFormatException nfe) {
-                    return null;
-                }
-            } else if (v.startsWith("rgb(") && v.endsWith(")")) {
-                String[] values = v.substring(4, v.length() - 1).split(",");
-                try {
-                    return rgb(parseNum(values[0]), parseNum(values[1]), parseNum(values[2]));
-                } catch (NumberFormatException nfe) {
-                    return null;
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    return null;
-                }
-            } else if (v.toLowerCase(Locale.US).startsWith("currentcolor")) {
+            String v = getAttr(name);
+            if (v == null) {
+                return null;
+            } else if (v.regionMatches(true, 0, "currentColor", 0, 12)) {
                 //当前的颜色
-                return getColor("color");
+                return "color".equals(name) ? null : getColor("color");
             } else {
-                //颜色映射
-                return SvgColors.mapColor(v);
+                return mColors.get(v);
             }
         }
 
-        // convert 0xRGB into 0xRRGGBB
-        private int hex3Tohex6(int x) {
-            return (x & 0xF00) << 8 | (x & 0xF00) << 12 |
-                    (x & 0xF0) << 4 | (x & 0xF0) << 8 |
-                    (x & 0xF) << 4 | (x & 0xF);
-        }
-
         public Float getFloat(String name, float defaultValue) {
             Float v = getFloat(name);
             if (v == null) {
@@ -1339,24 +1480,35 @@ public abstract class Sharp {
 
         //<editor-fold desc="内部属性">
 
-        private final Sharp mSharp;
-        private Picture mPicture;
+        //transform的类型
+        private static final int TRANSFORM_MATRIX = 0;
+        private static final int TRANSFORM_TRANSLATE = 1;
+        private static final int TRANSFORM_SCALE = 2;
+        private static final int TRANSFORM_ROTATE = 3;
+        private static final int TRANSFORM_SKEW_X = 4;
+        private static final int TRANSFORM_SKEW_Y = 5;
 
-        private Canvas mCanvas;
-        private Paint mStrokePaint;
+        private final Sharp mSharp;
+        //当前元素的属性索引, 每个元素复用
+        private final SvgAttributes mAttributes = new SvgAttributes();
+        private final SvgColorParser mColors = new SvgColorParser();
+        //异步加载的任务, 每个元素开始时检查是否取消或超时
+        @Nullable
+        private final SharpTask mTask;
+
+        private SvgPaint mStrokePaint;
         private boolean mStrokeSet = false;
-        private Stack<Paint> mStrokePaintStack = new Stack<>();
+        private Stack<SvgPaint> mStrokePaintStack = new Stack<>();
         private Stack<Boolean> mStrokeSetStack = new Stack<>();
 
-        private Paint mFillPaint;
+        private SvgPaint mFillPaint;
         private boolean mFillSet = false;
-        private Stack<Paint> mFillPaintStack = new Stack<>();
+        private Stack<SvgPaint> mFillPaintStack = new Stack<>();
         private Stack<Boolean> mFillSetStack = new Stack<>();
 
-        // Scratch rect (so we aren't constantly making new ones)
-        private RectF mLine = new RectF();
-        private RectF mRect = new RectF();
         private RectF mBounds = null;
+        //根元素<svg>的viewBox, 也是绘制的画布大小
+        private RectF mCanvasBounds = null;
         private String viewBoxStr;
         private String widthStr;
         private String heightStr;
@@ -1364,14 +1516,25 @@ public abstract class Sharp {
 
         private Stack<Boolean> mTransformStack = new Stack<>();
         private Stack<Matrix> mMatrixStack = new Stack<>();
+        //解析transform时复用的对象
+        private final SvgParserHelper mTransformParser = new SvgParserHelper("", 0);
+        //解析数值属性时复用
+        private final SvgParserHelper mNumberParser = new SvgParserHelper("", 0);
+        private final float[] mTransformArgs = new float[9];
+        private Matrix mTransformTemp;
 
         private HashMap<String, Gradient> mGradientMap = new HashMap<>();
         private Gradient mGradient = null;
 
         private final Stack<SvgText> mTextStack = new Stack<>();
-        private final Stack<SvgGroup> mGroupStack = new Stack<>();
 
-        private HashMap<String, String> mDefs = new HashMap<>();
+        //当前正在构建的子节点列表, 栈顶是当前<g>的子节点
+        private final Stack<List<SvgNode>> mNodeStack = new Stack<>();
+        //当前<text>元素对应的节点
+        private SvgNode.Text mTextNode;
+
+        //<defs>中的路径, id -> 解析后的路径
+        private HashMap<String, PathDef> mDefs = new HashMap<>();
 
         //是否正在读取defs
         private boolean mReadingDefs = false;
@@ -1379,92 +1542,140 @@ public abstract class Sharp {
         //是否正在读取style
         private boolean mReadingStyle = false;
 
-        //css class 对应的样式表
-        private HashMap<String, HashMap<String, String>> clsStyle = new HashMap<>();
+        //<style>中的css样式表
+        private final SvgStyleSheet mStyleSheet = new SvgStyleSheet();
 
         //样式文本存放
         private StringBuilder mStyleText;
 
         private Stack<String> mReadIgnoreStack = new Stack<>();
 
-        //</editor-fold desc="内部属性">
+        //withMaxImagePixels剩余的图片像素数
+        private long mImagePixelsLeft;
 
-        private SvgHandler(Sharp sharp) {
-            mSharp = sharp;
-        }
+        //本次解析使用的单位, 不允许混用
+        private String mAssumedUnit;
 
-        //<editor-fold desc="触发解析回调">
+        //是否只读取根元素的尺寸, 见probe
+        private boolean mProbing = false;
+        private boolean mProbeDone = false;
 
-        private void onSvgStart() {
-            mSharp.onSvgStart(mCanvas, mBounds);
-        }
+        //</editor-fold desc="内部属性">
 
-        private void onSvgEnd() {
-            mSharp.onSvgEnd(mCanvas, mBounds);
+        private SvgHandler(Sharp sharp, @Nullable SharpTask task) {
+            mSharp = sharp;
+            mTask = task;
+            mImagePixelsLeft = sharp.mMaxImagePixels;
         }
 
-        private <T> T onSvgElement(@Nullable String id,
-                                   @NonNull T element,
-                                   @Nullable RectF elementBounds,
-                                   @Nullable Paint paint) {
-            return mSharp.onSvgElement(id, element, elementBounds, mCanvas, mBounds, paint);
-        }
+        //<editor-fold desc="解析入口">
 
-        private <T> void onSvgElementDrawn(@Nullable String id,
-                                           @NonNull T element,
-                                           @Nullable Paint paint) {
-            mSharp.onSvgElementDrawn(id, element, mCanvas, paint);
+        void checkAssumedUnits(String unit) {
+            if (mAssumedUnit == null) {
+                mAssumedUnit = unit;
+            }
+            if (!mAssumedUnit.equals(unit)) {
+                throw new IllegalStateException("Mixing units; SVG contains both " + mAssumedUnit + " and " + unit);
+            }
         }
 
-        private boolean onCanvasDraw(Canvas canvas, DrawElement drawElement) {
-            return mSharp.onCanvasDraw(canvas, drawElement);
+        /**
+         * @param absent returned if the attribute is missing or not a number
+         */
+        private float getFloatAttr(String name, SvgAttributes attributes, float absent) {
+            return Sharp.parseFloat(getStringAttr(name, attributes), absent, this);
         }
 
-        //</editor-fold desc="触发解析回调">
-
-        //<editor-fold desc="解析入口">
+        private float parseFloat(String value, float absent) {
+            return Sharp.parseFloat(value, absent, this);
+        }
 
         /**
          * 读取解析的入口
          */
-        public void read(InputStream in) {
-            mPicture = new Picture();
+        public SvgDocument read(InputStream in) {
             try {
                 long start = System.currentTimeMillis();
-                if (in.markSupported()) {
-                    //GZIP支持
-                    in.mark(4);
-                    byte[] magic = new byte[2];
-                    int r = in.read(magic, 0, 2);
-                    int magicInt = (magic[0] + (((int) magic[1]) << 8)) & 0xffff;
-                    in.reset();
-                    if (r == 2 && magicInt == GZIPInputStream.GZIP_MAGIC) {
-                        if (LOG_LEVEL >= LOG_LEVEL_INFO) {
-                            Log.d(TAG, "SVG is gzipped");
-                        }
-                        in = new GZIPInputStream(in);
-                    }
-                }
-                //XML文档解析
-                SAXParserFactory spf = SAXParserFactory.newInstance();
-                SAXParser sp = spf.newSAXParser();
-                XMLReader xr = sp.getXMLReader();
-                xr.setContentHandler(this);
-                xr.parse(new InputSource(in));
+                parse(in);
                 //解析结束
-                if (sTextDynamic != null) {
-                    sTextDynamic.clear();
-                    sTextDynamic = null;
-                }
                 if (LOG_LEVEL >= LOG_LEVEL_INFO) {
                     Log.v(TAG, "Parsing complete in " + (System.currentTimeMillis() - start) + " ms.");
                 }
+                // Skip limits if it was an empty pic
+                RectF limits = Float.isInfinite(mLimits.top) ? null : new RectF(mLimits);
+                return new SvgDocument(mCanvasBounds, mBounds, limits,
+                        viewBoxStr, widthStr, heightStr, mNodeStack.firstElement());
             } catch (IOException | SAXException | ParserConfigurationException e) {
+                if (mTask != null) {
+                    // Abandoned on purpose, not a failure
+                    mTask.throwIfStopped();
+                }
                 Log.e(TAG, "Failed parsing SVG", e);
                 throw new SvgParseException(e);
             }
         }
 
+        /**
+         * 只读取根元素<svg>的尺寸, 读到后立即停止解析
+         */
+        SvgInfo probe(InputStream in) {
+            mProbing = true;
+            try {
+                parse(in);
+            } catch (SAXException e) {
+                if (!mProbeDone) {
+                    Log.e(TAG, "Failed probing SVG", e);
+                    throw new SvgParseException(e);
+                }
+            } catch (IOException | ParserConfigurationException e) {
+                Log.e(TAG, "Failed probing SVG", e);
+                throw new SvgParseException(e);
+            }
+            return new SvgInfo(mCanvasBounds, viewBoxStr, widthStr, heightStr);
+        }
+
+        private void stopProbing() throws SAXException {
+            mProbeDone = true;
+            // The only way to stop a SAX parser early
+            throw new SAXException("Probe complete");
+        }
+
+        private void parse(InputStream in) throws IOException, SAXException, ParserConfigurationException {
+            if (in.markSupported()) {
+                //GZIP支持
+                in.mark(4);
+                byte[] magic = new byte[2];
+                int r = in.read(magic, 0, 2);
+                int magicInt = (magic[0] + (((int) magic[1]) << 8)) & 0xffff;
+                in.reset();
+                if (r == 2 && magicInt == GZIPInputStream.GZIP_MAGIC) {
+                    if (LOG_LEVEL >= LOG_LEVEL_INFO) {
+                        Log.d(TAG, "SVG is gzipped");
+                    }
+                    in = new GZIPInputStream(in, BUFFER_SIZE);
+                }
+            }
+            //XML文档解析
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            // Android's parser reports local names by default, other parsers only when asked
+            spf.setNamespaceAware(true);
+            SAXParser sp = spf.newSAXParser();
+            XMLReader xr = sp.getXMLReader();
+            xr.setContentHandler(this);
+            xr.setEntityResolver(this);
+            SvgHandler outer = sParsing.get();
+            sParsing.set(this);
+            try {
+                xr.parse(new InputSource(in));
+            } finally {
+                if (outer != null) {
+                    sParsing.set(outer);
+                } else {
+                    sParsing.remove();
+                }
+            }
+        }
+
         //</editor-fold desc="解析入口">
 
         //<editor-fold desc="xml属性解析">
@@ -1487,15 +1698,18 @@ public abstract class Sharp {
                     }
                     if (shader != null) {
                         //Util.debug("Found shader!");
-                        mFillPaint.setShader(shader);
                         if (boundingBox != null) {
+                            // The element keeps its paint, so it needs a shader of its own
                             gradMatrix.set(g.mMatrix);
                             if (g.mBoundingBox) {
                                 //Log.d(TAG, "gradient is bounding box");
                                 gradMatrix.preTranslate(boundingBox.left, boundingBox.top);
                                 gradMatrix.preScale(boundingBox.width(), boundingBox.height());
                             }
-                            shader.setLocalMatrix(gradMatrix);
+                            SvgPaint.ShaderSpec spec = g.createSpec(new Matrix(gradMatrix));
+                            mFillPaint.setShader(spec.createShader(), spec);
+                        } else {
+                            mFillPaint.setShader(shader, g.mSpec);
                         }
                         return true;
                     } else {
@@ -1537,21 +1751,18 @@ public abstract class Sharp {
             }
         }
 
-        private boolean doText(Attributes atts, Properties props, Paint paint) {
-            if ("none".equals(atts.getValue("display"))) {
+        private boolean doText(SvgAttributes atts, Properties props, SvgPaint paint) {
+            if ("none".equals(getStringAttr("display", atts))) {
                 return false;
             }
-            Float fontSize = getFloatAttr("font-size", atts);
-            if (fontSize == null) {
-                fontSize = parseFloat(props.getString("font-size"), null);
+            float fontSize = getFloatAttr("font-size", atts, Float.NaN);
+            if (Float.isNaN(fontSize)) {
+                fontSize = parseFloat(props.getString("font-size"), Float.NaN);
             }
-            if (fontSize != null) {
+            if (!Float.isNaN(fontSize)) {
                 paint.setTextSize(fontSize);
             }
-            Typeface typeface = setTypeface(atts, props, mSharp.getAssetManager(), paint.getTypeface());
-            if (typeface != null) {
-                paint.setTypeface(typeface);
-            }
+            setTypeface(atts, props, mSharp.getAssetManager(), paint);
             Align align = getTextAlign(atts);
             if (align != null) {
                 paint.setTextAlign(getTextAlign(atts));
@@ -1594,7 +1805,7 @@ public abstract class Sharp {
                     for (int i = 0; i < splitDashArray.length; i++) {
                         intervals[i] = Float.parseFloat(splitDashArray[i]);
                     }
-                    mStrokePaint.setPathEffect(new DashPathEffect(intervals, 0));
+                    mStrokePaint.setDash(intervals);
                 } else {
                     mStrokePaint.setPathEffect(null);
                 }
@@ -1629,15 +1840,18 @@ public abstract class Sharp {
                     }
                     if (shader != null) {
                         //Util.debug("Found shader!");
-                        mStrokePaint.setShader(shader);
                         if (boundingBox != null) {
+                            // The element keeps its paint, so it needs a shader of its own
                             gradMatrix.set(g.mMatrix);
                             if (g.mBoundingBox) {
                                 //Log.d(TAG, "gradient is bounding box");
                                 gradMatrix.preTranslate(boundingBox.left, boundingBox.top);
                                 gradMatrix.preScale(boundingBox.width(), boundingBox.height());
                             }
-                            shader.setLocalMatrix(gradMatrix);
+                            SvgPaint.ShaderSpec spec = g.createSpec(new Matrix(gradMatrix));
+                            mStrokePaint.setShader(spec.createShader(), spec);
+                        } else {
+                            mStrokePaint.setShader(shader, g.mSpec);
                         }
                         return true;
                     } else {
@@ -1676,7 +1890,7 @@ public abstract class Sharp {
             }
         }
 
-        private Gradient doGradient(boolean isLinear, Attributes atts) {
+        private Gradient doGradient(boolean isLinear, SvgAttributes atts) {
             Gradient gradient = new Gradient();
             gradient.mId = getStringAttr("id", atts);
             gradient.mIsLinear = isLinear;
@@ -1740,11 +1954,10 @@ public abstract class Sharp {
                         Log.w(TAG, "Failed to parse gradient for id " + gradient.mId);
                     }
                 }
-                if (gradient.mIsLinear) {
-                    gradient.mShader = new LinearGradient(gradient.mX1, gradient.mY1, gradient.mX2, gradient.mY2, colors, positions, gradient.mTileMode);
-                } else {
-                    gradient.mShader = new RadialGradient(gradient.mX, gradient.mY, gradient.mRadius, colors, positions, gradient.mTileMode);
-                }
+                gradient.mColorArray = colors;
+                gradient.mPositionArray = positions;
+                gradient.mSpec = gradient.createSpec(null);
+                gradient.mShader = gradient.mSpec.createShader();
 
             }
         }
@@ -1754,44 +1967,13 @@ public abstract class Sharp {
          */
         private void finishStyle() {
             //CSS样式文本内容, 解析css样式表
-            String styleContent = mStyleText.toString();
-            String[] styles = styleContent.split("\\}");
-            for (String style : styles) {
-                String[] parts = style.split("\\{");
-                if (parts.length < 2) {
-                } else {
-                    String selector = parts[0].trim();
-                    String properties = parts[1].trim();
-                    // 处理样式信息
-                    String[] selectors = selector.split(",");
-                    HashMap<String, String> styleMap = parseStyle(properties);
-                    for (String cls : selectors) {
-                        String key = cls.trim();
-                        HashMap<String, String> old = clsStyle.get(key);
-                        if (old == null) {
-                            clsStyle.put(cls.trim(), styleMap);
-                        } else {
-                            old.putAll(styleMap);
-                        }
-                    }
-                }
-            }
+            mStyleSheet.parse(mStyleText.toString());
         }
 
-        private HashMap<String, String> parseStyle(String properties) {
-            HashMap<String, String> map = new HashMap<>();
-            String[] props = properties.split(";");
-            for (String prop : props) {
-                String[] kv = prop.split(":");
-                map.put(kv[0].trim(), kv[1].trim());
-            }
-            return map;
-        }
-
-        private void doColor(Properties atts, Integer color, boolean fillMode, Paint paint) {
-            int c = (0xFFFFFF & color) | 0xFF000000;
+        private void doColor(Properties atts, int color, boolean fillMode, Paint paint) {
+            int alpha = color >>> 24;
             paint.setShader(null);
-            paint.setColor(c);
+            paint.setColor(color | 0xFF000000);
             Float opacity = atts.getFloat("opacity");
             Float opacity2 = atts.getFloat(fillMode ? "fill-opacity" : "stroke-opacity");
             if (opacity == null) {
@@ -1800,9 +1982,9 @@ public abstract class Sharp {
                 opacity *= opacity2;
             }
             if (opacity == null) {
-                paint.setAlpha(255);
+                paint.setAlpha(alpha);
             } else {
-                paint.setAlpha((int) (255 * opacity));
+                paint.setAlpha((int) (alpha * opacity));
             }
         }
 
@@ -1839,28 +2021,260 @@ public abstract class Sharp {
             doLimits(box, null);
         }
 
-        private void pushTransform(Attributes atts) {
+        /**
+         * 解析元素的transform, 并压入矩阵栈
+         *
+         * @return the element's own transform, or null if it has none
+         */
+        @Nullable
+        private Matrix pushTransform(SvgAttributes atts) {
             final String transform = getStringAttr("transform", atts);
-            boolean pushed = transform != null;
+            return pushTransform(transform == null ? null : parseTransform(transform));
+        }
+
+        @Nullable
+        private Matrix pushTransform(@Nullable Matrix matrix) {
+            boolean pushed = matrix != null;
             mTransformStack.push(pushed);
             if (pushed) {
-                mCanvas.save();
-                final Matrix matrix = parseTransform(transform);
-                if (matrix != null) {
-                    mCanvas.concat(matrix);
-                    matrix.postConcat(mMatrixStack.peek());
-                    mMatrixStack.push(matrix);
+                Matrix total = new Matrix(matrix);
+                total.postConcat(mMatrixStack.peek());
+                mMatrixStack.push(total);
+            }
+            return matrix;
+        }
+
+        /**
+         * Parses a transform list such as <code>translate(10 10) rotate(45) scale(2)</code>,
+         * composing the transforms left to right in a single pass. An invalid transform ends
+         * the list.
+         *
+         * @return null if the list contains no valid transform
+         */
+        @Nullable
+        private Matrix parseTransform(String s) {
+            SvgParserHelper ph = mTransformParser;
+            ph.reset(s, 0);
+            float[] args = mTransformArgs;
+            Matrix matrix = null;
+            while (true) {
+                ph.skipNumberSeparator();
+                ph.skipWhitespace();
+                if (ph.isAtEnd()) {
+                    break;
+                }
+                int type;
+                if (ph.skipText("matrix")) {
+                    type = TRANSFORM_MATRIX;
+                } else if (ph.skipText("translate")) {
+                    type = TRANSFORM_TRANSLATE;
+                } else if (ph.skipText("scale")) {
+                    type = TRANSFORM_SCALE;
+                } else if (ph.skipText("rotate")) {
+                    type = TRANSFORM_ROTATE;
+                } else if (ph.skipText("skewX")) {
+                    type = TRANSFORM_SKEW_X;
+                } else if (ph.skipText("skewY")) {
+                    type = TRANSFORM_SKEW_Y;
+                } else {
+                    break;
+                }
+                ph.skipWhitespace();
+                if (!ph.skipChar('(')) {
+                    break;
+                }
+                int count = ph.nextFloats(args);
+                ph.skipWhitespace();
+                if (!ph.skipChar(')') || count == 0 || (type == TRANSFORM_MATRIX && count != 6)) {
+                    break;
                 }
+                if (matrix == null) {
+                    matrix = new Matrix();
+                }
+                switch (type) {
+                    case TRANSFORM_MATRIX:
+                        // matrix(a b c d e f) -> [a c e; b d f; 0 0 1]
+                        float b = args[1], c = args[2], d = args[3], e = args[4];
+                        args[1] = c;
+                        args[2] = e;
+                        args[3] = b;
+                        args[4] = d;
+                        args[6] = 0;
+                        args[7] = 0;
+                        args[8] = 1;
+                        if (matrix.isIdentity()) {
+                            matrix.setValues(args);
+                        } else {
+                            if (mTransformTemp == null) {
+                                mTransformTemp = new Matrix();
+                            }
+                            mTransformTemp.setValues(args);
+                            matrix.preConcat(mTransformTemp);
+                        }
+                        break;
+                    case TRANSFORM_TRANSLATE:
+                        matrix.preTranslate(args[0], count > 1 ? args[1] : 0);
+                        break;
+                    case TRANSFORM_SCALE:
+                        matrix.preScale(args[0], count > 1 ? args[1] : args[0]);
+                        break;
+                    case TRANSFORM_ROTATE:
+                        if (count > 2) {
+                            matrix.preRotate(args[0], args[1], args[2]);
+                        } else {
+                            matrix.preRotate(args[0]);
+                        }
+                        break;
+                    case TRANSFORM_SKEW_X:
+                        matrix.preSkew((float) Math.tan(Math.toRadians(args[0])), 0);
+                        break;
+                    case TRANSFORM_SKEW_Y:
+                        matrix.preSkew(0, (float) Math.tan(Math.toRadians(args[0])));
+                        break;
+                }
+            }
+            if (!ph.isAtEnd() && LOG_LEVEL >= LOG_LEVEL_WARN) {
+                Log.w(TAG, "Invalid transform '" + s + "'");
             }
+            return matrix;
         }
 
         private void popTransform() {
             if (mTransformStack.pop()) {
-                mCanvas.restore();
                 mMatrixStack.pop();
             }
         }
 
+        private void addNode(SvgNode node) {
+            mNodeStack.peek().add(node);
+        }
+
+        /**
+         * 构建一个图形节点, 并根据填充和描边计算范围
+         */
+        private void addShape(DrawElement.DrawType type, String id, Properties props, Matrix matrix,
+                              RectF rect, SvgPathData path, String data, float rx, float ry) {
+            addShape(type, id, props, matrix, rect, path == null ? null : new SvgNode.PathGeometry(path),
+                    false, data, rx, ry);
+        }
+
+        private void addShape(DrawElement.DrawType type, String id, Properties props, Matrix matrix,
+                              RectF rect, SvgNode.PathGeometry geometry, boolean sharedGeometry,
+                              String data, float rx, float ry) {
+            Paint fillPaint = null;
+            Paint strokePaint = null;
+            if (doFill(props, rect)) {
+                fillPaint = new SvgPaint(mFillPaint);
+                doLimits(rect);
+            }
+            if (doStroke(props, rect)) {
+                strokePaint = new SvgPaint(mStrokePaint);
+                doLimits(rect, mStrokePaint);
+            }
+            if (fillPaint != null || strokePaint != null) {
+                addNode(new SvgNode.Shape(type, id, props.getString("data-name"), data, matrix,
+                        rect, geometry, sharedGeometry, rx, ry, fillPaint, strokePaint, mReadingDefs));
+            }
+        }
+
+        /**
+         * Draws a path from <code>&lt;defs&gt;</code> referenced by a <code>&lt;use&gt;</code>
+         * element. The path was parsed once; the use only adds a matrix, made of its transform,
+         * its x and y, and the transform of the referenced path.
+         */
+        private void doUse(String id, SvgAttributes atts) {
+            String href = getStringAttr("href", atts);
+            if (href != null && href.startsWith("#")) {
+                href = href.substring(1);
+            }
+            PathDef def = href == null ? null : mDefs.get(href);
+            if (def == null) {
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Unresolved reference '" + href + "'");
+                }
+                return;
+            }
+            String transform = getStringAttr("transform", atts);
+            Matrix matrix = transform == null ? null : parseTransform(transform);
+            float x = getFloatAttr("x", atts, 0f);
+            float y = getFloatAttr("y", atts, 0f);
+            if (x != 0 || y != 0 || def.mMatrix != null) {
+                if (matrix == null) {
+                    matrix = new Matrix();
+                }
+                matrix.preTranslate(x, y);
+                if (def.mMatrix != null) {
+                    matrix.preConcat(def.mMatrix);
+                }
+            }
+            pushTransform(matrix);
+            Properties props = new Properties(atts, mColors);
+            boolean shared = def.mUseCount++ > 0;
+            addShape(DrawElement.DrawType.PATH, id, props, matrix, new RectF(def.mBounds),
+                    def.mGeometry, shared, def.mData, 0, 0);
+            popTransform();
+        }
+
+        /**
+         * Decodes the base64 data of an <code>&lt;image&gt;</code> element, downsampled to the
+         * size it is drawn at and to the pixels left of {@link #withMaxImagePixels(long)}.
+         *
+         * @param width  the width of the element, NaN to use the width of the image
+         * @param height the height of the element, NaN to use the height of the image
+         */
+        private void doImage(String id, Properties props, Matrix matrix, String href,
+                             float width, float height) {
+            int offset = SvgImageDecoder.getDataOffset(href);
+            if (offset < 0) {
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Unsupported image reference, only base64 data is supported");
+                }
+                return;
+            }
+            BitmapFactory.Options bounds = SvgImageDecoder.decodeBounds(href, offset);
+            if (bounds == null) {
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Failed to decode image '" + id + "'");
+                }
+                return;
+            }
+            if (Float.isNaN(width)) {
+                width = bounds.outWidth;
+            }
+            if (Float.isNaN(height)) {
+                height = bounds.outHeight;
+            }
+            RectF rect = new RectF(0, 0, width, height);
+            RectF target = new RectF(rect);
+            mMatrixStack.peek().mapRect(target);
+            long maxPixels = mSharp.mMaxImagePixels;
+            if (maxPixels > 0 && mImagePixelsLeft <= 0) {
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Skipping image '" + id + "', the image pixel budget is spent");
+                }
+                return;
+            }
+            int sampleSize = SvgImageDecoder.getSampleSize(bounds.outWidth, bounds.outHeight,
+                    target.width(), target.height(), maxPixels > 0 ? mImagePixelsLeft : 0);
+            if (sampleSize == 0) {
+                if (LOG_LEVEL >= LOG_LEVEL_WARN) {
+                    Log.w(TAG, "Skipping image '" + id + "', it exceeds the image pixel budget");
+                }
+                return;
+            }
+            Bitmap bitmap = SvgImageDecoder.decode(href, offset, sampleSize);
+            if (bitmap == null) {
+                return;
+            }
+            if (LOG_LEVEL >= LOG_LEVEL_INFO) {
+                Log.i(TAG, "Decoded image " + bounds.outWidth + "x" + bounds.outHeight
+                        + " at 1/" + sampleSize);
+            }
+            mImagePixelsLeft -= (long) bitmap.getWidth() * bitmap.getHeight();
+            addNode(new SvgNode.Image(id, props.getString("data-name"), matrix, bitmap,
+                    rect, new SvgPaint(mStrokePaint), href, offset, sampleSize, mReadingDefs));
+        }
+
         private void hide() {
             if (!hidden) {
                 hidden = true;
@@ -1879,7 +2293,7 @@ public abstract class Sharp {
             }
         }
 
-        private Align getTextAlign(Attributes atts) {
+        private Align getTextAlign(SvgAttributes atts) {
             String align = getStringAttr("text-anchor", atts);
             if (align == null) {
                 return null;
@@ -1893,7 +2307,7 @@ public abstract class Sharp {
             }
         }
 
-        private Typeface setTypeface(Attributes atts, Properties props, AssetManager assetManager, Typeface defaultTypeface) {
+        private void setTypeface(SvgAttributes atts, Properties props, AssetManager assetManager, SvgPaint paint) {
             // Prefer a dedicated attribute
             String family = getStringAttr("font-family", atts);
             if (family == null) {
@@ -1922,56 +2336,34 @@ public abstract class Sharp {
                 styleParam |= Typeface.BOLD;
             }
 
-            Typeface plain;
+            if (family == null && paint.isFontSet()) {
+                // Inherit the family of the parent text
+                family = paint.getFontFamily();
+            }
+            Typeface typeface = createTypeface(assetManager, family, styleParam, paint.getTypeface());
+            if (typeface != null) {
+                paint.setTypeface(typeface, family, styleParam);
+            }
+        }
+
+        /**
+         * 加载字体, 优先从assets/fonts/目录中加载
+         */
+        static Typeface createTypeface(AssetManager assetManager, String family, int styleParam, Typeface defaultTypeface) {
             if (family != null) {
                 // Attempt to load the typeface
                 if (assetManager != null) {
-                    Pattern pattern = Pattern.compile("'(.+?)'(?:,'(.+?)')*");
-                    Matcher matcher = pattern.matcher(family);
-                    if (matcher.matches()) {
-                        for (int i = 1; i < matcher.groupCount() + 1; i++) {
-                            if (matcher.group(i) != null) {
-                                family = matcher.group(i);
-                            }
-                        }
-                    }
-                    // Compose a filename
-                    String typefaceFile = "fonts/" + family + ".ttf";
-                    try {
-                        plain = Typeface.createFromAsset(assetManager, typefaceFile);
-                        if (LOG_LEVEL >= LOG_LEVEL_INFO) {
-                            Log.d(TAG, "Loaded typeface from assets: " + typefaceFile);
-                        }
-                    } catch (RuntimeException e) {
-                        boolean found = true;
-                        try {
-                            String[] fonts = assetManager.list("fonts/");
-                            found = false;
-                            for (String font : fonts) {
-                                if (typefaceFile.equals(font)) {
-                                    found = true;
-                                }
-                            }
-                        } catch (IOException e1) {
-                            if (LOG_LEVEL >= LOG_LEVEL_ERROR) {
-                                Log.e(TAG, "Failed listing assets directory for /fonts", e);
-                            }
-                        }
-                        if (!found) {
-                            if (LOG_LEVEL >= LOG_LEVEL_ERROR) {
-                                Log.e(TAG, "Typeface is missing from assets: " + typefaceFile);
-                            }
-                        } else {
-                            if (LOG_LEVEL >= LOG_LEVEL_ERROR) {
-                                Log.e(TAG, "Failed to create typeface from assets: " + typefaceFile, e);
-                            }
-                        }
-                        plain = null;
-                    }
+                    SvgTypefaces typefaces = SvgTypefaces.get(assetManager);
+                    Typeface plain = typefaces.getTypeface(assetManager, family);
                     if (plain != null) {
                         // Adapt the type face with the style
                         return Typeface.create(plain, styleParam);
                     }
+                    List<String> families = typefaces.getFamilies(family);
+                    if (!families.isEmpty()) {
+                        // Generic families such as sans-serif come last
+                        family = families.get(families.size() - 1);
+                    }
                 } else {
                     if (LOG_LEVEL >= LOG_LEVEL_ERROR) {
                         Log.e(TAG, "Typefaces can only be loaded if assets are provided; " +
@@ -1990,18 +2382,27 @@ public abstract class Sharp {
 
         //<editor-fold desc="xml文档处理">
 
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            // Android's parser skips external DTDs, other parsers would download them
+            return new InputSource(new StringReader(""));
+        }
+
         @Override
         public void startDocument() throws SAXException {
             // Set up prior to parsing a doc
-            mStrokePaint = new Paint();
+            mStrokePaint = new SvgPaint();
             mStrokePaint.setAntiAlias(true);
             mStrokePaint.setStyle(Paint.Style.STROKE);
 
-            mFillPaint = new Paint();
+            mFillPaint = new SvgPaint();
             mFillPaint.setAntiAlias(true);
             mFillPaint.setStyle(Paint.Style.FILL);
 
             mMatrixStack.push(new Matrix());
+
+            mNodeStack.clear();
+            mNodeStack.push(new ArrayList<SvgNode>());
         }
 
         @Override
@@ -2011,30 +2412,26 @@ public abstract class Sharp {
             mMatrixStack.clear();
         }
 
-        private DrawElement createDrawElement(DrawElement.DrawType type) {
-            DrawElement drawElement = new DrawElement();
-            drawElement.type = type;
-            drawElement.svgRect = mBounds;
-            drawElement.viewBoxStr = viewBoxStr;
-            drawElement.widthStr = widthStr;
-            drawElement.heightStr = heightStr;
-            drawElement.canvasMatrix = mCanvas.getMatrix();
-            drawElement.readingDefs = mReadingDefs;
-            drawElement.updateStack(mMatrixStack, mGroupStack);
-            return drawElement;
-        }
-
         /**
          * 接收元素开始的通知
          * [localName] 不带前缀的元素名字
          * [qName] 带前缀的元素名字
          */
         @Override
-        public void startElement(String namespaceURI, String localName, String qName, Attributes atts) throws SAXException {
+        public void startElement(String namespaceURI, String localName, String qName, Attributes attributes) throws SAXException {
+            if (mTask != null && mTask.isStopped()) {
+                // The only way to stop a SAX parser early
+                throw new SAXException("Load abandoned");
+            }
+            if (mProbing && !localName.equals("svg")) {
+                // The root element is not <svg>, there is no size to probe
+                stopProbing();
+            }
             if (!mReadIgnoreStack.empty()) {
                 // Ignore
                 return;
             }
+            SvgAttributes atts = mAttributes.reset(attributes, localName, mStyleSheet);
             String id = getStringAttr("id", atts);
 
             // Reset paint opacity
@@ -2043,25 +2440,15 @@ public abstract class Sharp {
             // Ignore everything but rectangles in bounds mode
             if (boundsMode) {
                 if (localName.equals("rect")) {
-                    Float x = getFloatAttr("x", atts);
-                    if (x == null) {
-                        x = 0f;
-                    }
-                    Float y = getFloatAttr("y", atts);
-                    if (y == null) {
-                        y = 0f;
-                    }
-                    Float width = getFloatAttr("width", atts);
-                    Float height = getFloatAttr("height", atts);
+                    float x = getFloatAttr("x", atts, 0f);
+                    float y = getFloatAttr("y", atts, 0f);
+                    float width = getFloatAttr("width", atts, 0f);
+                    float height = getFloatAttr("height", atts, 0f);
                     mBounds = new RectF(x, y, x + width, y + height);
                 }
                 return;
             }
 
-            if (!hidden && localName.equals("use")) {
-                localName = "path";
-            }
-
             if (localName.equals("svg")) {
                 float x = 0, y = 0, width = -1, height = -1;
                 viewBoxStr = getStringAttr("viewBox", atts);
@@ -2069,17 +2456,17 @@ public abstract class Sharp {
                 heightStr = getStringAttr("height", atts);
                 if (viewBoxStr != null) {
                     // Prefer viewBox
-                    String[] coords = viewBoxStr.split(" ");
+                    float[] coords = SvgParserHelper.parseFloats(viewBoxStr);
                     if (coords.length == 4) {
-                        x = parseFloat(coords[0], 0f);
-                        y = parseFloat(coords[1], 0f);
-                        width = parseFloat(coords[2], -1f);
-                        height = parseFloat(coords[3], -1f);
+                        x = coords[0];
+                        y = coords[1];
+                        width = coords[2];
+                        height = coords[3];
                     }
                 } else {
-                    Float svgWidth = getFloatAttr("width", atts);
-                    Float svgHeight = getFloatAttr("height", atts);
-                    if (svgWidth != null && svgHeight != null) {
+                    float svgWidth = getFloatAttr("width", atts, Float.NaN);
+                    float svgHeight = getFloatAttr("height", atts, Float.NaN);
+                    if (!Float.isNaN(svgWidth) && !Float.isNaN(svgHeight)) {
                         width = (int) Math.ceil(svgWidth);
                         height = (int) Math.ceil(svgHeight);
                     }
@@ -2093,12 +2480,10 @@ public abstract class Sharp {
                 }
                 mBounds = new RectF(x, y, x + width, y + height);
                 //Log.d(TAG, "svg boundaries: " + mBounds);
-                mCanvas = mPicture.beginRecording(
-                        (int) Math.ceil(mBounds.width()),
-                        (int) Math.ceil(mBounds.height()));
-                mCanvas.translate(-mBounds.left, -mBounds.top);
-                //Log.d(TAG, "canvas size: " + mCanvas.getWidth() + "x" + mCanvas.getHeight());
-                onSvgStart();
+                mCanvasBounds = new RectF(mBounds);
+                if (mProbing) {
+                    stopProbing();
+                }
             } else if (localName.equals("defs")) {
                 mReadingDefs = true;
             } else if (localName.equals("style")) {
@@ -2111,17 +2496,18 @@ public abstract class Sharp {
                 mGradient = doGradient(false, atts);
             } else if (localName.equals("stop")) {
                 if (mGradient != null) {
-                    Properties props = new Properties(atts, clsStyle);
+                    Properties props = new Properties(atts, mColors);
                     float offset = props.getFloat("offset", 0);
-                    int color = props.getColor("stop-color");
+                    Integer stopColor = props.getColor("stop-color");
+                    int color = stopColor == null ? Color.BLACK : stopColor;
                     float alpha = props.getFloat("stop-opacity", 1);
-                    int alphaInt = Math.round(255 * alpha);
-                    color |= (alphaInt << 24);
+                    int alphaInt = Math.round((color >>> 24) * alpha);
+                    color = (color & 0xFFFFFF) | (alphaInt << 24);
                     mGradient.mPositions.add(offset);
                     mGradient.mColors.add(color);
                 }
             } else if (localName.equals("g")) {
-                Properties props = new Properties(atts, clsStyle);
+                Properties props = new Properties(atts, mColors);
                 // Check to see if this is the "bounds" layer
                 if ("bounds".equalsIgnoreCase(id)) {
                     boundsMode = true;
@@ -2137,30 +2523,16 @@ public abstract class Sharp {
                     }
                 }
 
-                // If the group has an applied opacity, start drawing in a new canvas
-                Float opacity = getFloatAttr("opacity", atts);
-                if (opacity == null) {
-                    opacity = props.getFloat("opacity");
-                }
-                if (opacity != null && opacity < 1f) {
-                    // FIXME Ideally, we should compute the bounds of the enclosed group, and create
-                    //       the layer exactly to its size; see issue #6
-                    // Apply inverse of matrix to correct for any transformations
-                    // It's okay to use getMatrix() here as we may assume its a software layer
-                    Matrix m = mCanvas.getMatrix();
-                    m.invert(m);
-                    RectF r = new RectF(0, 0, mCanvas.getWidth(), mCanvas.getHeight());
-                    m.mapRect(r);
-                    // Store the layer with the opacity value
-                    mCanvas.saveLayerAlpha(r, (int) (255 * opacity), Canvas.ALL_SAVE_FLAG);
-                } else {
-                    mCanvas.save();
+                // If the group has an applied opacity, it is drawn in a new layer
+                float opacity = getFloatAttr("opacity", atts, Float.NaN);
+                if (Float.isNaN(opacity)) {
+                    opacity = props.getFloat("opacity", 1f);
                 }
 
-                pushTransform(atts);
+                Matrix matrix = pushTransform(atts);
 
-                mFillPaintStack.push(new Paint(mFillPaint));
-                mStrokePaintStack.push(new Paint(mStrokePaint));
+                mFillPaintStack.push(new SvgPaint(mFillPaint));
+                mStrokePaintStack.push(new SvgPaint(mStrokePaint));
                 mFillSetStack.push(mFillSet);
                 mStrokeSetStack.push(mStrokeSet);
 
@@ -2170,28 +2542,28 @@ public abstract class Sharp {
                 mFillSet |= (props.getString("fill") != null);
                 mStrokeSet |= (props.getString("stroke") != null);
 
-                SvgGroup group = new SvgGroup(id);
-                mGroupStack.push(group);
-                // FIXME compute bounds before drawing?
-                onSvgElement(id, group, null, null);
+                SvgNode.Group group = new SvgNode.Group(new SvgGroup(id), matrix,
+                        opacity < 1f ? opacity : 1f, mReadingDefs);
+                addNode(group);
+                mNodeStack.push(group.mChildren);
             } else if (!hidden && localName.equals("rect")) {
-                Float x = getFloatAttr("x", atts, 0f);
-                Float y = getFloatAttr("y", atts, 0f);
-
-                Float width = getFloatAttr("width", atts);
-                Float height = getFloatAttr("height", atts);
-                Float rx = getFloatAttr("rx", atts);
-                Float ry = getFloatAttr("ry", atts);
-                if (ry == null) {
+                float x = getFloatAttr("x", atts, 0f);
+                float y = getFloatAttr("y", atts, 0f);
+
+                float width = getFloatAttr("width", atts, 0f);
+                float height = getFloatAttr("height", atts, 0f);
+                float rx = getFloatAttr("rx", atts, Float.NaN);
+                float ry = getFloatAttr("ry", atts, Float.NaN);
+                if (Float.isNaN(ry)) {
                     ry = rx;
                 }
-                if (rx == null) {
+                if (Float.isNaN(rx)) {
                     rx = ry;
                 }
-                if (rx == null || rx < 0) {
+                if (Float.isNaN(rx) || rx < 0) {
                     rx = 0f;
                 }
-                if (ry == null || ry < 0) {
+                if (Float.isNaN(ry) || ry < 0) {
                     ry = 0f;
                 }
                 if (rx > width / 2) {
@@ -2200,264 +2572,112 @@ public abstract class Sharp {
                 if (ry > height / 2) {
                     ry = height / 2;
                 }
-                pushTransform(atts);
-                Properties props = new Properties(atts, clsStyle);
-                mRect.set(x, y, x + width, y + height);
-
-                DrawElement drawElement = createDrawElement(DrawElement.DrawType.ROUND_RECT);
-                drawElement.element = mRect;
-                drawElement.rx = rx;
-                drawElement.ry = ry;
-                drawElement.dataName = props.getString("data-name");
-                if (doFill(props, mRect)) {
-                    mRect = onSvgElement(id, mRect, mRect, mFillPaint);
-                    if (mRect != null) {
-                        drawElement.paint = mFillPaint;
-                        drawElement.element = mRect;
-                        if (!onCanvasDraw(mCanvas, drawElement)) {
-                            mCanvas.drawRoundRect(mRect, rx, ry, mFillPaint);
-                            onSvgElementDrawn(id, mRect, mFillPaint);
-                        }
-                    }
-                    doLimits(mRect);
-                }
-                if (doStroke(props, mRect)) {
-                    mRect = onSvgElement(id, mRect, mRect, mStrokePaint);
-                    if (mRect != null) {
-                        drawElement.paint = mStrokePaint;
-                        drawElement.element = mRect;
-                        if (!onCanvasDraw(mCanvas, drawElement)) {
-                            mCanvas.drawRoundRect(mRect, rx, ry, mStrokePaint);
-                            onSvgElementDrawn(id, mRect, mStrokePaint);
-                        }
-                    }
-                    doLimits(mRect, mStrokePaint);
-                }
+                Matrix matrix = pushTransform(atts);
+                Properties props = new Properties(atts, mColors);
+                RectF rect = new RectF(x, y, x + width, y + height);
+                addShape(DrawElement.DrawType.ROUND_RECT, id, props, matrix, rect, null, null, rx, ry);
                 popTransform();
             } else if (!hidden && localName.equals("line")) {
-                Float x1 = getFloatAttr("x1", atts);
-                Float x2 = getFloatAttr("x2", atts);
-                Float y1 = getFloatAttr("y1", atts);
-                Float y2 = getFloatAttr("y2", atts);
-                Properties props = new Properties(atts, clsStyle);
-                if (doStroke(props, mRect, "black")) {
-                    pushTransform(atts);
-                    mLine.set(x1, y1, x2, y2);
-                    mRect.set(mLine);
-                    mLine = onSvgElement(id, mLine, mRect, mStrokePaint);
-                    if (mLine != null) {
-                        DrawElement drawElement = createDrawElement(DrawElement.DrawType.LINE);
-                        drawElement.paint = mStrokePaint;
-                        drawElement.element = mLine;
-                        drawElement.dataName = props.getString("data-name");
-                        if (!onCanvasDraw(mCanvas, drawElement)) {
-                            mCanvas.drawLine(mLine.left, mLine.top, mLine.right, mLine.bottom, mStrokePaint);
-                            onSvgElementDrawn(id, mLine, mStrokePaint);
-                        }
-                    }
-                    doLimits(mRect, mStrokePaint);
+                float x1 = getFloatAttr("x1", atts, 0f);
+                float x2 = getFloatAttr("x2", atts, 0f);
+                float y1 = getFloatAttr("y1", atts, 0f);
+                float y2 = getFloatAttr("y2", atts, 0f);
+                Properties props = new Properties(atts, mColors);
+                RectF line = new RectF(x1, y1, x2, y2);
+                if (doStroke(props, line, "black")) {
+                    Matrix matrix = pushTransform(atts);
+                    addNode(new SvgNode.Shape(DrawElement.DrawType.LINE, id, props.getString("data-name"), null,
+                            matrix, line, null, 0, 0, null, new SvgPaint(mStrokePaint), mReadingDefs));
+                    doLimits(line, mStrokePaint);
                     popTransform();
                 }
             } else if (!hidden && (localName.equals("circle") || localName.equals("ellipse"))) {
-                Float centerX, centerY, radiusX, radiusY;
+                float centerX, centerY, radiusX, radiusY;
 
-                centerX = getFloatAttr("cx", atts);
-                centerY = getFloatAttr("cy", atts);
+                centerX = getFloatAttr("cx", atts, 0f);
+                centerY = getFloatAttr("cy", atts, 0f);
                 if (localName.equals("ellipse")) {
-                    radiusX = getFloatAttr("rx", atts);
-                    radiusY = getFloatAttr("ry", atts);
+                    radiusX = getFloatAttr("rx", atts, Float.NaN);
+                    radiusY = getFloatAttr("ry", atts, Float.NaN);
                 } else {
-                    radiusX = radiusY = getFloatAttr("r", atts);
-                }
-                if (centerX != null && centerY != null && radiusX != null && radiusY != null) {
-                    pushTransform(atts);
-                    Properties props = new Properties(atts, clsStyle);
-                    mRect.set(centerX - radiusX, centerY - radiusY, centerX + radiusX, centerY + radiusY);
-
-                    DrawElement drawElement = createDrawElement(DrawElement.DrawType.OVAL);
-                    drawElement.dataName = props.getString("data-name");
-                    if (doFill(props, mRect)) {
-                        mRect = onSvgElement(id, mRect, mRect, mFillPaint);
-                        if (mRect != null) {
-                            drawElement.paint = mFillPaint;
-                            drawElement.element = mRect;
-                            if (!onCanvasDraw(mCanvas, drawElement)) {
-                                mCanvas.drawOval(mRect, mFillPaint);
-                                onSvgElementDrawn(id, mRect, mFillPaint);
-                            }
-                        }
-                        doLimits(mRect);
-                    }
-                    if (doStroke(props, mRect)) {
-                        mRect = onSvgElement(id, mRect, mRect, mStrokePaint);
-                        if (mRect != null) {
-                            drawElement.paint = mStrokePaint;
-                            drawElement.element = mRect;
-                            if (!onCanvasDraw(mCanvas, drawElement)) {
-                                mCanvas.drawOval(mRect, mStrokePaint);
-                                onSvgElementDrawn(id, mRect, mStrokePaint);
-                            }
-                        }
-                        doLimits(mRect, mStrokePaint);
-                    }
+                    radiusX = radiusY = getFloatAttr("r", atts, Float.NaN);
+                }
+                if (!Float.isNaN(radiusX) && !Float.isNaN(radiusY)) {
+                    Matrix matrix = pushTransform(atts);
+                    Properties props = new Properties(atts, mColors);
+                    RectF rect = new RectF(centerX - radiusX, centerY - radiusY, centerX + radiusX, centerY + radiusY);
+                    addShape(DrawElement.DrawType.OVAL, id, props, matrix, rect, null, null, 0, 0);
                     popTransform();
                 }
             } else if (!hidden && (localName.equals("polygon") || localName.equals("polyline"))) {
-                ArrayList<Float> points = getNumberParseAttr("points", atts);
+                float[] points = getFloatsAttr("points", atts);
                 if (points != null) {
-                    Path p = new Path();
-                    if (points.size() > 1) {
-                        pushTransform(atts);
-                        Properties props = new Properties(atts, clsStyle);
-                        p.moveTo(points.get(0), points.get(1));
-                        for (int i = 2; i < points.size(); i += 2) {
-                            float x = points.get(i);
-                            float y = points.get(i + 1);
-                            p.lineTo(x, y);
+                    SvgPathData p = new SvgPathData();
+                    if (points.length > 1) {
+                        Matrix matrix = pushTransform(atts);
+                        Properties props = new Properties(atts, mColors);
+                        p.moveTo(points[0], points[1]);
+                        // An odd trailing coordinate is ignored
+                        for (int i = 2; i + 1 < points.length; i += 2) {
+                            p.lineTo(points[i], points[i + 1]);
                         }
                         // Don't close a polyline
                         boolean closePath = localName.equals("polygon");
                         if (closePath) {
                             p.close();
                         }
-                        p.computeBounds(mRect, false);
-
-                        DrawElement drawElement = createDrawElement(DrawElement.DrawType.PATH);
-                        drawElement.pathBounds = mRect;
-                        drawElement.dataName = props.getString("data-name");
-                        drawElement.updatePointsData(points, closePath);
-                        if (doFill(props, mRect)) {
-                            p = onSvgElement(id, p, mRect, mFillPaint);
-                            if (p != null) {
-                                drawElement.paint = mFillPaint;
-                                drawElement.element = p;
-                                if (!onCanvasDraw(mCanvas, drawElement)) {
-                                    mCanvas.drawPath(p, mFillPaint);
-                                    onSvgElementDrawn(id, p, mFillPaint);
-                                }
-                            }
-                            doLimits(mRect);
-                        }
-                        if (doStroke(props, mRect)) {
-                            p = onSvgElement(id, p, mRect, mStrokePaint);
-                            if (p != null) {
-                                drawElement.paint = mStrokePaint;
-                                drawElement.element = p;
-                                if (!onCanvasDraw(mCanvas, drawElement)) {
-                                    mCanvas.drawPath(p, mStrokePaint);
-                                    onSvgElementDrawn(id, p, mStrokePaint);
-                                }
-                            }
-                            doLimits(mRect, mStrokePaint);
-                        }
+                        RectF rect = new RectF();
+                        p.computeBounds(rect);
+
+                        // The data is only built from the path if a listener asks for it
+                        addShape(DrawElement.DrawType.PATH, id, props, matrix, rect, p, null, 0, 0);
                         popTransform();
                     }
                 }
+            } else if (!hidden && localName.equals("use")) {
+                doUse(id, atts);
             } else if (!hidden && localName.equals("path")) {
                 String d = getStringAttr("d", atts);
 
                 if (mReadingDefs) {
-                    mDefs.put(id, getStringAttr("d", atts));
+                    if (id != null && !TextUtils.isEmpty(d)) {
+                        SvgPathData p = doPathData(d);
+                        String transform = getStringAttr("transform", atts);
+                        mDefs.put(id, new PathDef(d, p, transform == null ? null : parseTransform(transform)));
+                    }
                     return;
                 } else if (TextUtils.isEmpty(d)) {
-                    String href = getStringAttr("href", atts);
-                    if (href != null && href.startsWith("#")) {
-                        href = href.substring(1);
-                    }
-                    if (href != null && mDefs.containsKey(href)) {
-                        d = mDefs.get(href);
-                    }
-                    if (TextUtils.isEmpty(d)) {
-                        return;
-                    }
-                }
-                Path p = doPath(d);
-                pushTransform(atts);
-                Properties props = new Properties(atts, clsStyle);
-                p.computeBounds(mRect, false);
-
-                DrawElement drawElement = createDrawElement(DrawElement.DrawType.PATH);
-                drawElement.data = d;
-                drawElement.pathBounds = mRect;
-                drawElement.dataName = props.getString("data-name");
-                if (doFill(props, mRect)) {
-                    p = onSvgElement(id, p, mRect, mFillPaint);
-                    if (p != null) {
-                        drawElement.paint = mFillPaint;
-                        drawElement.element = p;
-                        if (!onCanvasDraw(mCanvas, drawElement)) {
-                            mCanvas.drawPath(p, mFillPaint);
-                            onSvgElementDrawn(id, p, mFillPaint);
-                        }
-                    }
-                    doLimits(mRect);
-                }
-                if (doStroke(props, mRect)) {
-                    p = onSvgElement(id, p, mRect, mStrokePaint);
-                    if (p != null) {
-                        drawElement.paint = mStrokePaint;
-                        drawElement.element = p;
-                        if (!onCanvasDraw(mCanvas, drawElement)) {
-                            mCanvas.drawPath(p, mStrokePaint);
-                            onSvgElementDrawn(id, p, mStrokePaint);
-                        }
-                    }
-                    doLimits(mRect, mStrokePaint);
+                    // A path referencing a path in <defs>, as written by some editors
+                    doUse(id, atts);
+                    return;
                 }
+                SvgPathData p = doPathData(d);
+                Matrix matrix = pushTransform(atts);
+                Properties props = new Properties(atts, mColors);
+                RectF rect = new RectF();
+                p.computeBounds(rect);
+                addShape(DrawElement.DrawType.PATH, id, props, matrix, rect, p, d, 0, 0);
                 popTransform();
             } else if (!hidden && localName.equals("image")) {
                 //解析svg标签中的image标签
-                Properties props = new Properties(atts, clsStyle);
-
+                Properties props = new Properties(atts, mColors);
 
                 if (!"none".equals(props.getString("display"))) {
-                    pushTransform(atts);
-                    Float width = getFloatAttr("width", atts);
-                    Float height = getFloatAttr("height", atts);
+                    Matrix matrix = pushTransform(atts);
+                    float width = getFloatAttr("width", atts, Float.NaN);
+                    float height = getFloatAttr("height", atts, Float.NaN);
                     String href = getStringAttr("href", atts);
-
-                    if (href != null && href.startsWith("#")) {
-                        href = href.substring(1);
-                    }
-                    if (href != null && mDefs.containsKey(href)) {
-                        href = mDefs.get(href);
-                    }
-                    //如果href是base64图片数据格式
-                    if (href != null && href.startsWith("data:image/")) {
-                        //data:image/png;base64,iVBORw0KGgoAAAAN
-                        int index = href.indexOf("base64,");
-                        if (index > 0) {
-                            href = href.substring(index + 7);
-                        }
-                        byte[] bytes = Base64.decode(href, Base64.DEFAULT);
-                        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-
-                        if (bitmap != null) {
-                            if (width == null) {
-                                width = (float) bitmap.getWidth();
-                            }
-                            if (height == null) {
-                                height = (float) bitmap.getHeight();
-                            }
-                            mRect.set(0, 0, width, height);
-                            DrawElement drawElement = createDrawElement(DrawElement.DrawType.IMAGE);
-                            drawElement.paint = mStrokePaint;
-                            drawElement.element = bitmap;
-                            drawElement.dataName = props.getString("data-name");
-
-                            if (!onCanvasDraw(mCanvas, drawElement)) {
-                                mCanvas.drawBitmap(bitmap, null, mRect, mStrokePaint);
-                                onSvgElementDrawn(id, bitmap, mStrokePaint);
-                            }
-                        }
+                    if (href != null) {
+                        doImage(id, props, matrix, href, width, height);
                     }
+                    popTransform();
                 }
-                popTransform();
             } else if (!hidden && localName.equals("text")) {
-                pushTransform(atts);
-                mTextStack.push(new SvgText(atts, mTextStack.isEmpty() ? null : mTextStack.peek()));
+                Matrix matrix = pushTransform(atts);
+                mTextNode = new SvgNode.Text(matrix, mReadingDefs);
+                mTextStack.push(new SvgText(this, atts, mTextStack.isEmpty() ? null : mTextStack.peek()));
             } else if (!hidden && localName.equals("tspan")) {
-                mTextStack.push(new SvgText(atts, mTextStack.isEmpty() ? null : mTextStack.peek()));
+                mTextStack.push(new SvgText(this, atts, mTextStack.isEmpty() ? null : mTextStack.peek()));
             } else if (!hidden && localName.equals("clipPath")) {
                 hide();
                 if (LOG_LEVEL >= LOG_LEVEL_WARN) {
@@ -2490,19 +2710,27 @@ public abstract class Sharp {
                 return;
             }
             switch (localName) {
-                case "svg":
-                    onSvgEnd();
-                    mPicture.endRecording();
-                    break;
                 case "text":
                 case "tspan":
                     if (!mTextStack.isEmpty()) {
                         SvgText text = mTextStack.pop();
                         if (text != null) {
-                            text.render(mCanvas);
+                            text.layout();
+                            if (mTextNode != null) {
+                                mTextNode.mSpans.add(text);
+                            } else {
+                                // A <tspan> outside of any <text>
+                                SvgNode.Text node = new SvgNode.Text(null, mReadingDefs);
+                                node.mSpans.add(text);
+                                addNode(node);
+                            }
                         }
                     }
                     if (localName.equals("text")) {
+                        if (mTextNode != null) {
+                            addNode(mTextNode);
+                            mTextNode = null;
+                        }
                         popTransform();
                     }
                     break;
@@ -2521,8 +2749,7 @@ public abstract class Sharp {
                     mReadingStyle = false;
                     break;
                 case "g":
-                    SvgGroup group = mGroupStack.pop();
-                    onSvgElementDrawn(group.id, group, null);
+                    mNodeStack.pop();
 
                     if (boundsMode) {
                         boundsMode = false;
@@ -2536,9 +2763,6 @@ public abstract class Sharp {
                     mFillSet = mFillSetStack.pop();
                     mStrokePaint = mStrokePaintStack.pop();
                     mStrokeSet = mStrokeSetStack.pop();
-
-                    // Restore the previous canvas
-                    mCanvas.restore();
                     break;
                 case "clipPath":
                     // Break out of hidden mode
@@ -2553,7 +2777,7 @@ public abstract class Sharp {
         @Override
         public void characters(char[] ch, int start, int length) {
             if (!mTextStack.isEmpty()) {
-                mTextStack.peek().setText(ch, start, length);
+                mTextStack.peek().setText(ch, start, length, mSharp.mTexts);
             }
             if (mReadingStyle) {
                 mStyleText.append(ch, start, length);
@@ -2562,7 +2786,27 @@ public abstract class Sharp {
 
         //</editor-fold desc="xml文档处理">
 
-        public class SvgGroup {
+        /**
+         * A path declared in <code>&lt;defs&gt;</code>, parsed once for all its uses.
+         */
+        private static final class PathDef {
+            final String mData;
+            final SvgNode.PathGeometry mGeometry;
+            final RectF mBounds = new RectF();
+            //path自身的transform
+            @Nullable
+            final Matrix mMatrix;
+            int mUseCount;
+
+            PathDef(String data, SvgPathData pathData, @Nullable Matrix matrix) {
+                mData = data;
+                mGeometry = new SvgNode.PathGeometry(pathData);
+                pathData.computeBounds(mBounds);
+                mMatrix = matrix;
+            }
+        }
+
+        public static class SvgGroup {
 
             @Nullable
             public final String id;
@@ -2575,7 +2819,7 @@ public abstract class Sharp {
         /**
          * Holds text properties as these are only applied with the end tag is encountered.
          */
-        public class SvgText {
+        public static class SvgText {
 
             public final static int LEFT = 0;
             public final static int CENTER = 1;
@@ -2595,7 +2839,37 @@ public abstract class Sharp {
             public RectF bounds = new RectF();
             public String dataName;
 
-            public SvgText(Attributes atts, SvgText parentText) {
+            /**
+             * A copy whose paints and bounds can be modified without touching the original
+             */
+            SvgText(SvgText other) {
+                id = other.id;
+                dataName = other.dataName;
+                x = other.x;
+                y = other.y;
+                xOffset = other.xOffset;
+                yOffset = other.yOffset;
+                xCoords = other.xCoords != null ? other.xCoords.clone() : null;
+                stroke = other.stroke != null ? new SvgPaint(other.stroke) : null;
+                fill = other.fill != null ? new SvgPaint(other.fill) : null;
+                text = other.text;
+                hAlign = other.hAlign;
+                vAlign = other.vAlign;
+                bounds = new RectF(other.bounds);
+            }
+
+            /**
+             * Restores a text, e.g. from a compiled document
+             */
+            SvgText(String id, String dataName, float x, float y, String[] xCoords) {
+                this.id = id;
+                this.dataName = dataName;
+                this.x = x;
+                this.y = y;
+                this.xCoords = xCoords;
+            }
+
+            SvgText(SvgHandler handler, SvgAttributes atts, SvgText parentText) {
                 id = getStringAttr("id", atts);
                 dataName = getStringAttr("data-name", atts);
                 String xStr = getStringAttr("x", atts);
@@ -2606,28 +2880,30 @@ public abstract class Sharp {
                     xCoords = xStr.split("[, ]");
                 } else {
                     // x is a single coordinate
-                    x = parseFloat(xStr, parentText != null ? parentText.x : 0f);
+                    x = handler.parseFloat(xStr, parentText != null ? parentText.x : 0f);
                     xCoords = parentText != null ? parentText.xCoords : null;
                 }
-                y = getFloatAttr("y", atts, parentText != null ? parentText.y : 0f);
+                y = handler.getFloatAttr("y", atts, parentText != null ? parentText.y : 0f);
                 text = null;
 
-                Properties props = new Properties(atts, clsStyle);
-                if (doFill(props, null)) {
-                    fill = new TextPaint(parentText != null && parentText.fill != null
+                Properties props = new Properties(atts, handler.mColors);
+                if (handler.doFill(props, null)) {
+                    SvgPaint paint = new SvgPaint(parentText != null && parentText.fill != null
                             ? parentText.fill
-                            : mFillPaint);
+                            : handler.mFillPaint);
                     // Fix for https://code.google.com/p/android/issues/detail?id=39755
-                    fill.setLinearText(true);
-                    doText(atts, props, fill);
+                    paint.setLinearText(true);
+                    handler.doText(atts, props, paint);
+                    fill = paint;
                 }
-                if (doStroke(props, null)) {
-                    stroke = new TextPaint(parentText != null && parentText.stroke != null
+                if (handler.doStroke(props, null)) {
+                    SvgPaint paint = new SvgPaint(parentText != null && parentText.stroke != null
                             ? parentText.stroke
-                            : mStrokePaint);
+                            : handler.mStrokePaint);
                     // Fix for https://code.google.com/p/android/issues/detail?id=39755
-                    stroke.setLinearText(true);
-                    doText(atts, props, stroke);
+                    paint.setLinearText(true);
+                    handler.doText(atts, props, paint);
+                    stroke = paint;
                 }
                 // Horizontal alignment
                 String halign = getStringAttr("text-align", atts);
@@ -2660,24 +2936,35 @@ public abstract class Sharp {
             }
 
             public void setText(char[] ch, int start, int len) {
+                setText(ch, start, len, null);
+            }
+
+            void setText(char[] ch, int start, int len, @Nullable Map<String, String> texts) {
                 if (text == null) {
                     text = new String(ch, start, len);
                 } else {
                     text += new String(ch, start, len);
                 }
-                if (sTextDynamic != null && sTextDynamic.containsKey(text)) {
-                    text = sTextDynamic.get(text);
+                if (texts != null && texts.containsKey(text)) {
+                    text = texts.get(text);
                 }
             }
 
-            public void render(Canvas canvas) {
+            /**
+             * 根据对齐方式计算绘制偏移和范围, 在元素结束时调用一次
+             */
+            void layout() {
                 if (text == null) {
                     // Nothing to draw
                     return;
                 }
+                Paint paint = stroke == null ? fill : stroke;
+                if (paint == null) {
+                    // Neither filled nor stroked
+                    return;
+                }
                 // Correct vertical alignment
                 Rect bounds = new Rect();
-                Paint paint = stroke == null ? fill : stroke;
                 paint.getTextBounds(text, 0, text.length(), bounds);
                 //Log.d(TAG, "Adjusting y=" + y + " for boundaries=" + bounds);
                 switch (vAlign) {
@@ -2704,66 +2991,6 @@ public abstract class Sharp {
                         xOffset = -width;
                 }
                 this.bounds.set(x, y, x + width, y + bounds.height());
-
-                //Log.i(TAG, "Drawing: " + text + " " + x + "," + y);
-                if (text != null) {
-                    if (fill != null) {
-                        drawText(canvas, this, true);
-                    }
-                    if (stroke != null) {
-                        drawText(canvas, this, false);
-                    }
-                }
-            }
-
-            private void drawText(Canvas canvas, SvgText text, boolean fill) {
-                TextPaint paint = fill ? text.fill : text.stroke;
-                text = onSvgElement(id, text, text.bounds, paint);
-
-                DrawElement drawElement = createDrawElement(DrawElement.DrawType.TEXT);
-                drawElement.paint = paint;
-                drawElement.element = text;
-                drawElement.dataName = text.dataName;
-
-                if (!onCanvasDraw(canvas, drawElement)) {
-                    if (text != null) {
-                        if (text.xCoords != null && text.xCoords.length > 0) {
-                            // Draw each glyph separately according to their x coordinates
-                            int i = 0;
-                            Float thisX = parseFloat(text.xCoords[0], null);
-                            Float nextX = 0f;
-                            if (thisX != null) {
-                                float x = thisX;
-                                for (i = 0; i < text.text.length(); i++) {
-                                    if (i >= text.xCoords.length) {
-                                        // Break early so we can draw the rest of the characters in one go
-                                        i--;
-                                        break;
-                                    }
-                                    if (i + 1 < text.xCoords.length) {
-                                        nextX = parseFloat(text.xCoords[i + 1], null);
-                                        if (nextX == null) {
-                                            // Break early so we can draw the rest of the characters in one go
-                                            i--;
-                                            break;
-                                        }
-                                    }
-                                    // Draw the glyph
-                                    String s = new String(new char[]{text.text.charAt(i)});
-                                    canvas.drawText(s, x + text.xOffset, text.y + text.yOffset, paint);
-                                    x = nextX;
-                                }
-                            }
-                            if (i < text.text.length()) {
-                                canvas.drawText(text.text.substring(i), x + text.xOffset, text.y + text.yOffset, paint);
-                            }
-                        } else {
-                            // Draw the entire string //绘制完整的字符串
-                            canvas.drawText(text.text, text.x + text.xOffset, text.y + text.yOffset, paint);
-                        }
-                        onSvgElementDrawn(text.id, text, paint);
-                    }
-                }
             }
         }
     }
@@ -2775,4 +3002,8 @@ public abstract class Sharp {
     public interface PictureCallback {
         void onPictureReady(SharpPicture sharpPicture);
     }
+
+    public interface ErrorCallback {
+        void onError(SvgParseException e);
+    }
 }
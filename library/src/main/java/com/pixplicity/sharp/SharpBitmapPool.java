@@ -0,0 +1,302 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An optional, process-wide pool of bitmaps for the caches of {@link SharpDrawable} and for
+ * {@link com.angcyo.svg.Svg#pathToBitmap(android.graphics.Path, android.graphics.Paint.Style)}.
+ * <p>
+ * Once installed, bitmaps that a cache drops are kept in the pool instead of being recycled, and
+ * new bitmaps are taken from the pool and reconfigured to the size needed, instead of being
+ * allocated. Resizing a drawable then reuses the same few large allocations. Bitmaps a cache
+ * drew on a hardware-accelerated canvas are still recycled, as a display list may draw them
+ * later. Pooled bitmaps are
+ * bucketed by allocation size, and a request only takes a bitmap up to
+ * {@link #MAX_SIZE_MULTIPLE} times larger than it needs.
+ * <p>
+ * The pool holds at most the given number of bytes, dropping the bitmaps pooled longest ago
+ * first, and empties itself when the system runs low on memory, after trimming the caches of
+ * {@link SharpDrawable} as {@link SharpDrawable#trimMemory(int)} does:
+ * <pre>
+ * SharpBitmapPool.install(context, 16 * 1024 * 1024);
+ * </pre>
+ * Reconfiguring needs API 19; on older versions the pool keeps nothing.
+ */
+public final class SharpBitmapPool implements ComponentCallbacks2 {
+
+    /**
+     * A request takes no pooled bitmap more than this many times larger than it needs.
+     */
+    public static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static volatile SharpBitmapPool sInstance;
+
+    //分配大小 -> 该大小的位图
+    private final TreeMap<Integer, List<Bitmap>> mBuckets = new TreeMap<>();
+    //所有位图, 按放入的顺序排列
+    private final LinkedHashMap<Bitmap, Integer> mBitmaps = new LinkedHashMap<>();
+    private long mMaxSize;
+    private long mSize;
+    private int mHitCount;
+    private int mMissCount;
+
+    private SharpBitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Installs a pool of the given size, replacing any installed pool, and registers it for
+     * memory trim callbacks.
+     *
+     * @param maxSize the maximum size of all pooled bitmaps, in bytes
+     */
+    @NonNull
+    public static SharpBitmapPool install(@NonNull Context context, long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        SharpBitmapPool previous = sInstance;
+        if (previous != null) {
+            app.unregisterComponentCallbacks(previous);
+            previous.clear();
+        }
+        SharpBitmapPool pool = new SharpBitmapPool(maxSize);
+        app.registerComponentCallbacks(pool);
+        sInstance = pool;
+        return pool;
+    }
+
+    /**
+     * Removes the installed pool, if any, recycling its bitmaps.
+     */
+    @SuppressWarnings("unused")
+    public static void uninstall(@NonNull Context context) {
+        SharpBitmapPool pool = sInstance;
+        if (pool != null) {
+            sInstance = null;
+            Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            app.unregisterComponentCallbacks(pool);
+            pool.clear();
+        }
+    }
+
+    /**
+     * @return the installed pool, or null if none is installed
+     */
+    @SuppressWarnings("unused")
+    public static SharpBitmapPool getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * A cleared mutable bitmap, from the installed pool if it has a fitting one.
+     *
+     * @throws OutOfMemoryError like {@link Bitmap#createBitmap(int, int, Bitmap.Config)}
+     */
+    @NonNull
+    public static Bitmap obtain(int width, int height, @NonNull Bitmap.Config config) {
+        SharpBitmapPool pool = sInstance;
+        if (pool != null) {
+            Bitmap bitmap = pool.get(width, height, config);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands a bitmap that is no longer used to the installed pool, or recycles it if there is
+     * no pool or it does not fit. The bitmap must not be used afterwards.
+     */
+    public static void release(@NonNull Bitmap bitmap) {
+        SharpBitmapPool pool = sInstance;
+        if (pool == null || !pool.put(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return null;
+        }
+        long needed = (long) width * height * getBytesPerPixel(config);
+        Map.Entry<Integer, List<Bitmap>> bucket = needed <= Integer.MAX_VALUE
+                ? mBuckets.ceilingEntry((int) needed)
+                : null;
+        if (bucket == null || bucket.getKey() > needed * MAX_SIZE_MULTIPLE) {
+            mMissCount++;
+            return null;
+        }
+        List<Bitmap> bitmaps = bucket.getValue();
+        Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+        if (bitmaps.isEmpty()) {
+            mBuckets.remove(bucket.getKey());
+        }
+        mBitmaps.remove(bitmap);
+        mSize -= bucket.getKey();
+        try {
+            bitmap.reconfigure(width, height, config);
+        } catch (IllegalArgumentException e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to reconfigure pooled bitmap", e);
+            }
+            bitmap.recycle();
+            mMissCount++;
+            return null;
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        mHitCount++;
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private synchronized boolean put(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return false;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > mMaxSize / 2 || mBitmaps.containsKey(bitmap)) {
+            // Would evict most of the pool
+            return false;
+        }
+        List<Bitmap> bitmaps = mBuckets.get(size);
+        if (bitmaps == null) {
+            bitmaps = new ArrayList<>(2);
+            mBuckets.put(size, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mBitmaps.put(bitmap, size);
+        mSize += size;
+        trimToSize(mMaxSize);
+        return true;
+    }
+
+    /**
+     * Recycles the bitmaps pooled longest ago until the pool is no larger than the given size.
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<Bitmap, Integer>> iterator = mBitmaps.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<Bitmap, Integer> eldest = iterator.next();
+            Bitmap bitmap = eldest.getKey();
+            int size = eldest.getValue();
+            iterator.remove();
+            List<Bitmap> bitmaps = mBuckets.get(size);
+            bitmaps.remove(bitmap);
+            if (bitmaps.isEmpty()) {
+                mBuckets.remove(size);
+            }
+            mSize -= size;
+            bitmap.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // The dropped levels land in the pool first
+        SharpMipmaps.trimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(size() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        SharpMipmaps.trimMemory(TRIM_MEMORY_COMPLETE);
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * @return the size of all pooled bitmaps, in bytes
+     */
+    @SuppressWarnings("unused")
+    public synchronized long size() {
+        return mSize;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized long maxSize() {
+        return mMaxSize;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SharpBitmapPool[size=" + mSize + ",maxSize=" + mMaxSize + ",bitmaps=" + mBitmaps.size()
+                + ",hits=" + mHitCount + ",misses=" + mMissCount + "]";
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
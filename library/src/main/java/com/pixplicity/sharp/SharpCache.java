@@ -0,0 +1,209 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An optional, process-wide cache of parsed {@link SvgDocument}s.
+ * <p>
+ * Once installed, {@link Sharp#loadResource(android.content.res.Resources, int)},
+ * {@link Sharp#loadAsset(android.content.res.AssetManager, String)},
+ * {@link Sharp#loadFile(java.io.File)} and {@link Sharp#loadString(String)} parse an SVG only
+ * once; later loads of the same SVG share the cached document, which is immutable. Files are
+ * keyed by path, modification time and length, strings by a hash of their content.
+ * <p>
+ * The cache holds at most the given number of bytes, as estimated from the geometry, paints and
+ * bitmaps of its documents, and evicts the least recently used documents first:
+ * <pre>
+ * SharpCache.install(4 * 1024 * 1024);
+ * </pre>
+ * Documents loaded while dynamic texts are set (see {@link Sharp#prepareTexts(java.util.HashMap)})
+ * are never cached. Cached documents are shared, so element listeners should not modify the
+ * elements they receive.
+ */
+public final class SharpCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile SharpCache sInstance;
+
+    private final LinkedHashMap<String, SvgDocument> mDocuments = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMaxSize;
+    private long mSize;
+    private int mHitCount;
+    private int mMissCount;
+
+    private SharpCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Installs a cache of the given size, replacing any installed cache.
+     *
+     * @param maxSize the maximum size of all cached documents, in bytes
+     */
+    @NonNull
+    public static SharpCache install(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        SharpCache cache = new SharpCache(maxSize);
+        sInstance = cache;
+        return cache;
+    }
+
+    /**
+     * Removes the installed cache, if any; documents are parsed on every load again.
+     */
+    @SuppressWarnings("unused")
+    public static void uninstall() {
+        sInstance = null;
+    }
+
+    /**
+     * @return the installed cache, or null if none is installed
+     */
+    @Nullable
+    public static SharpCache getInstance() {
+        return sInstance;
+    }
+
+    @Nullable
+    synchronized SvgDocument get(@NonNull String key) {
+        SvgDocument document = mDocuments.get(key);
+        if (document != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return document;
+    }
+
+    synchronized void put(@NonNull String key, @NonNull SvgDocument document) {
+        long size = document.getByteCount();
+        if (size > mMaxSize) {
+            // Would evict everything else and still not fit
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+                Log.i(Sharp.TAG, "Not caching " + key + " of " + size + " bytes");
+            }
+            return;
+        }
+        SvgDocument previous = mDocuments.put(key, document);
+        if (previous != null) {
+            mSize -= previous.getByteCount();
+        }
+        mSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Evicts the least recently used documents until the cache is no larger than the given size.
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<String, SvgDocument>> iterator = mDocuments.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, SvgDocument> eldest = iterator.next();
+            mSize -= eldest.getValue().getByteCount();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Changes the maximum size, evicting documents if needed.
+     */
+    @SuppressWarnings("unused")
+    public synchronized void resize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized void evictAll() {
+        mDocuments.clear();
+        mSize = 0;
+    }
+
+    /**
+     * @return the estimated size of all cached documents, in bytes
+     */
+    @SuppressWarnings("unused")
+    public synchronized long size() {
+        return mSize;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized long maxSize() {
+        return mMaxSize;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    @SuppressWarnings("unused")
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SharpCache[size=" + mSize + ",maxSize=" + mMaxSize + ",documents=" + mDocuments.size()
+                + ",hits=" + mHitCount + ",misses=" + mMissCount + "]";
+    }
+
+    /**
+     * A key for content that has no identity of its own, such as a string of SVG data.
+     */
+    @NonNull
+    static String contentKey(@NonNull String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(content.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(5 + hash.length * 2).append("sha1:");
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every platform has SHA-1; fall back to the content itself
+            return "str:" + content;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps compiled forms of the SVGs bundled in <code>res/raw</code> and <code>assets</code>, so
+ * that {@link Sharp#loadResource(Resources, int)} and {@link Sharp#loadAsset(AssetManager, String)}
+ * map them instead of parsing.
+ * <p>
+ * The {@link Index} is generated at build time by <code>sharp-precompile.gradle</code> and holds
+ * a content hash for every bundled SVG. The script also compiles the SVGs with
+ * {@link #precompile(InputStream, OutputStream)} and packages them uncompressed as
+ * <code>assets/sharp-compiled/&lt;hash&gt;.shrp</code>, which loads memory-map. An SVG that was
+ * not compiled at build time is parsed on its first load instead, and its compiled form is
+ * written to the app's code cache for later loads. Install the store once per process, in
+ * <code>Application.onCreate()</code>:
+ * <pre>
+ * SharpCompiledStore.install(context, new SharpCompiledIndex());
+ * </pre>
+ */
+public final class SharpCompiledStore {
+
+    /**
+     * Content hashes of the bundled SVGs, generated by <code>sharp-precompile.gradle</code>.
+     */
+    public interface Index {
+
+        /**
+         * @param name the entry name of a raw resource, e.g. "cartman" for R.raw.cartman
+         * @return the content hash, or null if the resource is not indexed
+         */
+        @Nullable
+        String getRawHash(@NonNull String name);
+
+        /**
+         * @param path the path of an asset, as passed to {@link android.content.res.AssetManager#open(String)}
+         * @return the content hash, or null if the asset is not indexed
+         */
+        @Nullable
+        String getAssetHash(@NonNull String path);
+    }
+
+    //构建时编译的svg所在的assets目录, 文件名是hash加上EXTENSION, 见sharp-precompile.gradle
+    static final String ASSET_DIR = "sharp-compiled";
+    static final String EXTENSION = ".shrp";
+
+    private static final String DIR_NAME = "sharp-compiled";
+
+    private static volatile SharpCompiledStore sInstance;
+
+    private final File mDir;
+    private final AssetManager mAssets;
+    private final Index mIndex;
+
+    private SharpCompiledStore(@NonNull File dir, @NonNull AssetManager assets, @NonNull Index index) {
+        mDir = dir;
+        mAssets = assets;
+        mIndex = index;
+    }
+
+    public static void install(@NonNull Context context, @NonNull Index index) {
+        File cacheDir;
+        if (Build.VERSION.SDK_INT >= 21) {
+            // Cleared on app updates, so documents compiled by an older version do not linger
+            cacheDir = context.getCodeCacheDir();
+        } else {
+            cacheDir = context.getCacheDir();
+        }
+        sInstance = new SharpCompiledStore(new File(cacheDir, DIR_NAME), context.getAssets(), index);
+    }
+
+    /**
+     * Compiles an SVG as <code>sharp-precompile.gradle</code> does at build time. Documents with
+     * text are left to be compiled on the device, as their text is measured with the fonts of
+     * the device while parsing.
+     *
+     * @return false if the document has text, in which case nothing was written
+     * @throws SvgParseException if the SVG cannot be parsed
+     */
+    @SuppressWarnings("unused")
+    public static boolean precompile(@NonNull InputStream svg, @NonNull OutputStream out) throws IOException {
+        SvgDocument document = Sharp.loadInputStream(svg).getSvgDocument();
+        if (document.hasText()) {
+            return false;
+        }
+        document.writeTo(out);
+        return true;
+    }
+
+    @SuppressWarnings("unused")
+    public static void uninstall() {
+        sInstance = null;
+    }
+
+    /**
+     * @return the key of the raw resource, or null if the store is not installed or the
+     * resource is not indexed
+     */
+    @Nullable
+    static String rawKey(@NonNull Resources resources, int resId) {
+        SharpCompiledStore store = sInstance;
+        if (store == null) {
+            return null;
+        }
+        try {
+            if (!"raw".equals(resources.getResourceTypeName(resId))) {
+                return null;
+            }
+            return store.mIndex.getRawHash(resources.getResourceEntryName(resId));
+        } catch (Resources.NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the key of the asset, or null if the store is not installed or the asset is not
+     * indexed
+     */
+    @Nullable
+    static String assetKey(@NonNull String path) {
+        SharpCompiledStore store = sInstance;
+        if (store == null) {
+            return null;
+        }
+        return store.mIndex.getAssetHash(path);
+    }
+
+    /**
+     * Maps the compiled document stored for the key, or else the one packaged for it. A stored
+     * document comes first, as it replaces a packaged one that could not be read.
+     *
+     * @return the compiled document, or null if none is stored or packaged
+     */
+    @Nullable
+    static ByteBuffer load(@NonNull String key) {
+        SharpCompiledStore store = sInstance;
+        if (store == null) {
+            return null;
+        }
+        File file = store.getFile(key);
+        if (!file.isFile()) {
+            return store.loadPackaged(key);
+        }
+        try {
+            return Sharp.mapFile(file);
+        } catch (IOException e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to map compiled SVG " + file, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Maps the document compiled at build time, which is stored uncompressed in the APK.
+     */
+    @Nullable
+    private ByteBuffer loadPackaged(@NonNull String key) {
+        String path = ASSET_DIR + "/" + key + EXTENSION;
+        AssetFileDescriptor afd;
+        try {
+            afd = mAssets.openFd(path);
+        } catch (FileNotFoundException e) {
+            // Not packaged, or compressed
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+                Log.d(Sharp.TAG, "No packaged compiled SVG " + path + ": " + e.getMessage());
+            }
+            return null;
+        } catch (IOException e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to open packaged compiled SVG " + path, e);
+            }
+            return null;
+        }
+        try {
+            FileInputStream in = afd.createInputStream();
+            try {
+                // The mapping stays valid after the descriptor is closed
+                return in.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to map packaged compiled SVG " + path, e);
+            }
+            return null;
+        } finally {
+            try {
+                afd.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Stores the compiled form of a document. Failures are logged and otherwise ignored; the
+     * document is simply parsed again next time.
+     */
+    static void save(@NonNull String key, @NonNull SvgDocument document) {
+        SharpCompiledStore store = sInstance;
+        if (store == null) {
+            return;
+        }
+        File file = store.getFile(key);
+        // Write to a temporary file first, so a crash never leaves a truncated document behind
+        File tmp = new File(store.mDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            if (!store.mDir.isDirectory() && !store.mDir.mkdirs()) {
+                throw new IOException("Cannot create " + store.mDir);
+            }
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                document.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+                Log.d(Sharp.TAG, "Stored compiled SVG " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to store compiled SVG " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Removes a stored document, e.g. because it could not be read.
+     */
+    static void remove(@NonNull String key) {
+        SharpCompiledStore store = sInstance;
+        if (store != null) {
+            //noinspection ResultOfMethodCallIgnored
+            store.getFile(key).delete();
+        }
+    }
+
+    @NonNull
+    private File getFile(@NonNull String key) {
+        // The version is part of the name, so a different format is never read
+        return new File(mDir, key + ".v" + SvgDocumentReader.VERSION + ".shrp");
+    }
+}
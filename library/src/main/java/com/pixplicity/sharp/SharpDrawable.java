@@ -24,12 +24,14 @@
 package com.pixplicity.sharp;
 
 import android.annotation.TargetApi;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Path;
 import android.graphics.Picture;
 import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
 import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PictureDrawable;
 import android.os.Build;
 import android.os.Looper;
@@ -44,16 +46,47 @@ public class SharpDrawable extends PictureDrawable {
 
     private static final String TAG = SharpDrawable.class.getSimpleName();
 
-    private static final Bitmap.Config CACHE_CONFIG = Bitmap.Config.ARGB_8888;
+    //瓦片缓存的默认大小
+    private static final long DEFAULT_TILE_CACHE_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * Plays the picture onto the canvas, as on a software canvas.
+     */
+    static final int MODE_DIRECT = 0;
+    /**
+     * Draws a {@link RenderNode} recorded from the picture once, on a hardware canvas.
+     */
+    static final int MODE_RENDER_NODE = 1;
+    /**
+     * Draws the picture rasterized in the background, for a hardware canvas that cannot draw it.
+     */
+    static final int MODE_RASTER = 2;
+
+    //是否使用硬件加速, 见setHardwareModeEnabled
+    private static volatile boolean sHardwareMode;
 
     private float mScaleX = 1f;
     private float mScaleY = 1f;
 
     private boolean mCaching = false;
-    private Rect mCacheBounds;
-    private Bitmap mCacheBitmap;
     private float mCacheScale = 1f;
+    //缓存模式下不同缩放比例的缓存, 第一次绘制时创建
+    private SharpMipmaps mMipmaps;
+    private long mCacheMaxSize = SharpMipmaps.DEFAULT_MAX_SIZE;
+    //缓存是否只在后台渲染
+    private boolean mAsyncCaching;
+    //异步缓存还没有渲染好时绘制的内容
+    private Drawable mCachePlaceholder;
     private int alpha = 255;
+    //瓦片模式下的瓦片, null表示不使用瓦片
+    private SharpTiles mTiles;
+    //是否已经警告过瓦片模式画在硬件加速的canvas上
+    private boolean mTilingWarned;
+    private long mTileCacheSize = DEFAULT_TILE_CACHE_SIZE;
+    //图片中是否有硬件加速可能无法绘制的内容
+    private boolean mRequiresSoftware;
+    //硬件加速模式下记录了图片的RenderNode, 第一次绘制时创建
+    private RenderNodeDrawer mRenderNode;
 
     /**
      * 存储的绘制原始数据
@@ -97,11 +130,16 @@ public class SharpDrawable extends PictureDrawable {
 
     /**
      * Prepare a view for rendering this SharpDrawable by setting its LayerType to
-     * LAYER_TYPE_SOFTWARE.
+     * LAYER_TYPE_SOFTWARE. Does nothing in hardware mode on API 23 and up, see
+     * {@link #setHardwareModeEnabled(boolean)}; a view that draws a tiling drawable is switched
+     * to a software layer on its first draw regardless, see {@link #setTiling(boolean)}.
      *
      * @param view
      */
     public static void prepareView(@Nullable final View view) {
+        if (sHardwareMode && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return;
+        }
         if (view != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
             if (Looper.myLooper() == Looper.getMainLooper()) {
                 view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
@@ -116,62 +154,138 @@ public class SharpDrawable extends PictureDrawable {
         }
     }
 
+    /**
+     * Draws SharpDrawables on hardware-accelerated canvases instead of forcing their views to
+     * software layers in {@link #prepareView(View)}, which keeps GPU compositing for the rest
+     * of the view. Off by default.
+     * <p>
+     * On API 29 and up the picture is recorded into a {@link RenderNode} once, so redraws only
+     * replay its display list; on API 23 and up the picture is played onto the hardware canvas.
+     * Below API 23, or for documents with content a hardware canvas may not draw, such as
+     * bitmaps too large for a texture, the picture is rasterized in the background as with
+     * {@link #setAsyncCaching(boolean)} and drawn as a bitmap instead.
+     */
+    @SuppressWarnings("unused")
+    public static void setHardwareModeEnabled(boolean enabled) {
+        sHardwareMode = enabled;
+    }
+
+    @SuppressWarnings("unused")
+    public static boolean isHardwareModeEnabled() {
+        return sHardwareMode;
+    }
+
+    /**
+     * How to draw a picture that is neither tiled nor cached.
+     *
+     * @param hardwareCanvas   whether the canvas is hardware-accelerated
+     * @param hardwareMode     see {@link #setHardwareModeEnabled(boolean)}
+     * @param sdkInt           the API level of the device
+     * @param requiresSoftware whether the picture has content a hardware canvas may not draw
+     */
+    static int selectMode(boolean hardwareCanvas, boolean hardwareMode, int sdkInt,
+                          boolean requiresSoftware) {
+        if (!hardwareCanvas || !hardwareMode) {
+            return MODE_DIRECT;
+        }
+        if (requiresSoftware || sdkInt < Build.VERSION_CODES.M) {
+            return MODE_RASTER;
+        }
+        return sdkInt >= Build.VERSION_CODES.Q ? MODE_RENDER_NODE : MODE_DIRECT;
+    }
+
+    void setRequiresSoftware(boolean requiresSoftware) {
+        mRequiresSoftware = requiresSoftware;
+    }
+
     @Override
     public void draw(Canvas parentCanvas) {
         long start = System.currentTimeMillis();
         Picture picture = getPicture();
-        if (picture != null) {
+        int mode = selectMode(parentCanvas.isHardwareAccelerated(), sHardwareMode,
+                Build.VERSION.SDK_INT, mRequiresSoftware);
+        boolean tiling = mTiles != null;
+        if (tiling && parentCanvas.isHardwareAccelerated()) {
+            // The zoom level is only in the matrix of a software canvas
+            onTilingOnHardwareCanvas();
+            tiling = false;
+        }
+        if (picture != null && (tiling || mCaching || mode == MODE_RASTER)) {
             Rect bounds = getBounds();
-            Canvas canvas = null;
-            if (mCaching) {
-                if (mCacheBitmap == null || mCacheBounds == null || !mCacheBounds.equals(bounds)) {
-                    // Redraw needed
-                    resetCache();
-                    // creates a new mutable bitmap
-                    int w = (int) (bounds.width() * mCacheScale);
-                    int h = (int) (bounds.height() * mCacheScale);
-                    //Log.v(TAG, "cache bitmap " + w + "x" + h);
-                    mCacheBitmap = Bitmap.createBitmap(
-                            w,
-                            h,
-                            CACHE_CONFIG);
-                    if (mCacheBounds == null) {
-                        mCacheBounds = new Rect(bounds);
-                    } else {
-                        mCacheBounds.set(bounds);
-                    }
-                    // start drawing onto this bitmap
-                    canvas = new Canvas(mCacheBitmap);
-                    save(canvas);
-                    canvas.scale(mCacheScale, mCacheScale);
-                }
+            parentCanvas.save();
+            parentCanvas.clipRect(bounds);
+            parentCanvas.translate(bounds.left, bounds.top);
+            onBeforeScaleAndDraw(parentCanvas, picture, bounds);
+            parentCanvas.scale(mScaleX, mScaleY, 0, 0);
+            boolean drawn = true;
+            if (tiling) {
+                mTiles.draw(parentCanvas, alpha);
             } else {
-                canvas = parentCanvas;
+                if (mMipmaps == null) {
+                    mMipmaps = new SharpMipmaps(this, picture, mCacheMaxSize);
+                    // Rasterizing on the UI thread is what hardware mode avoids
+                    mMipmaps.setAsync(mAsyncCaching || !mCaching);
+                }
+                drawn = mMipmaps.draw(parentCanvas, Math.max(mScaleX, mScaleY) * mCacheScale, alpha);
             }
-            if (canvas != null) {
-                save(canvas);
-                canvas.clipRect(bounds);
-                canvas.translate(bounds.left, bounds.top);
-                onBeforeScaleAndDraw(canvas, picture, bounds);
-                canvas.scale(mScaleX, mScaleY, 0, 0);
-                canvas.drawPicture(picture);
-                canvas.restore();
+            parentCanvas.restore();
+            if (!drawn && mCachePlaceholder != null) {
+                mCachePlaceholder.setBounds(bounds);
+                mCachePlaceholder.draw(parentCanvas);
             }
-            if (mCacheBitmap != null) {
-                if (canvas != null) {
-                    canvas.restore();
-                }
-                save(parentCanvas);
-                parentCanvas.scale(1f / mCacheScale, 1f / mCacheScale, 0, 0);
-                parentCanvas.drawBitmap(mCacheBitmap, 0, 0, null);
-                parentCanvas.restore();
+        } else if (picture != null && mode == MODE_RENDER_NODE) {
+            Rect bounds = getBounds();
+            parentCanvas.save();
+            parentCanvas.clipRect(bounds);
+            parentCanvas.translate(bounds.left, bounds.top);
+            onBeforeScaleAndDraw(parentCanvas, picture, bounds);
+            parentCanvas.scale(mScaleX, mScaleY, 0, 0);
+            if (mRenderNode == null) {
+                mRenderNode = new RenderNodeDrawer(picture);
             }
+            mRenderNode.draw(parentCanvas, alpha);
+            parentCanvas.restore();
+        } else if (picture != null) {
+            Rect bounds = getBounds();
+            save(parentCanvas);
+            parentCanvas.clipRect(bounds);
+            parentCanvas.translate(bounds.left, bounds.top);
+            onBeforeScaleAndDraw(parentCanvas, picture, bounds);
+            parentCanvas.scale(mScaleX, mScaleY, 0, 0);
+            parentCanvas.drawPicture(picture);
+            parentCanvas.restore();
         }
         if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
             Log.v(TAG, "Drawing " + hashCode() + " complete in " + (System.currentTimeMillis() - start) + " ms.");
         }
     }
 
+    /**
+     * Switches the view that draws this tiling drawable to a software layer, drawing it as
+     * without tiling until then; warns once if there is no such view.
+     */
+    private void onTilingOnHardwareCanvas() {
+        Callback callback = getCallback();
+        while (callback instanceof Drawable) {
+            callback = ((Drawable) callback).getCallback();
+        }
+        if (callback instanceof View) {
+            // Not while the view is drawing
+            final View view = (View) callback;
+            view.post(new Runnable() {
+                @Override
+                public void run() {
+                    view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+                }
+            });
+        } else if (!mTilingWarned) {
+            mTilingWarned = true;
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Tiling needs a software canvas; drawing without tiles");
+            }
+        }
+    }
+
     @Override
     public void setBounds(int left, int top, int right, int bottom) {
         Picture picture = getPicture();
@@ -194,7 +308,9 @@ public class SharpDrawable extends PictureDrawable {
     }
 
     /**
-     * Experimental feature to cache the drawable into a bitmap. The cache is not always
+     * Caches the drawable in bitmaps at power-of-two scales of the picture. Each draw uses the
+     * cached scale nearest to the bounds, while a sharper one is rendered in the background if
+     * needed, so resizing does not redraw the picture on every frame. The cache is not always
      * automatically redrawn, as the way in which the SharpDrawable is drawn may change without it
      * being informed. To manually redraw the cache, invoke {@link #resetCache()}.
      *
@@ -203,6 +319,123 @@ public class SharpDrawable extends PictureDrawable {
     @SuppressWarnings("unused")
     public void setCaching(boolean caching) {
         mCaching = caching;
+        if (!caching) {
+            releaseCache();
+        }
+    }
+
+    /**
+     * Renders the cache only in the background, so that drawing never rasterizes the picture.
+     * Until the first cached scale is ready, the placeholder is drawn, if any; after that a
+     * bounds change draws the nearest cached scale until the sharper one is ready, and a
+     * scale that is no longer needed is cancelled if it has not started rendering.
+     *
+     * @see #setCaching(boolean)
+     * @see #setCachePlaceholder(Drawable)
+     */
+    @SuppressWarnings("unused")
+    public void setAsyncCaching(boolean async) {
+        mAsyncCaching = async;
+        if (mMipmaps != null) {
+            mMipmaps.setAsync(async);
+        }
+    }
+
+    /**
+     * What to draw while an asynchronous cache is rendering, nothing by default.
+     *
+     * @see #setAsyncCaching(boolean)
+     */
+    @SuppressWarnings("unused")
+    public void setCachePlaceholder(@Nullable Drawable placeholder) {
+        mCachePlaceholder = placeholder;
+    }
+
+    /**
+     * The maximum size of the cached bitmaps of this drawable, 32 MB by default. Scales that do
+     * not fit are drawn from a coarser cached scale.
+     *
+     * @param maxSize the maximum size, in bytes
+     */
+    @SuppressWarnings("unused")
+    public void setCacheMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mCacheMaxSize = maxSize;
+        if (mMipmaps != null) {
+            mMipmaps.setMaxSize(maxSize);
+        }
+    }
+
+    /**
+     * The maximum size of the cached bitmaps of all drawables together, 96 MB by default. The
+     * least recently drawn bitmaps are dropped first.
+     *
+     * @param maxSize the maximum size, in bytes
+     */
+    @SuppressWarnings("unused")
+    public static void setGlobalCacheMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        SharpMipmaps.setGlobalMaxSize(maxSize);
+    }
+
+    /**
+     * Drops cached bitmaps of all drawables when the system runs low on memory; call it from
+     * {@link android.content.ComponentCallbacks2#onTrimMemory(int)}. An installed
+     * {@link SharpBitmapPool} already does. All cached bitmaps are dropped from
+     * {@code TRIM_MEMORY_MODERATE} up, the least recently drawn half from
+     * {@code TRIM_MEMORY_BACKGROUND} up or when running critically low; drawables render what
+     * they need again on their next draw.
+     *
+     * @param level the level passed to {@code onTrimMemory}
+     */
+    @SuppressWarnings("unused")
+    public static void trimMemory(int level) {
+        SharpMipmaps.trimMemory(level);
+    }
+
+    /**
+     * Draws the picture from tiles of {@link SharpTiles#TILE_SIZE} pixels instead, for very
+     * large documents that are zoomed into. Tiles are rendered in the background at the zoom
+     * level of the canvas, so the canvas should be zoomed rather than the bounds; while a tile
+     * renders, a coarser one is drawn in its place. Takes precedence over
+     * {@link #setCaching(boolean)}.
+     * <p>
+     * The zoom level is read from the matrix of the canvas, which requires a software canvas.
+     * The view that draws the drawable is therefore switched to a software layer on its first
+     * draw, also in hardware mode; until then, or if the drawable is not drawn by a view, it is
+     * drawn as without tiling.
+     */
+    @SuppressWarnings("unused")
+    public void setTiling(boolean tiling) {
+        if (tiling && mTiles == null && getPicture() != null) {
+            mTiles = new SharpTiles(this, getPicture(), mTileCacheSize);
+            invalidateSelf();
+        } else if (!tiling && mTiles != null) {
+            mTiles.release();
+            mTiles = null;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * The maximum size of the tiles kept in tiling mode, 32 MB by default. Should hold at least
+     * the tiles of one screen.
+     *
+     * @param maxSize the maximum size, in bytes
+     */
+    @SuppressWarnings("unused")
+    public void setTileCacheSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mTileCacheSize = maxSize;
+        if (mTiles != null) {
+            mTiles.setMaxSize(maxSize);
+        }
     }
 
     @SuppressWarnings("unused")
@@ -215,10 +448,15 @@ public class SharpDrawable extends PictureDrawable {
         if (!mCaching) {
             throw new IllegalStateException("Cache is not enabled");
         }
-        if (mCacheBitmap != null) {
-            // recycle the old bitmap
-            mCacheBitmap.recycle();
-            mCacheBitmap = null;
+        releaseCache();
+        invalidateSelf();
+    }
+
+    private void releaseCache() {
+        if (mMipmaps != null) {
+            // recycle the cached bitmaps
+            mMipmaps.release();
+            mMipmaps = null;
         }
     }
 
@@ -233,4 +471,39 @@ public class SharpDrawable extends PictureDrawable {
             canvas.saveLayerAlpha(0, 0, canvas.getWidth(), canvas.getHeight(), alpha);
         }
     }
+
+    /**
+     * The picture recorded into a {@link RenderNode}, kept apart so that the class is only
+     * loaded on API 29 and up.
+     */
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static final class RenderNodeDrawer {
+
+        private final Picture mPicture;
+        private final RenderNode mNode = new RenderNode("SharpDrawable");
+
+        RenderNodeDrawer(Picture picture) {
+            mPicture = picture;
+        }
+
+        void draw(Canvas canvas, int alpha) {
+            if (!(canvas instanceof RecordingCanvas)) {
+                canvas.drawPicture(mPicture);
+                return;
+            }
+            if (!mNode.hasDisplayList()) {
+                int width = mPicture.getWidth();
+                int height = mPicture.getHeight();
+                mNode.setPosition(0, 0, width, height);
+                RecordingCanvas recording = mNode.beginRecording(width, height);
+                try {
+                    recording.drawPicture(mPicture);
+                } finally {
+                    mNode.endRecording();
+                }
+            }
+            mNode.setAlpha(alpha / 255f);
+            ((RecordingCanvas) canvas).drawRenderNode(mNode);
+        }
+    }
 }
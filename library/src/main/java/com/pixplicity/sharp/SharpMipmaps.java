@@ -0,0 +1,442 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * The raster cache of a {@link SharpDrawable}, see {@link SharpDrawable#setCaching(boolean)}: the
+ * picture rasterized at power-of-two scales.
+ * <p>
+ * The drawable draws the level nearest to its scale, scaled to fit, and renders the level it
+ * needs in the background with {@link SharpWorkers} if that level is not cached yet. Only the
+ * very first level is rendered while drawing, unless the cache is asynchronous, in which case
+ * nothing is drawn until it is ready. Changing the bounds, as during a pinch-zoom, therefore
+ * never throws the cache away, and cancels a level that has not started rendering yet.
+ * <p>
+ * The levels of a drawable are limited in size, dropping the levels farthest from the one in
+ * use first, and the levels of all drawables together are limited too, dropping the least
+ * recently drawn levels first. The levels only hold their drawable weakly: once a drawable is
+ * garbage collected, its levels are dropped the next time a level is added or memory is trimmed,
+ * see {@link #trimMemory(int)}.
+ */
+final class SharpMipmaps {
+
+    static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+    static final long DEFAULT_GLOBAL_MAX_SIZE = 96L * 1024 * 1024;
+
+    private static final Bitmap.Config LEVEL_CONFIG = Bitmap.Config.ARGB_8888;
+
+    //缩放比例超过当前层级不多时不切换到更清晰的层级
+    private static final float LEVEL_TOLERANCE = 1.1f;
+    private static final int MIN_LEVEL = -16;
+    private static final int MAX_LEVEL = 8;
+    private static final int NONE = Integer.MIN_VALUE;
+
+    /**
+     * The weak reference from the levels to their drawable, with the levels themselves so that
+     * they can still be dropped once the drawable is collected.
+     */
+    private static final class Owner extends WeakReference<SharpMipmaps> {
+        final Level[] mLevels;
+
+        Owner(SharpMipmaps mipmaps, Level[] levels) {
+            super(mipmaps, sCollected);
+            mLevels = levels;
+        }
+    }
+
+    private static final class Level {
+        final Owner mOwner;
+        final int mLevel;
+        final Bitmap mBitmap;
+        //已被移除, 位图可能已经交给其他缓存
+        boolean mDropped;
+        //是否画到过硬件加速的canvas上, 这样的位图可能还在显示列表中
+        boolean mHardware;
+
+        Level(Owner owner, int level, Bitmap bitmap) {
+            mOwner = owner;
+            mLevel = level;
+            mBitmap = bitmap;
+        }
+
+        long getByteCount() {
+            return mBitmap.getByteCount();
+        }
+    }
+
+    //所有drawable的层级, 按绘制顺序排列, 同时用作锁
+    private static final LinkedHashMap<Level, Boolean> sLevels = new LinkedHashMap<>(16, 0.75f, true);
+    private static long sSize;
+    private static long sMaxSize = DEFAULT_GLOBAL_MAX_SIZE;
+    //已被回收的drawable, 它们的层级还没有移除
+    private static final ReferenceQueue<SharpMipmaps> sCollected = new ReferenceQueue<>();
+
+    private final SharpDrawable mDrawable;
+    private final Picture mPicture;
+    private final Level[] mLevels = new Level[MAX_LEVEL - MIN_LEVEL + 1];
+    private final Owner mOwner = new Owner(this, mLevels);
+    private long mSize;
+    private long mMaxSize;
+    //正在后台渲染的层级, NONE表示没有
+    private int mRendering = NONE;
+    private Future<?> mTask;
+    //没有缓存时是否也在后台渲染
+    private boolean mAsync;
+    private boolean mReleased;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    SharpMipmaps(@NonNull SharpDrawable drawable, @NonNull Picture picture, long maxSize) {
+        mDrawable = drawable;
+        mPicture = picture;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Draws the cached level nearest to the scale. The canvas must be transformed so that one
+     * unit is one unit of the picture.
+     *
+     * @param scale the pixels per unit of the picture to draw at
+     * @return false if nothing was drawn, because no level is cached yet in asynchronous mode
+     */
+    boolean draw(@NonNull Canvas canvas, float scale, int alpha) {
+        int target = getTargetLevel(scale);
+        Level level;
+        synchronized (sLevels) {
+            level = mLevels[target - MIN_LEVEL];
+            if (level == null) {
+                level = getNearest(target);
+                if (level != null || mAsync) {
+                    request(target);
+                }
+            }
+        }
+        if (level == null) {
+            if (mAsync) {
+                return false;
+            }
+            // Nothing to scale from yet
+            Bitmap bitmap = render(target);
+            if (bitmap == null) {
+                canvas.drawPicture(mPicture);
+                return true;
+            }
+            level = add(target, bitmap);
+        }
+        mPaint.setAlpha(alpha);
+        synchronized (sLevels) {
+            if (level.mDropped) {
+                // Evicted by another thread
+                if (mAsync) {
+                    request(target);
+                    return false;
+                }
+                canvas.drawPicture(mPicture);
+                return true;
+            }
+            sLevels.get(level);
+            level.mHardware |= canvas.isHardwareAccelerated();
+            float inverse = Math.scalb(1f, -level.mLevel);
+            canvas.save();
+            canvas.scale(inverse, inverse);
+            canvas.drawBitmap(level.mBitmap, 0, 0, mPaint);
+            canvas.restore();
+        }
+        return true;
+    }
+
+    /**
+     * The sharpest level at least as sharp as the scale, as far as it fits in the size limit of
+     * this drawable.
+     */
+    private int getTargetLevel(float scale) {
+        int level = scale > 0 ? SharpTiles.ceilLog2(scale / LEVEL_TOLERANCE) : 0;
+        level = Math.min(MAX_LEVEL, Math.max(MIN_LEVEL, level));
+        while (level > MIN_LEVEL && getByteCount(level) > mMaxSize) {
+            level--;
+        }
+        return level;
+    }
+
+    private long getByteCount(int level) {
+        float scale = Math.scalb(1f, level);
+        return (long) Math.ceil(mPicture.getWidth() * scale)
+                * (long) Math.ceil(mPicture.getHeight() * scale) * 4;
+    }
+
+    @Nullable
+    private Level getNearest(int target) {
+        for (int d = 1; d < mLevels.length; d++) {
+            // Prefer the sharper of two levels at the same distance
+            if (target + d <= MAX_LEVEL && mLevels[target + d - MIN_LEVEL] != null) {
+                return mLevels[target + d - MIN_LEVEL];
+            }
+            if (target - d >= MIN_LEVEL && mLevels[target - d - MIN_LEVEL] != null) {
+                return mLevels[target - d - MIN_LEVEL];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renders a level in the background. A level still waiting to render is no longer needed
+     * and is cancelled; one already rendering is kept once done.
+     */
+    private void request(final int target) {
+        if (mReleased || mRendering == target) {
+            return;
+        }
+        if (mTask != null) {
+            mTask.cancel(false);
+        }
+        mRendering = target;
+        mTask = SharpWorkers.getExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = render(target);
+                SharpWorkers.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRendered(target, bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onRendered(int target, @Nullable Bitmap bitmap) {
+        synchronized (sLevels) {
+            if (mRendering == target) {
+                mRendering = NONE;
+                mTask = null;
+            }
+        }
+        if (bitmap != null) {
+            add(target, bitmap);
+            mDrawable.invalidateSelf();
+        }
+    }
+
+    @Nullable
+    private Bitmap render(int level) {
+        float scale = Math.scalb(1f, level);
+        int width = Math.max(1, (int) Math.ceil(mPicture.getWidth() * scale));
+        int height = Math.max(1, (int) Math.ceil(mPicture.getHeight() * scale));
+        try {
+            Bitmap bitmap = SharpBitmapPool.obtain(width, height, LEVEL_CONFIG);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(scale, scale);
+            canvas.drawPicture(mPicture);
+            return bitmap;
+        } catch (OutOfMemoryError e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_ERROR) {
+                Log.e(Sharp.TAG, "Out of memory caching " + width + "x" + height, e);
+            }
+            return null;
+        }
+    }
+
+    @NonNull
+    private Level add(int target, @NonNull Bitmap bitmap) {
+        Level level = new Level(mOwner, target, bitmap);
+        synchronized (sLevels) {
+            if (mReleased) {
+                level.mDropped = true;
+                SharpBitmapPool.release(bitmap);
+                return level;
+            }
+            purgeCollected();
+            Level previous = mLevels[target - MIN_LEVEL];
+            if (previous != null) {
+                remove(previous);
+            }
+            mLevels[target - MIN_LEVEL] = level;
+            mSize += level.getByteCount();
+            sLevels.put(level, Boolean.TRUE);
+            sSize += level.getByteCount();
+            trimToSize(target);
+            trimAllToSize(sMaxSize, level);
+        }
+        return level;
+    }
+
+    /**
+     * Drops the levels of this drawable farthest from the given level until they fit.
+     */
+    private void trimToSize(int keep) {
+        while (mSize > mMaxSize) {
+            Level farthest = null;
+            for (Level level : mLevels) {
+                if (level != null && level.mLevel != keep && (farthest == null
+                        || distance(level, keep) > distance(farthest, keep))) {
+                    farthest = level;
+                }
+            }
+            if (farthest == null) {
+                return;
+            }
+            remove(farthest);
+        }
+    }
+
+    /**
+     * @param keep the level in use, NONE to drop the sharpest levels first
+     */
+    private static int distance(Level level, int keep) {
+        return keep == NONE ? level.mLevel : Math.abs(level.mLevel - keep);
+    }
+
+    /**
+     * Drops the least recently drawn levels of all drawables until they fit.
+     */
+    private static void trimAllToSize(long maxSize, @Nullable Level keep) {
+        Iterator<Level> iterator = sLevels.keySet().iterator();
+        while (sSize > maxSize && iterator.hasNext()) {
+            Level eldest = iterator.next();
+            if (eldest != keep) {
+                iterator.remove();
+                drop(eldest);
+            }
+        }
+    }
+
+    /**
+     * Drops the levels of the drawables that were garbage collected.
+     */
+    private static void purgeCollected() {
+        Reference<? extends SharpMipmaps> collected;
+        while ((collected = sCollected.poll()) != null) {
+            for (Level level : ((Owner) collected).mLevels) {
+                if (level != null) {
+                    remove(level);
+                }
+            }
+        }
+    }
+
+    private static void remove(Level level) {
+        sLevels.remove(level);
+        drop(level);
+    }
+
+    private static void drop(Level level) {
+        level.mOwner.mLevels[level.mLevel - MIN_LEVEL] = null;
+        SharpMipmaps owner = level.mOwner.get();
+        if (owner != null) {
+            owner.mSize -= level.getByteCount();
+        }
+        sSize -= level.getByteCount();
+        level.mDropped = true;
+        if (level.mHardware) {
+            // A display list may still draw it, so it must not be reused for other pixels
+            level.mBitmap.recycle();
+        } else {
+            SharpBitmapPool.release(level.mBitmap);
+        }
+    }
+
+    void setAsync(boolean async) {
+        synchronized (sLevels) {
+            mAsync = async;
+        }
+    }
+
+    void setMaxSize(long maxSize) {
+        synchronized (sLevels) {
+            mMaxSize = maxSize;
+            trimToSize(NONE);
+        }
+    }
+
+    static void setGlobalMaxSize(long maxSize) {
+        synchronized (sLevels) {
+            sMaxSize = maxSize;
+            purgeCollected();
+            trimAllToSize(maxSize, null);
+        }
+    }
+
+    /**
+     * Drops the levels of all drawables when the system runs low on memory, as
+     * {@link SharpBitmapPool} does with its bitmaps: all of them from
+     * {@link ComponentCallbacks2#TRIM_MEMORY_MODERATE} up, the least recently drawn half from
+     * {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND} up or when running critically low.
+     * Drawables render the levels they need again on their next draw.
+     */
+    static void trimMemory(int level) {
+        synchronized (sLevels) {
+            purgeCollected();
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                trimAllToSize(0, null);
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                trimAllToSize(sSize / 2, null);
+            }
+        }
+    }
+
+    /**
+     * @return the size of the levels of all drawables, in bytes
+     */
+    static long getGlobalSize() {
+        synchronized (sLevels) {
+            return sSize;
+        }
+    }
+
+    /**
+     * Recycles all levels; levels still rendering are dropped when done.
+     */
+    void release() {
+        synchronized (sLevels) {
+            mReleased = true;
+            if (mTask != null) {
+                mTask.cancel(false);
+                mTask = null;
+            }
+            for (Level level : mLevels) {
+                if (level != null) {
+                    remove(level);
+                }
+            }
+        }
+    }
+}
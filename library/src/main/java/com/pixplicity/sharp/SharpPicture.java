@@ -53,6 +53,11 @@ public class SharpPicture {
      */
     private RectF mLimits = null;
 
+    /**
+     * Whether the picture has content that may not draw on a hardware canvas.
+     */
+    private boolean mRequiresSoftware;
+
     /**
      * Construct a new SVG.
      *
@@ -73,6 +78,10 @@ public class SharpPicture {
         mLimits = limits;
     }
 
+    void setRequiresSoftware(boolean requiresSoftware) {
+        mRequiresSoftware = requiresSoftware;
+    }
+
     /**
      * Create a drawable from the SVG with its bounds set to {@code sizeInPixels} such that its
      * aspect ratio is retained. A view may be provided so that it's LayerType is set to
@@ -100,6 +109,7 @@ public class SharpPicture {
      */
     public SharpDrawable getDrawable() {
         SharpDrawable drawable = new SharpDrawable(mPicture);
+        drawable.setRequiresSoftware(mRequiresSoftware);
         drawable.setBounds((int) mBounds.left, (int) mBounds.top, (int) Math.ceil(mBounds.right), (int) Math.ceil(mBounds.bottom));
         return drawable;
     }
@@ -115,6 +125,7 @@ public class SharpPicture {
     @Deprecated
     public SharpDrawable getDrawable(@androidx.annotation.Nullable View view) {
         SharpDrawable drawable = new SharpDrawable(view, mPicture);
+        drawable.setRequiresSoftware(mRequiresSoftware);
         drawable.setBounds((int) mBounds.left, (int) mBounds.top, (int) Math.ceil(mBounds.right), (int) Math.ceil(mBounds.bottom));
         return drawable;
     }
@@ -0,0 +1,93 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.os.SystemClock;
+
+/**
+ * A handle to an SVG being loaded in the background, see
+ * {@link Sharp#getSharpPicture(java.util.concurrent.Executor, long, Sharp.PictureCallback, Sharp.ErrorCallback)}.
+ * <p>
+ * The parser checks the task between elements, so a cancelled or timed out load stops promptly
+ * instead of parsing the rest of the document. A cancelled task never calls its callbacks.
+ */
+public final class SharpTask {
+
+    //截止时间, 基于SystemClock.uptimeMillis, 0表示不限制
+    private final long mDeadline;
+    private volatile boolean mCancelled;
+    private volatile boolean mDone;
+
+    SharpTask(long timeoutMillis) {
+        mDeadline = timeoutMillis > 0 ? SystemClock.uptimeMillis() + timeoutMillis : 0;
+    }
+
+    /**
+     * Stops the load. Has no effect once the callback has been called.
+     *
+     * @return false if the task had already completed
+     */
+    public boolean cancel() {
+        if (mDone) {
+            return false;
+        }
+        mCancelled = true;
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Whether the load has finished, successfully or not, or was cancelled.
+     */
+    public boolean isDone() {
+        return mDone || mCancelled;
+    }
+
+    boolean isTimedOut() {
+        return mDeadline != 0 && SystemClock.uptimeMillis() > mDeadline;
+    }
+
+    /**
+     * Whether the load should be abandoned, because it was cancelled or exceeded its deadline.
+     */
+    boolean isStopped() {
+        return mCancelled || isTimedOut();
+    }
+
+    /**
+     * @throws SvgParseException if the load should be abandoned
+     */
+    void throwIfStopped() throws SvgParseException {
+        if (isStopped()) {
+            throw new SvgParseException(mCancelled ? "Load cancelled" : "Load timed out");
+        }
+    }
+
+    void setDone() {
+        mDone = true;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The tiles of a {@link SharpDrawable} in tiling mode, see {@link SharpDrawable#setTiling(boolean)}.
+ * <p>
+ * The picture is cut into square tiles of {@link #TILE_SIZE} pixels at power-of-two zoom levels.
+ * Only the tiles visible at the zoom level of the canvas are rendered, by {@link SharpWorkers},
+ * and kept in a cache that evicts the least recently drawn tiles. Until a tile is ready, the
+ * matching part of a coarser tile is drawn instead; the coarsest level, a single tile of the
+ * whole picture, is always requested first.
+ * <p>
+ * Apart from the rendering itself, everything happens on the main thread.
+ */
+final class SharpTiles {
+
+    /**
+     * The width and height of a tile, in pixels.
+     */
+    static final int TILE_SIZE = 256;
+
+    private static final Bitmap.Config TILE_CONFIG = Bitmap.Config.ARGB_8888;
+
+    //缩放比例超过当前层级不多时不切换到更清晰的层级, 避免在两个层级之间来回渲染
+    private static final float LEVEL_TOLERANCE = 1.1f;
+    private static final int MIN_LEVEL = -32;
+    //最多放大4096倍
+    private static final int MAX_LEVEL = 12;
+
+    private final SharpDrawable mDrawable;
+    private final Picture mPicture;
+    //整个图片放在一个瓦片中的层级
+    private final int mBaseLevel;
+
+    //瓦片key -> 瓦片, 按绘制顺序排列
+    private final LinkedHashMap<Long, Bitmap> mTiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize;
+    private long mMaxSize;
+    //正在渲染的瓦片
+    private final Set<Long> mPending = new HashSet<>();
+    //最近一次绘制需要的瓦片, 后台线程据此跳过过期的任务
+    private final Set<Long> mWanted = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private boolean mReleased;
+    //是否画到过硬件加速的canvas上, 这时瓦片可能还在显示列表中, 不能交给位图池
+    private boolean mHardware;
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Matrix mMatrix = new Matrix();
+    private final Rect mClip = new Rect();
+    private final Rect mSrc = new Rect();
+    private final RectF mDst = new RectF();
+
+    SharpTiles(@NonNull SharpDrawable drawable, @NonNull Picture picture, long maxSize) {
+        mDrawable = drawable;
+        mPicture = picture;
+        mMaxSize = maxSize;
+        int size = Math.max(1, Math.max(picture.getWidth(), picture.getHeight()));
+        mBaseLevel = Math.max(MIN_LEVEL, floorLog2((float) TILE_SIZE / size));
+    }
+
+    /**
+     * Draws the visible tiles. The canvas must be transformed so that one unit is one unit of
+     * the picture; its matrix gives the zoom level, its clip the visible tiles.
+     */
+    void draw(@NonNull Canvas canvas, int alpha) {
+        canvas.getMatrix(mMatrix);
+        if (!canvas.getClipBounds(mClip)) {
+            return;
+        }
+        int level = getLevel(mMatrix.mapRadius(1f));
+        mHardware |= canvas.isHardwareAccelerated();
+        mPaint.setAlpha(alpha);
+        mWanted.clear();
+
+        long baseKey = key(mBaseLevel, 0, 0);
+        mWanted.add(baseKey);
+        if (mTiles.get(baseKey) == null) {
+            request(baseKey);
+        }
+
+        float extent = Math.scalb((float) TILE_SIZE, -level);
+        int left = Math.max(0, (int) Math.floor(mClip.left / extent));
+        int top = Math.max(0, (int) Math.floor(mClip.top / extent));
+        int right = (int) Math.ceil(Math.min(mClip.right, mPicture.getWidth()) / extent);
+        int bottom = (int) Math.ceil(Math.min(mClip.bottom, mPicture.getHeight()) / extent);
+        for (int row = top; row < bottom; row++) {
+            for (int col = left; col < right; col++) {
+                long key = key(level, col, row);
+                mWanted.add(key);
+                mDst.set(col * extent, row * extent, (col + 1) * extent, (row + 1) * extent);
+                Bitmap tile = mTiles.get(key);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, mDst, mPaint);
+                } else {
+                    drawCoarser(canvas, level, col, row);
+                    request(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the part of the sharpest cached coarser tile that covers a missing tile.
+     */
+    private void drawCoarser(Canvas canvas, int level, int col, int row) {
+        for (int coarse = level - 1; coarse >= mBaseLevel; coarse--) {
+            int shift = level - coarse;
+            Bitmap tile = mTiles.get(key(coarse, col >> shift, row >> shift));
+            if (tile != null) {
+                int size = Math.max(1, TILE_SIZE >> shift);
+                int x = (int) (((long) (col - ((col >> shift) << shift)) * TILE_SIZE) >> shift);
+                int y = (int) (((long) (row - ((row >> shift) << shift)) * TILE_SIZE) >> shift);
+                mSrc.set(x, y, x + size, y + size);
+                canvas.drawBitmap(tile, mSrc, mDst, mPaint);
+                return;
+            }
+        }
+    }
+
+    private int getLevel(float zoom) {
+        int level = zoom > 0 ? ceilLog2(zoom / LEVEL_TOLERANCE) : mBaseLevel;
+        return Math.min(MAX_LEVEL, Math.max(mBaseLevel, level));
+    }
+
+    private void request(final long key) {
+        if (mReleased || !mPending.add(key)) {
+            return;
+        }
+        SharpWorkers.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap tile = mWanted.contains(key) ? render(key) : null;
+                SharpWorkers.postToMain(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRendered(key, tile);
+                    }
+                });
+            }
+        });
+    }
+
+    @Nullable
+    private Bitmap render(long key) {
+        int level = level(key);
+        try {
+            Bitmap tile = SharpBitmapPool.obtain(TILE_SIZE, TILE_SIZE, TILE_CONFIG);
+            Canvas canvas = new Canvas(tile);
+            canvas.translate(-col(key) * TILE_SIZE, -row(key) * TILE_SIZE);
+            float scale = Math.scalb(1f, level);
+            canvas.scale(scale, scale);
+            canvas.drawPicture(mPicture);
+            return tile;
+        } catch (OutOfMemoryError e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_ERROR) {
+                Log.e(Sharp.TAG, "Out of memory rendering tile at level " + level, e);
+            }
+            return null;
+        }
+    }
+
+    private void onRendered(long key, @Nullable Bitmap tile) {
+        mPending.remove(key);
+        if (tile == null) {
+            return;
+        }
+        if (mReleased) {
+            releaseTile(tile);
+            return;
+        }
+        Bitmap previous = mTiles.put(key, tile);
+        if (previous != null) {
+            mSize -= previous.getByteCount();
+            releaseTile(previous);
+        }
+        mSize += tile.getByteCount();
+        trimToSize(mMaxSize);
+        mDrawable.invalidateSelf();
+    }
+
+    void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Evicts the least recently drawn tiles until the cache is no larger than the given size.
+     * The tile of the whole picture is kept.
+     */
+    private void trimToSize(long maxSize) {
+        long baseKey = key(mBaseLevel, 0, 0);
+        Iterator<Map.Entry<Long, Bitmap>> iterator = mTiles.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<Long, Bitmap> eldest = iterator.next();
+            if (eldest.getKey() == baseKey) {
+                continue;
+            }
+            mSize -= eldest.getValue().getByteCount();
+            releaseTile(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private void releaseTile(Bitmap tile) {
+        if (mHardware) {
+            // A display list may still draw it, so it must not be reused for other pixels
+            tile.recycle();
+        } else {
+            SharpBitmapPool.release(tile);
+        }
+    }
+
+    /**
+     * Recycles all tiles and drops the tiles still rendering.
+     */
+    void release() {
+        mReleased = true;
+        mWanted.clear();
+        for (Bitmap tile : mTiles.values()) {
+            releaseTile(tile);
+        }
+        mTiles.clear();
+        mSize = 0;
+    }
+
+    //<editor-fold desc="瓦片key">
+
+    private static long key(int level, int col, int row) {
+        return ((long) (level - MIN_LEVEL) << 56) | ((long) col << 28) | row;
+    }
+
+    private static int level(long key) {
+        return (int) (key >>> 56) + MIN_LEVEL;
+    }
+
+    private static int col(long key) {
+        return (int) ((key >>> 28) & 0xFFFFFFF);
+    }
+
+    private static int row(long key) {
+        return (int) (key & 0xFFFFFFF);
+    }
+
+    //</editor-fold desc="瓦片key">
+
+    private static int floorLog2(float value) {
+        return Math.getExponent(value);
+    }
+
+    static int ceilLog2(float value) {
+        int exponent = Math.getExponent(value);
+        return Math.scalb(1f, exponent) < value ? exponent + 1 : exponent;
+    }
+}
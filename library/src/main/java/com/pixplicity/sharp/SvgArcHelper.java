@@ -0,0 +1,179 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Path;
+
+/**
+ * Converts SVG elliptical arcs into cubic Bézier segments.
+ * <p>
+ * The arc is converted from endpoint to center parameterization (see the
+ * <a href="http://www.w3.org/TR/SVG/implnote.html#ArcImplementationNotes">implementation notes</a>),
+ * split into segments of at most 90 degrees, and each segment is appended to the path as a
+ * single <code>cubicTo</code> with the rotation already applied to the control points. This
+ * keeps the cost of an arc constant, regardless of how much geometry the path already holds.
+ */
+public final class SvgArcHelper {
+
+    private static final double HALF_PI = Math.PI / 2;
+
+    private SvgArcHelper() {
+    }
+
+    /**
+     * Appends an elliptical arc from (x0, y0) to (x, y) onto the path.
+     *
+     * @param p        the path to append to; its current point must be (x0, y0)
+     * @param x0       start x
+     * @param y0       start y
+     * @param x        end x
+     * @param y        end y
+     * @param rx       x radius
+     * @param ry       y radius
+     * @param theta    x-axis rotation in degrees
+     * @param largeArc large-arc-flag, 0 or 1
+     * @param sweepArc sweep-flag, 0 or 1
+     */
+    public static void arcTo(Path p, float x0, float y0, float x, float y,
+                             float rx, float ry, float theta, int largeArc, int sweepArc) {
+        SvgPathData data = new SvgPathData();
+        arcTo(data, x0, y0, x, y, rx, ry, theta, largeArc, sweepArc);
+        data.appendTo(p);
+    }
+
+    /**
+     * Same as {@link #arcTo(Path, float, float, float, float, float, float, float, int, int)},
+     * appending to path commands instead.
+     */
+    public static void arcTo(SvgPathData p, float x0, float y0, float x, float y,
+                             float rx, float ry, float theta, int largeArc, int sweepArc) {
+        if (rx == 0 || ry == 0) {
+            p.lineTo(x, y);
+            return;
+        }
+        if (x == x0 && y == y0) {
+            return; // nothing to draw
+        }
+
+        double rxd = Math.abs(rx);
+        double ryd = Math.abs(ry);
+
+        final double phi = Math.toRadians(theta % 360);
+        final double cosPhi = Math.cos(phi);
+        final double sinPhi = Math.sin(phi);
+
+        // Step 1: compute (x1', y1')
+        final double dx2 = (x0 - x) / 2.0;
+        final double dy2 = (y0 - y) / 2.0;
+        final double x1p = cosPhi * dx2 + sinPhi * dy2;
+        final double y1p = -sinPhi * dx2 + cosPhi * dy2;
+
+        // Correct out-of-range radii
+        final double x1ps = x1p * x1p;
+        final double y1ps = y1p * y1p;
+        double rxs = rxd * rxd;
+        double rys = ryd * ryd;
+        final double lambda = x1ps / rxs + y1ps / rys;
+        if (lambda > 1) {
+            final double lambdasr = Math.sqrt(lambda);
+            rxd *= lambdasr;
+            ryd *= lambdasr;
+            rxs = rxd * rxd;
+            rys = ryd * ryd;
+        }
+
+        // Step 2: compute (cx', cy')
+        final double num = rxs * rys - rxs * y1ps - rys * x1ps;
+        final double den = rxs * y1ps + rys * x1ps;
+        double coef = (num <= 0 || den == 0) ? 0 : Math.sqrt(num / den);
+        if (largeArc == sweepArc) {
+            coef = -coef;
+        }
+        final double cxp = coef * rxd * y1p / ryd;
+        final double cyp = -coef * ryd * x1p / rxd;
+
+        // Step 3: compute (cx, cy) from (cx', cy')
+        final double cx = cosPhi * cxp - sinPhi * cyp + (x0 + x) / 2.0;
+        final double cy = sinPhi * cxp + cosPhi * cyp + (y0 + y) / 2.0;
+
+        // Step 4: compute the start angle and the sweep
+        final double ux = (x1p - cxp) / rxd;
+        final double uy = (y1p - cyp) / ryd;
+        final double vx = (-x1p - cxp) / rxd;
+        final double vy = (-y1p - cyp) / ryd;
+        final double th1 = Math.atan2(uy, ux);
+        double dth = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+        if (sweepArc == 0 && dth > 0) {
+            dth -= 2 * Math.PI;
+        } else if (sweepArc != 0 && dth < 0) {
+            dth += 2 * Math.PI;
+        }
+
+        // Approximate each segment of at most 90 degrees with a single cubic
+        final int segments = Math.max(1, (int) Math.ceil(Math.abs(dth) / HALF_PI - 1e-7));
+        final double delta = dth / segments;
+        final double t = 4.0 / 3.0 * Math.tan(delta / 4);
+
+        // Unit circle -> ellipse: scale by (rx, ry), rotate by phi, translate by (cx, cy)
+        final double ax = rxd * cosPhi;
+        final double ay = rxd * sinPhi;
+        final double bx = -ryd * sinPhi;
+        final double by = ryd * cosPhi;
+
+        double cos1 = Math.cos(th1);
+        double sin1 = Math.sin(th1);
+        double th2 = th1;
+        for (int i = 0; i < segments; i++) {
+            th2 += delta;
+            final double cos2 = Math.cos(th2);
+            final double sin2 = Math.sin(th2);
+
+            final double e1x = cos1 - t * sin1;
+            final double e1y = sin1 + t * cos1;
+            final double e2x = cos2 + t * sin2;
+            final double e2y = sin2 - t * cos2;
+
+            float endX;
+            float endY;
+            if (i == segments - 1) {
+                // Land exactly on the requested end point
+                endX = x;
+                endY = y;
+            } else {
+                endX = (float) (cx + ax * cos2 + bx * sin2);
+                endY = (float) (cy + ay * cos2 + by * sin2);
+            }
+            p.cubicTo(
+                    (float) (cx + ax * e1x + bx * e1y),
+                    (float) (cy + ay * e1x + by * e1y),
+                    (float) (cx + ax * e2x + bx * e2y),
+                    (float) (cy + ay * e2x + by * e2y),
+                    endX,
+                    endY);
+
+            cos1 = cos2;
+            sin1 = sin2;
+        }
+    }
+}
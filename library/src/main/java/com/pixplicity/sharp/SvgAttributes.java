@@ -0,0 +1,142 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.xml.sax.Attributes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The attributes of the element being parsed, indexed once so that each lookup is a single hash
+ * probe instead of a scan over the SAX attributes.
+ * <p>
+ * Besides the attributes themselves it offers the computed properties of the element, in which
+ * the declarations of its <code>style</code> attribute override the rules of the document's
+ * stylesheet, which in turn override its presentation attributes. The handler reuses one
+ * instance for every element.
+ */
+final class SvgAttributes {
+
+    //属性名 -> 属性值
+    private final HashMap<String, String> mAttrs = new HashMap<>();
+    //style属性中的声明
+    private final HashMap<String, String> mDeclarations = new HashMap<>();
+    //样式表中匹配的样式, 与相同class的元素共享, 不可修改
+    @Nullable
+    private Map<String, String> mSheetStyle;
+    //mSheetStyle是否已经计算
+    private boolean mSheetResolved;
+
+    private String mTag;
+    private SvgStyleSheet mStyleSheet;
+
+    /**
+     * Indexes the attributes of the next element.
+     *
+     * @param tag the local name of the element, for type selectors
+     */
+    @NonNull
+    SvgAttributes reset(@NonNull Attributes attributes, @NonNull String tag,
+                        @NonNull SvgStyleSheet styleSheet) {
+        mAttrs.clear();
+        int n = attributes.getLength();
+        for (int i = 0; i < n; i++) {
+            mAttrs.put(attributes.getLocalName(i), attributes.getValue(i));
+        }
+        mDeclarations.clear();
+        String style = mAttrs.get("style");
+        if (style != null) {
+            putDeclarations(style, mDeclarations);
+        }
+        mTag = tag;
+        mStyleSheet = styleSheet;
+        mSheetStyle = null;
+        // Resolved on first use, most attributes are never looked up in the cascade
+        mSheetResolved = styleSheet.isEmpty();
+        return this;
+    }
+
+    /**
+     * The value of an attribute of the element.
+     */
+    @Nullable
+    String get(@NonNull String name) {
+        return mAttrs.get(name);
+    }
+
+    /**
+     * The value of a property of the element, from its style, the stylesheet or its attributes.
+     */
+    @Nullable
+    String getComputed(@NonNull String name) {
+        String value;
+        if (!mDeclarations.isEmpty()) {
+            value = mDeclarations.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (!mSheetResolved) {
+            mSheetResolved = true;
+            mSheetStyle = mStyleSheet.resolve(mTag, mAttrs.get("id"), mAttrs.get("class"));
+        }
+        if (mSheetStyle != null) {
+            value = mSheetStyle.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return mAttrs.get(name);
+    }
+
+    /**
+     * Parses CSS declarations such as <code>fill:#fff;stroke-width:2</code> into the map.
+     */
+    static void putDeclarations(@NonNull String declarations, @NonNull Map<String, String> map) {
+        int n = declarations.length();
+        int start = 0;
+        while (start < n) {
+            int end = declarations.indexOf(';', start);
+            if (end < 0) {
+                end = n;
+            }
+            int colon = declarations.indexOf(':', start);
+            if (colon > start && colon < end) {
+                String name = declarations.substring(start, colon).trim();
+                String value = declarations.substring(colon + 1, end).trim();
+                if (value.endsWith("!important")) {
+                    value = value.substring(0, value.length() - "!important".length()).trim();
+                }
+                if (!name.isEmpty()) {
+                    map.put(name, value);
+                }
+            }
+            start = end + 1;
+        }
+    }
+}
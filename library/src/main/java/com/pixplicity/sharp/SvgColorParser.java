@@ -0,0 +1,237 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses CSS colors into ARGB values: <code>#rgb</code>, <code>#rgba</code>,
+ * <code>#rrggbb</code>, <code>#rrggbbaa</code>, <code>rgb()</code>/<code>rgba()</code> with
+ * numbers or percentages, <code>hsl()</code>/<code>hsla()</code>, named colors and
+ * <code>transparent</code>. <code>currentColor</code> depends on the element and is left to the
+ * caller.
+ * <p>
+ * The same few colors repeat throughout a document, so each parse keeps a small cache of the
+ * colors it has seen; a cache hit returns the same boxed value and allocates nothing.
+ */
+final class SvgColorParser {
+
+    //缓存的颜色数量上限
+    private static final int CACHE_SIZE = 256;
+
+    private final LinkedHashMap<String, Integer> mCache =
+            new LinkedHashMap<String, Integer>(CACHE_SIZE * 4 / 3 + 1) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * @return the color as ARGB, or null if it is not a valid color
+     */
+    @Nullable
+    Integer get(@NonNull String value) {
+        Integer color = mCache.get(value);
+        if (color == null) {
+            color = parse(value);
+            if (color != null) {
+                mCache.put(value, color);
+            }
+        }
+        return color;
+    }
+
+    /**
+     * @return the color as ARGB, or null if it is not a valid color
+     */
+    @Nullable
+    static Integer parse(@NonNull String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        if (value.charAt(start) == '#') {
+            return parseHex(value, start + 1, end);
+        }
+        try {
+            if (value.regionMatches(true, start, "rgba(", 0, 5)) {
+                return parseFunction(value, start + 5, end, false);
+            } else if (value.regionMatches(true, start, "rgb(", 0, 4)) {
+                return parseFunction(value, start + 4, end, false);
+            } else if (value.regionMatches(true, start, "hsla(", 0, 5)) {
+                return parseFunction(value, start + 5, end, true);
+            } else if (value.regionMatches(true, start, "hsl(", 0, 4)) {
+                return parseFunction(value, start + 4, end, true);
+            }
+        } catch (RuntimeException e) {
+            // Malformed number
+            return null;
+        }
+        if (end - start == 11 && value.regionMatches(true, start, "transparent", 0, 11)) {
+            return 0;
+        }
+        Integer rgb = SvgColors.mapColor(start == 0 && end == value.length()
+                ? value
+                : value.substring(start, end));
+        return rgb == null ? null : rgb | 0xFF000000;
+    }
+
+    @Nullable
+    private static Integer parseHex(String value, int start, int end) {
+        int digits = end - start;
+        if (digits != 3 && digits != 4 && digits != 6 && digits != 8) {
+            return null;
+        }
+        int v = 0;
+        for (int i = start; i < end; i++) {
+            int d = Character.digit(value.charAt(i), 16);
+            if (d < 0) {
+                return null;
+            }
+            v = (v << 4) | d;
+        }
+        switch (digits) {
+            case 3:
+                // #rgb -> #rrggbb
+                return 0xFF000000 | expand(v >> 8) << 16 | expand(v >> 4) << 8 | expand(v);
+            case 4:
+                // #rgba -> #rrggbbaa
+                return expand(v) << 24 | expand(v >> 12) << 16 | expand(v >> 8) << 8 | expand(v >> 4);
+            case 6:
+                return 0xFF000000 | v;
+            default:
+                // #rrggbbaa
+                return (v << 24) | (v >>> 8);
+        }
+    }
+
+    private static int expand(int digit) {
+        digit &= 0xF;
+        return digit << 4 | digit;
+    }
+
+    /**
+     * Parses the arguments of rgb(), rgba(), hsl() or hsla(), separated by commas, whitespace or
+     * a slash before the alpha.
+     */
+    @Nullable
+    private static Integer parseFunction(String value, int start, int end, boolean hsl) {
+        if (value.charAt(end - 1) != ')' || start >= end - 1) {
+            return null;
+        }
+        SvgParserHelper ph = new SvgParserHelper(value.substring(0, end - 1), start);
+        float c0 = 0, c1 = 0, c2 = 0, alpha = 1;
+        int count = 0;
+        while (count < 4) {
+            ph.skipWhitespace();
+            if (!ph.hasFloat()) {
+                break;
+            }
+            float v = ph.parseFloat();
+            if (Float.isNaN(v)) {
+                return null;
+            }
+            boolean percent = ph.skipChar('%');
+            if (!percent && hsl && count == 0) {
+                ph.skipText("deg");
+            }
+            switch (count) {
+                case 0:
+                    c0 = hsl ? v : channel(v, percent);
+                    break;
+                case 1:
+                    c1 = hsl ? v / 100f : channel(v, percent);
+                    break;
+                case 2:
+                    c2 = hsl ? v / 100f : channel(v, percent);
+                    break;
+                default:
+                    alpha = percent ? v / 100f : v;
+                    break;
+            }
+            count++;
+            ph.skipWhitespace();
+            if (!ph.skipChar(',')) {
+                ph.skipChar('/');
+            }
+        }
+        ph.skipWhitespace();
+        if (count < 3 || !ph.isAtEnd()) {
+            return null;
+        }
+        int a = Math.round(clamp(alpha, 0, 1) * 255);
+        if (hsl) {
+            return a << 24 | hslToRgb(c0, clamp(c1, 0, 1), clamp(c2, 0, 1));
+        }
+        return a << 24 | Math.round(c0) << 16 | Math.round(c1) << 8 | Math.round(c2);
+    }
+
+    private static float channel(float v, boolean percent) {
+        return clamp(percent ? v * 2.55f : v, 0, 255);
+    }
+
+    private static float clamp(float v, float min, float max) {
+        return v < min ? min : (v > max ? max : v);
+    }
+
+    private static int hslToRgb(float hue, float saturation, float lightness) {
+        float h = ((hue % 360) + 360) % 360 / 360f;
+        float q = lightness < 0.5f
+                ? lightness * (1 + saturation)
+                : lightness + saturation - lightness * saturation;
+        float p = 2 * lightness - q;
+        int r = Math.round(hueToRgb(p, q, h + 1f / 3) * 255);
+        int g = Math.round(hueToRgb(p, q, h) * 255);
+        int b = Math.round(hueToRgb(p, q, h - 1f / 3) * 255);
+        return r << 16 | g << 8 | b;
+    }
+
+    private static float hueToRgb(float p, float q, float t) {
+        if (t < 0) {
+            t += 1;
+        } else if (t > 1) {
+            t -= 1;
+        }
+        if (t < 1f / 6) {
+            return p + (q - p) * 6 * t;
+        } else if (t < 1f / 2) {
+            return q;
+        } else if (t < 2f / 3) {
+            return p + (q - p) * (2f / 3 - t) * 6;
+        }
+        return p;
+    }
+}
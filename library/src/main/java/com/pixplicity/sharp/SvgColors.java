@@ -34,7 +34,15 @@ public class SvgColors {
     private static HashMap<String, Integer> colors = new HashMap<>();
 
     public static Integer mapColor(String color) {
-        return colors.get(color.toLowerCase(Locale.US));
+        Integer rgb = colors.get(color);
+        if (rgb == null) {
+            // Only lower case the rare names written in another case
+            String lower = color.toLowerCase(Locale.US);
+            if (!lower.equals(color)) {
+                rgb = colors.get(lower);
+            }
+        }
+        return rgb;
     }
 
     static {
@@ -0,0 +1,228 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The parsed form of an SVG: elements with their resolved styles, matrices and geometry.
+ * <p>
+ * A document is produced by {@link Sharp#getSvgDocument()} and can be rendered any number of
+ * times, with or without an {@link OnSvgElementListener}, without parsing the XML again.
+ * It is not modified by rendering.
+ * <p>
+ * A document can be compiled with {@link #writeTo(OutputStream)} and loaded again with
+ * {@link Sharp#loadCompiled(byte[])} or {@link Sharp#loadCompiled(java.io.File)}, which skips
+ * XML parsing altogether.
+ */
+public final class SvgDocument {
+
+    /**
+     * The viewBox of the root <code>&lt;svg&gt;</code> element, which is the size of the recorded
+     * picture. Null if the document has no root element.
+     */
+    @Nullable
+    final RectF mCanvasBounds;
+
+    /**
+     * The bounds reported to the picture; usually the same as {@link #mCanvasBounds}, unless the
+     * SVG specifies a hidden "bounds" layer.
+     */
+    @Nullable
+    final RectF mBounds;
+
+    /**
+     * The estimated bounds computed while parsing, null for an empty document.
+     */
+    @Nullable
+    final RectF mLimits;
+
+    @Nullable
+    final String mViewBoxStr;
+    @Nullable
+    final String mWidthStr;
+    @Nullable
+    final String mHeightStr;
+
+    @NonNull
+    final List<SvgNode> mNodes;
+
+    //内存占用估算, 懒计算; 文档在线程间共享, 见SharpCache
+    private volatile long mByteCount = -1;
+    //是否需要软件绘制, 0表示还没有计算
+    private volatile int mRequiresSoftware;
+
+    SvgDocument(@Nullable RectF canvasBounds,
+                @Nullable RectF bounds,
+                @Nullable RectF limits,
+                @Nullable String viewBoxStr,
+                @Nullable String widthStr,
+                @Nullable String heightStr,
+                @NonNull List<SvgNode> nodes) {
+        mCanvasBounds = canvasBounds;
+        mBounds = bounds;
+        mLimits = limits;
+        mViewBoxStr = viewBoxStr;
+        mWidthStr = widthStr;
+        mHeightStr = heightStr;
+        mNodes = nodes;
+    }
+
+    /**
+     * Records the document into a new picture.
+     */
+    @NonNull
+    public SharpPicture getSharpPicture() {
+        return getSharpPicture(null);
+    }
+
+    /**
+     * Records the document into a new picture, notifying the listener of every element drawn.
+     *
+     * @param listener an optional listener, which may intercept or replace elements as they are
+     *                 drawn; see {@link Sharp#setOnElementListener(OnSvgElementListener)}
+     */
+    @NonNull
+    public SharpPicture getSharpPicture(@Nullable OnSvgElementListener listener) {
+        SvgRenderer renderer = new SvgRenderer(this, listener);
+        SharpPicture result = new SharpPicture(renderer.render(), getBounds());
+        result.setRequiresSoftware(requiresSoftware());
+        // Skip bounds if it was an empty pic
+        if (mLimits != null) {
+            result.setLimits(getLimits());
+        }
+        return result;
+    }
+
+    /**
+     * Records the document and creates a drawable from it.
+     */
+    @NonNull
+    public SharpDrawable getDrawable() {
+        return getSharpPicture().getDrawable();
+    }
+
+    /**
+     * Writes the document in Sharp's compiled binary format. The output is versioned, so it
+     * should be compiled again when upgrading Sharp.
+     */
+    public void writeTo(@NonNull OutputStream out) throws IOException {
+        SvgDocumentWriter.write(this, out);
+    }
+
+    /**
+     * An estimate of the memory held by the document, see {@link SharpCache}.
+     */
+    long getByteCount() {
+        if (mByteCount < 0) {
+            long count = 256 + getByteCount(mViewBoxStr) + getByteCount(mWidthStr) + getByteCount(mHeightStr);
+            for (SvgNode node : mNodes) {
+                count += node.getByteCount();
+            }
+            mByteCount = count;
+        }
+        return mByteCount;
+    }
+
+    /**
+     * Whether the document has content that may not draw on a hardware canvas.
+     */
+    boolean requiresSoftware() {
+        if (mRequiresSoftware == 0) {
+            boolean requiresSoftware = false;
+            for (SvgNode node : mNodes) {
+                if (node.requiresSoftware()) {
+                    requiresSoftware = true;
+                    break;
+                }
+            }
+            mRequiresSoftware = requiresSoftware ? 1 : -1;
+        }
+        return mRequiresSoftware > 0;
+    }
+
+    /**
+     * Whether the document has text, see {@link SharpCompiledStore#precompile}.
+     */
+    boolean hasText() {
+        for (SvgNode node : mNodes) {
+            if (node.hasText()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getByteCount(@Nullable String value) {
+        return SvgNode.getByteCount(value);
+    }
+
+    /**
+     * Gets the bounding rectangle for the SVG, if one was specified.
+     */
+    @Nullable
+    public RectF getBounds() {
+        return mBounds == null ? null : new RectF(mBounds);
+    }
+
+    /**
+     * Gets the bounding rectangle for the SVG that was computed upon parsing, or null for an
+     * empty document.
+     */
+    @Nullable
+    public RectF getLimits() {
+        return mLimits == null ? null : new RectF(mLimits);
+    }
+
+    /**
+     * The raw <code>viewBox</code> attribute of the root element.
+     */
+    @Nullable
+    public String getViewBox() {
+        return mViewBoxStr;
+    }
+
+    /**
+     * The raw <code>width</code> attribute of the root element.
+     */
+    @Nullable
+    public String getWidth() {
+        return mWidthStr;
+    }
+
+    /**
+     * The raw <code>height</code> attribute of the root element.
+     */
+    @Nullable
+    public String getHeight() {
+        return mHeightStr;
+    }
+}
@@ -0,0 +1,456 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.angcyo.svg.DrawElement;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a document written by {@link SvgDocumentWriter}.
+ * <p>
+ * Reading works directly on a {@link ByteBuffer}, so a memory-mapped file is read without
+ * copying it first; coordinates are bulk-copied into the path commands.
+ */
+final class SvgDocumentReader {
+
+    /**
+     * "SHRP"
+     */
+    static final int MAGIC = 0x53485250;
+    static final int VERSION = 3;
+
+    static final byte NODE_GROUP = 1;
+    static final byte NODE_SHAPE = 2;
+    static final byte NODE_TEXT = 3;
+    static final byte NODE_IMAGE = 4;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final DrawElement.DrawType[] DRAW_TYPES = DrawElement.DrawType.values();
+    private static final Paint.Style[] STYLES = Paint.Style.values();
+    private static final Paint.Cap[] CAPS = Paint.Cap.values();
+    private static final Paint.Join[] JOINS = Paint.Join.values();
+    private static final Paint.Align[] ALIGNS = Paint.Align.values();
+    private static final Shader.TileMode[] TILE_MODES = Shader.TileMode.values();
+
+    //最深的节点嵌套层级, 防止损坏的数据导致栈溢出
+    private static final int MAX_DEPTH = 1024;
+
+    private final ByteBuffer mBuffer;
+    @Nullable
+    private final AssetManager mAssetManager;
+    private final float[] mMatrixValues = new float[9];
+    //按写入顺序读到的路径, 供后面的引用使用
+    private final List<SvgNode.PathGeometry> mGeometries = new ArrayList<>();
+    //当前节点的嵌套层级
+    private int mDepth;
+
+    private SvgDocumentReader(@NonNull ByteBuffer buffer, @Nullable AssetManager assetManager) {
+        mBuffer = buffer;
+        mBuffer.order(ByteOrder.BIG_ENDIAN);
+        mAssetManager = assetManager;
+    }
+
+    /**
+     * Whether the data starts like a compiled document. Only the first four bytes are looked at.
+     */
+    static boolean isCompiled(@NonNull byte[] header, int length) {
+        return length >= 4 && ((header[0] & 0xff) << 24 | (header[1] & 0xff) << 16
+                | (header[2] & 0xff) << 8 | (header[3] & 0xff)) == MAGIC;
+    }
+
+    /**
+     * Reads a compiled document from the buffer's current position, which is advanced past it.
+     *
+     * @param assetManager used to load typefaces, see {@link Sharp#withAssets(AssetManager)}
+     * @throws SvgParseException if the data is not a compiled document of a supported version
+     */
+    @NonNull
+    static SvgDocument read(@NonNull ByteBuffer buffer, @Nullable AssetManager assetManager) {
+        long start = System.currentTimeMillis();
+        SvgDocumentReader reader = new SvgDocumentReader(buffer, assetManager);
+        SvgDocument document;
+        try {
+            document = reader.readDocument();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new SvgParseException("Compiled SVG is truncated or corrupt", e);
+        }
+        if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+            Log.v(Sharp.TAG, "Loading compiled SVG complete in " + (System.currentTimeMillis() - start) + " ms.");
+        }
+        return document;
+    }
+
+    /**
+     * Reads only the size of a compiled document, see {@link Sharp#probe()}.
+     *
+     * @throws SvgParseException if the data is not a compiled document of a supported version
+     */
+    @NonNull
+    static SvgInfo readInfo(@NonNull ByteBuffer buffer) {
+        SvgDocumentReader reader = new SvgDocumentReader(buffer, null);
+        try {
+            reader.readHeader();
+            RectF canvasBounds = reader.readRect();
+            // Bounds and limits
+            reader.readRect();
+            reader.readRect();
+            return new SvgInfo(canvasBounds, reader.readString(), reader.readString(), reader.readString());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new SvgParseException("Compiled SVG is truncated or corrupt", e);
+        }
+    }
+
+    private void readHeader() {
+        if (mBuffer.getInt() != MAGIC) {
+            throw new SvgParseException("Not a compiled SVG");
+        }
+        int version = mBuffer.getShort();
+        if (version != VERSION) {
+            throw new SvgParseException("Unsupported compiled SVG version " + version);
+        }
+    }
+
+    @NonNull
+    private SvgDocument readDocument() {
+        readHeader();
+        RectF canvasBounds = readRect();
+        RectF bounds = readRect();
+        RectF limits = readRect();
+        String viewBoxStr = readString();
+        String widthStr = readString();
+        String heightStr = readString();
+        List<SvgNode> nodes = new ArrayList<>();
+        readNodes(nodes);
+        return new SvgDocument(canvasBounds, bounds, limits, viewBoxStr, widthStr, heightStr, nodes);
+    }
+
+    private void readNodes(@NonNull List<SvgNode> nodes) {
+        if (++mDepth > MAX_DEPTH) {
+            throw new SvgParseException("Compiled SVG is nested too deeply");
+        }
+        // A tag, the defs flag and the matrix flag at least
+        int count = readCount(3);
+        for (int i = 0; i < count; i++) {
+            byte tag = mBuffer.get();
+            boolean inDefs = mBuffer.get() != 0;
+            Matrix matrix = readMatrix();
+            switch (tag) {
+                case NODE_GROUP:
+                    nodes.add(readGroup(matrix, inDefs));
+                    break;
+                case NODE_SHAPE:
+                    nodes.add(readShape(matrix, inDefs));
+                    break;
+                case NODE_TEXT:
+                    nodes.add(readText(matrix, inDefs));
+                    break;
+                case NODE_IMAGE:
+                    SvgNode.Image image = readImage(matrix, inDefs);
+                    if (image != null) {
+                        nodes.add(image);
+                    }
+                    break;
+                default:
+                    throw new SvgParseException("Unknown node " + tag + " in compiled SVG");
+            }
+        }
+        mDepth--;
+    }
+
+    @NonNull
+    private SvgNode.Group readGroup(@Nullable Matrix matrix, boolean inDefs) {
+        String id = readString();
+        float opacity = mBuffer.getFloat();
+        SvgNode.Group group = new SvgNode.Group(new Sharp.SvgHandler.SvgGroup(id), matrix, opacity, inDefs);
+        readNodes(group.mChildren);
+        return group;
+    }
+
+    @NonNull
+    private SvgNode.Shape readShape(@Nullable Matrix matrix, boolean inDefs) {
+        DrawElement.DrawType type = DRAW_TYPES[mBuffer.get()];
+        String id = readString();
+        String dataName = readString();
+        String data = readString();
+        RectF rect = readRect();
+        float rx = mBuffer.getFloat();
+        float ry = mBuffer.getFloat();
+        SvgNode.PathGeometry geometry = null;
+        boolean shared = false;
+        int verbCount = mBuffer.getInt();
+        if (verbCount >= 0) {
+            checkCount(verbCount, 1);
+            byte[] verbs = new byte[verbCount];
+            mBuffer.get(verbs);
+            float[] points = readFloats();
+            checkPath(verbs, points);
+            geometry = new SvgNode.PathGeometry(new SvgPathData(verbs, verbCount, points, points.length));
+            mGeometries.add(geometry);
+        } else if (verbCount < -1) {
+            // A path shared with an earlier shape
+            geometry = mGeometries.get(-2 - verbCount);
+            shared = true;
+        }
+        Paint fillPaint = readPaint();
+        Paint strokePaint = readPaint();
+        return new SvgNode.Shape(type, id, dataName, data, matrix, rect, geometry, shared, rx, ry,
+                fillPaint, strokePaint, inDefs);
+    }
+
+    @NonNull
+    private SvgNode.Text readText(@Nullable Matrix matrix, boolean inDefs) {
+        SvgNode.Text text = new SvgNode.Text(matrix, inDefs);
+        // Three strings, four floats and a coordinate count at least
+        int count = readCount(3 * 4 + 4 * 4 + 4);
+        for (int i = 0; i < count; i++) {
+            String id = readString();
+            String dataName = readString();
+            String value = readString();
+            float x = mBuffer.getFloat();
+            float y = mBuffer.getFloat();
+            float xOffset = mBuffer.getFloat();
+            float yOffset = mBuffer.getFloat();
+            String[] xCoords = null;
+            int coordCount = mBuffer.getInt();
+            if (coordCount >= 0) {
+                checkCount(coordCount, 4);
+                xCoords = new String[coordCount];
+                for (int j = 0; j < coordCount; j++) {
+                    xCoords[j] = readString();
+                }
+            }
+            Sharp.SvgHandler.SvgText span = new Sharp.SvgHandler.SvgText(id, dataName, x, y, xCoords);
+            span.text = value;
+            span.xOffset = xOffset;
+            span.yOffset = yOffset;
+            span.hAlign = mBuffer.get();
+            span.vAlign = mBuffer.get();
+            RectF bounds = readRect();
+            if (bounds != null) {
+                span.bounds.set(bounds);
+            }
+            span.fill = readPaint();
+            span.stroke = readPaint();
+            text.mSpans.add(span);
+        }
+        return text;
+    }
+
+    @Nullable
+    private SvgNode.Image readImage(@Nullable Matrix matrix, boolean inDefs) {
+        String id = readString();
+        String dataName = readString();
+        RectF rect = readRect();
+        SvgPaint paint = readPaint();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = mBuffer.getInt();
+        int length = readCount(1);
+        Bitmap bitmap;
+        if (mBuffer.hasArray()) {
+            // Decode straight from the backing array
+            int offset = mBuffer.arrayOffset() + mBuffer.position();
+            bitmap = BitmapFactory.decodeByteArray(mBuffer.array(), offset, length, options);
+            mBuffer.position(mBuffer.position() + length);
+        } else {
+            byte[] data = new byte[length];
+            mBuffer.get(data);
+            bitmap = BitmapFactory.decodeByteArray(data, 0, length, options);
+        }
+        if (bitmap == null || rect == null || paint == null) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_WARN) {
+                Log.w(Sharp.TAG, "Failed to decode image " + id + " of compiled SVG");
+            }
+            return null;
+        }
+        return new SvgNode.Image(id, dataName, matrix, bitmap, rect, paint, null, 0, 1, inDefs);
+    }
+
+    @Nullable
+    private SvgPaint readPaint() {
+        if (mBuffer.get() == 0) {
+            return null;
+        }
+        SvgPaint paint = new SvgPaint();
+        paint.setFlags(mBuffer.getInt());
+        paint.setColor(mBuffer.getInt());
+        paint.setStyle(STYLES[mBuffer.get()]);
+        paint.setStrokeWidth(mBuffer.getFloat());
+        paint.setStrokeCap(CAPS[mBuffer.get()]);
+        paint.setStrokeJoin(JOINS[mBuffer.get()]);
+        paint.setStrokeMiter(mBuffer.getFloat());
+        paint.setTextSize(mBuffer.getFloat());
+        paint.setTextAlign(ALIGNS[mBuffer.get()]);
+        if (mBuffer.get() != 0) {
+            boolean linear = mBuffer.get() != 0;
+            float[] geometry = readFloats();
+            int[] colors = new int[readCount(4)];
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = mBuffer.getInt();
+            }
+            float[] positions = readFloats();
+            Shader.TileMode tileMode = TILE_MODES[mBuffer.get()];
+            Matrix localMatrix = readMatrix();
+            SvgPaint.ShaderSpec spec = new SvgPaint.ShaderSpec(linear, geometry, colors, positions, tileMode, localMatrix);
+            paint.setShader(spec.createShader(), spec);
+        }
+        int dashCount = mBuffer.getInt();
+        if (dashCount >= 0) {
+            checkCount(dashCount, 4);
+            float[] intervals = new float[dashCount];
+            readFloats(intervals);
+            paint.setDash(intervals);
+        }
+        if (mBuffer.get() != 0) {
+            String family = readString();
+            int style = mBuffer.getInt();
+            Typeface typeface = Sharp.SvgHandler.createTypeface(mAssetManager, family, style, null);
+            paint.setTypeface(typeface, family, style);
+        }
+        return paint;
+    }
+
+    @Nullable
+    private Matrix readMatrix() {
+        if (mBuffer.get() == 0) {
+            return null;
+        }
+        readFloats(mMatrixValues);
+        Matrix matrix = new Matrix();
+        matrix.setValues(mMatrixValues);
+        return matrix;
+    }
+
+    @Nullable
+    private RectF readRect() {
+        if (mBuffer.get() == 0) {
+            return null;
+        }
+        return new RectF(mBuffer.getFloat(), mBuffer.getFloat(), mBuffer.getFloat(), mBuffer.getFloat());
+    }
+
+    @NonNull
+    private float[] readFloats() {
+        float[] values = new float[readCount(4)];
+        readFloats(values);
+        return values;
+    }
+
+    private void readFloats(@NonNull float[] values) {
+        // Bulk copy instead of reading float by float
+        mBuffer.asFloatBuffer().get(values);
+        mBuffer.position(mBuffer.position() + values.length * 4);
+    }
+
+    @Nullable
+    private String readString() {
+        int length = mBuffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        checkCount(length, 1);
+        String value;
+        if (mBuffer.hasArray()) {
+            value = new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(), length, UTF_8);
+            mBuffer.position(mBuffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            mBuffer.get(bytes);
+            value = new String(bytes, UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the number of elements that follow.
+     *
+     * @param elementSize the fewest bytes an element takes
+     */
+    private int readCount(int elementSize) {
+        int count = mBuffer.getInt();
+        checkCount(count, elementSize);
+        return count;
+    }
+
+    /**
+     * Checks a count read from the data before anything is allocated for it, so corrupt data
+     * fails instead of allocating arrays of any size.
+     *
+     * @throws SvgParseException if the count is negative or there is not enough data left
+     */
+    private void checkCount(int count, int elementSize) {
+        if (count < 0 || (long) count * elementSize > mBuffer.remaining()) {
+            throw new SvgParseException("Compiled SVG is truncated or corrupt: count " + count
+                    + " at " + mBuffer.position() + " with " + mBuffer.remaining() + " bytes left");
+        }
+    }
+
+    /**
+     * Checks that the points are exactly those the verbs consume.
+     */
+    private static void checkPath(@NonNull byte[] verbs, @NonNull float[] points) {
+        long needed = 0;
+        for (byte verb : verbs) {
+            switch (verb) {
+                case SvgPathData.MOVE:
+                case SvgPathData.LINE:
+                    needed += 2;
+                    break;
+                case SvgPathData.QUAD:
+                    needed += 4;
+                    break;
+                case SvgPathData.CUBIC:
+                    needed += 6;
+                    break;
+                case SvgPathData.CLOSE:
+                    break;
+                default:
+                    throw new SvgParseException("Unknown path verb " + verb + " in compiled SVG");
+            }
+        }
+        if (needed != points.length) {
+            throw new SvgParseException("Compiled SVG path has " + points.length + " coordinates for "
+                    + needed);
+        }
+    }
+}
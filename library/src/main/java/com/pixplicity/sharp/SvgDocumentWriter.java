@@ -0,0 +1,274 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import static com.pixplicity.sharp.SvgDocumentReader.MAGIC;
+import static com.pixplicity.sharp.SvgDocumentReader.NODE_GROUP;
+import static com.pixplicity.sharp.SvgDocumentReader.NODE_IMAGE;
+import static com.pixplicity.sharp.SvgDocumentReader.NODE_SHAPE;
+import static com.pixplicity.sharp.SvgDocumentReader.NODE_TEXT;
+import static com.pixplicity.sharp.SvgDocumentReader.UTF_8;
+import static com.pixplicity.sharp.SvgDocumentReader.VERSION;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Writes an {@link SvgDocument} in the compiled format read by {@link SvgDocumentReader}.
+ * <p>
+ * All values are big-endian. Path commands are stored as absolute coordinates, paints as their
+ * resolved properties and images as their original encoded data with the sample size they were
+ * decoded at, so that loading needs neither XML nor number parsing.
+ * Path geometry shared by several <code>&lt;use&gt;</code> elements is written once.
+ */
+final class SvgDocumentWriter {
+
+    private final DataOutputStream mOut;
+    private final float[] mMatrixValues = new float[9];
+    //已经写入的路径 -> 序号
+    private final IdentityHashMap<SvgNode.PathGeometry, Integer> mGeometries = new IdentityHashMap<>();
+
+    private SvgDocumentWriter(@NonNull OutputStream out) {
+        mOut = new DataOutputStream(out);
+    }
+
+    static void write(@NonNull SvgDocument document, @NonNull OutputStream out) throws IOException {
+        SvgDocumentWriter writer = new SvgDocumentWriter(out);
+        writer.writeDocument(document);
+        writer.mOut.flush();
+    }
+
+    private void writeDocument(@NonNull SvgDocument document) throws IOException {
+        mOut.writeInt(MAGIC);
+        mOut.writeShort(VERSION);
+        writeRect(document.mCanvasBounds);
+        writeRect(document.mBounds);
+        writeRect(document.mLimits);
+        writeString(document.mViewBoxStr);
+        writeString(document.mWidthStr);
+        writeString(document.mHeightStr);
+        writeNodes(document.mNodes);
+    }
+
+    private void writeNodes(@NonNull List<SvgNode> nodes) throws IOException {
+        mOut.writeInt(nodes.size());
+        for (SvgNode node : nodes) {
+            if (node instanceof SvgNode.Group) {
+                mOut.writeByte(NODE_GROUP);
+                writeNodeHeader(node);
+                writeGroup((SvgNode.Group) node);
+            } else if (node instanceof SvgNode.Shape) {
+                mOut.writeByte(NODE_SHAPE);
+                writeNodeHeader(node);
+                writeShape((SvgNode.Shape) node);
+            } else if (node instanceof SvgNode.Text) {
+                mOut.writeByte(NODE_TEXT);
+                writeNodeHeader(node);
+                writeText((SvgNode.Text) node);
+            } else if (node instanceof SvgNode.Image) {
+                mOut.writeByte(NODE_IMAGE);
+                writeNodeHeader(node);
+                writeImage((SvgNode.Image) node);
+            } else {
+                throw new IllegalArgumentException("Unknown node " + node);
+            }
+        }
+    }
+
+    private void writeNodeHeader(@NonNull SvgNode node) throws IOException {
+        mOut.writeBoolean(node.mInDefs);
+        writeMatrix(node.mMatrix);
+    }
+
+    private void writeGroup(@NonNull SvgNode.Group group) throws IOException {
+        writeString(group.mGroup.id);
+        mOut.writeFloat(group.mOpacity);
+        writeNodes(group.mChildren);
+    }
+
+    private void writeShape(@NonNull SvgNode.Shape shape) throws IOException {
+        mOut.writeByte(shape.mType.ordinal());
+        writeString(shape.mId);
+        writeString(shape.mDataName);
+        writeString(shape.mData);
+        writeRect(shape.mRect);
+        mOut.writeFloat(shape.mRx);
+        mOut.writeFloat(shape.mRy);
+        SvgNode.PathGeometry geometry = shape.mGeometry;
+        Integer index = geometry == null ? null : mGeometries.get(geometry);
+        if (geometry == null) {
+            mOut.writeInt(-1);
+        } else if (index != null) {
+            // A reference to a geometry written before
+            mOut.writeInt(-2 - index);
+        } else {
+            mGeometries.put(geometry, mGeometries.size());
+            SvgPathData pathData = geometry.mPathData;
+            int verbCount = pathData.getVerbCount();
+            mOut.writeInt(verbCount);
+            mOut.write(pathData.getVerbs(), 0, verbCount);
+            writeFloats(pathData.getPoints(), pathData.getPointCount());
+        }
+        writePaint(shape.mFillPaint);
+        writePaint(shape.mStrokePaint);
+    }
+
+    private void writeText(@NonNull SvgNode.Text text) throws IOException {
+        mOut.writeInt(text.mSpans.size());
+        for (Sharp.SvgHandler.SvgText span : text.mSpans) {
+            writeString(span.id);
+            writeString(span.dataName);
+            writeString(span.text);
+            mOut.writeFloat(span.x);
+            mOut.writeFloat(span.y);
+            mOut.writeFloat(span.xOffset);
+            mOut.writeFloat(span.yOffset);
+            if (span.xCoords == null) {
+                mOut.writeInt(-1);
+            } else {
+                mOut.writeInt(span.xCoords.length);
+                for (String xCoord : span.xCoords) {
+                    writeString(xCoord);
+                }
+            }
+            mOut.writeByte(span.hAlign);
+            mOut.writeByte(span.vAlign);
+            writeRect(span.bounds);
+            writePaint(span.fill);
+            writePaint(span.stroke);
+        }
+    }
+
+    private void writeImage(@NonNull SvgNode.Image image) throws IOException {
+        writeString(image.mId);
+        writeString(image.mDataName);
+        writeRect(image.mRect);
+        writePaint(image.mPaint);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        if (image.mHref != null) {
+            // Far smaller and faster than compressing the decoded bitmap again
+            SvgImageDecoder.copyData(image.mHref, image.mDataOffset, data);
+            mOut.writeInt(image.mSampleSize);
+        } else {
+            if (!image.mBitmap.compress(Bitmap.CompressFormat.PNG, 100, data)) {
+                throw new IOException("Failed to compress image " + image.mId);
+            }
+            mOut.writeInt(1);
+        }
+        mOut.writeInt(data.size());
+        data.writeTo(mOut);
+    }
+
+    private void writePaint(@Nullable Paint paint) throws IOException {
+        mOut.writeBoolean(paint != null);
+        if (paint == null) {
+            return;
+        }
+        mOut.writeInt(paint.getFlags());
+        mOut.writeInt(paint.getColor());
+        mOut.writeByte(paint.getStyle().ordinal());
+        mOut.writeFloat(paint.getStrokeWidth());
+        mOut.writeByte(paint.getStrokeCap().ordinal());
+        mOut.writeByte(paint.getStrokeJoin().ordinal());
+        mOut.writeFloat(paint.getStrokeMiter());
+        mOut.writeFloat(paint.getTextSize());
+        mOut.writeByte(paint.getTextAlign().ordinal());
+
+        SvgPaint svgPaint = paint instanceof SvgPaint ? (SvgPaint) paint : null;
+        SvgPaint.ShaderSpec spec = svgPaint == null ? null : svgPaint.getShaderSpec();
+        mOut.writeBoolean(spec != null);
+        if (spec != null) {
+            mOut.writeBoolean(spec.mLinear);
+            writeFloats(spec.mGeometry, spec.mGeometry.length);
+            mOut.writeInt(spec.mColors.length);
+            for (int color : spec.mColors) {
+                mOut.writeInt(color);
+            }
+            writeFloats(spec.mPositions, spec.mPositions.length);
+            mOut.writeByte(spec.mTileMode.ordinal());
+            writeMatrix(spec.mLocalMatrix);
+        }
+        float[] dash = svgPaint == null ? null : svgPaint.getDashIntervals();
+        if (dash == null) {
+            mOut.writeInt(-1);
+        } else {
+            writeFloats(dash, dash.length);
+        }
+        boolean fontSet = svgPaint != null && svgPaint.isFontSet();
+        mOut.writeBoolean(fontSet);
+        if (fontSet) {
+            writeString(svgPaint.getFontFamily());
+            mOut.writeInt(svgPaint.getFontStyle());
+        }
+    }
+
+    private void writeMatrix(@Nullable Matrix matrix) throws IOException {
+        mOut.writeBoolean(matrix != null);
+        if (matrix != null) {
+            matrix.getValues(mMatrixValues);
+            for (float value : mMatrixValues) {
+                mOut.writeFloat(value);
+            }
+        }
+    }
+
+    private void writeRect(@Nullable RectF rect) throws IOException {
+        mOut.writeBoolean(rect != null);
+        if (rect != null) {
+            mOut.writeFloat(rect.left);
+            mOut.writeFloat(rect.top);
+            mOut.writeFloat(rect.right);
+            mOut.writeFloat(rect.bottom);
+        }
+    }
+
+    private void writeFloats(@NonNull float[] values, int count) throws IOException {
+        mOut.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            mOut.writeFloat(values[i]);
+        }
+    }
+
+    private void writeString(@Nullable String value) throws IOException {
+        if (value == null) {
+            mOut.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            mOut.writeInt(bytes.length);
+            mOut.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.Base64InputStream;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Decodes the base64 data URIs of <code>&lt;image&gt;</code> elements.
+ * <p>
+ * The data is decoded as a stream straight from the attribute value, so neither the base64 text
+ * nor the encoded image is ever copied into a byte array. The size of the image is read first,
+ * then the image is decoded with the largest sample size that keeps it at least as large as it
+ * is drawn.
+ */
+final class SvgImageDecoder {
+
+    private static final String BASE64_MARKER = ";base64,";
+
+    private SvgImageDecoder() {
+    }
+
+    /**
+     * @return the offset of the base64 data in a <code>data:image/...;base64,</code> URI, or -1
+     * if the URI is not a base64 image
+     */
+    static int getDataOffset(@NonNull String href) {
+        if (!href.startsWith("data:image/")) {
+            return -1;
+        }
+        int index = href.indexOf(BASE64_MARKER);
+        return index < 0 ? -1 : index + BASE64_MARKER.length();
+    }
+
+    /**
+     * Reads the size of the image without decoding its pixels.
+     *
+     * @return the options holding the size in <code>outWidth</code> and <code>outHeight</code>,
+     * or null if the data is not a valid image
+     */
+    @Nullable
+    static BitmapFactory.Options decodeBounds(@NonNull String href, int offset) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(href, offset, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        return options;
+    }
+
+    @Nullable
+    static Bitmap decode(@NonNull String href, int offset, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        try {
+            return decodeStream(href, offset, options);
+        } catch (OutOfMemoryError e) {
+            if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_ERROR) {
+                Log.e(Sharp.TAG, "Out of memory decoding image at sample size " + sampleSize, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes the encoded image of a data URI, e.g. the PNG or JPEG file, without decoding it.
+     */
+    static void copyData(@NonNull String href, int offset, @NonNull OutputStream out)
+            throws IOException {
+        InputStream in = new Base64InputStream(new AsciiInputStream(href, offset), Base64.DEFAULT);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The power of two to divide the image size by, so that the image is no larger than needed
+     * to cover the target size and has at most <code>maxPixels</code> pixels.
+     *
+     * @param targetWidth  the width the image is drawn at
+     * @param targetHeight the height the image is drawn at
+     * @param maxPixels    the most pixels the image may have, 0 for no limit
+     * @return 0 if the image cannot have fewer pixels than <code>maxPixels</code>
+     */
+    static int getSampleSize(int width, int height, float targetWidth, float targetHeight,
+                             long maxPixels) {
+        targetWidth = Math.max(targetWidth, 1);
+        targetHeight = Math.max(targetHeight, 1);
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        if (maxPixels > 0) {
+            while ((long) ceilDiv(width, sampleSize) * ceilDiv(height, sampleSize) > maxPixels) {
+                if (width <= sampleSize && height <= sampleSize) {
+                    return 0;
+                }
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    @Nullable
+    private static Bitmap decodeStream(String href, int offset, BitmapFactory.Options options) {
+        InputStream in = new Base64InputStream(new AsciiInputStream(href, offset), Base64.DEFAULT);
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing to release
+            }
+        }
+    }
+
+    /**
+     * The characters of a string as bytes, for base64 text which is plain ASCII.
+     */
+    private static final class AsciiInputStream extends InputStream {
+
+        private final String mText;
+        private final int mEnd;
+        private int mPos;
+
+        AsciiInputStream(String text, int offset) {
+            mText = text;
+            mEnd = text.length();
+            mPos = offset;
+        }
+
+        @Override
+        public int read() {
+            return mPos < mEnd ? mText.charAt(mPos++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (mPos >= mEnd) {
+                return -1;
+            }
+            int count = Math.min(len, mEnd - mPos);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) mText.charAt(mPos++);
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mEnd - mPos;
+        }
+    }
+}
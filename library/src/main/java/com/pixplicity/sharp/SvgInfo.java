@@ -0,0 +1,94 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.RectF;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The size of an SVG as declared by its root <code>&lt;svg&gt;</code> element, as returned by
+ * {@link Sharp#probe()} without parsing the rest of the document.
+ */
+public final class SvgInfo {
+
+    @Nullable
+    private final RectF mBounds;
+    @Nullable
+    private final String mViewBoxStr;
+    @Nullable
+    private final String mWidthStr;
+    @Nullable
+    private final String mHeightStr;
+
+    SvgInfo(@Nullable RectF bounds,
+            @Nullable String viewBoxStr,
+            @Nullable String widthStr,
+            @Nullable String heightStr) {
+        mBounds = bounds;
+        mViewBoxStr = viewBoxStr;
+        mWidthStr = widthStr;
+        mHeightStr = heightStr;
+    }
+
+    /**
+     * The viewBox of the root element, or its width and height if it has no viewBox; the same
+     * as the size of the picture {@link Sharp#getSharpPicture()} would record. Null if the
+     * document has no root <code>&lt;svg&gt;</code> element.
+     */
+    @Nullable
+    public RectF getBounds() {
+        return mBounds == null ? null : new RectF(mBounds);
+    }
+
+    /**
+     * The raw <code>viewBox</code> attribute of the root element.
+     */
+    @Nullable
+    public String getViewBox() {
+        return mViewBoxStr;
+    }
+
+    /**
+     * The raw <code>width</code> attribute of the root element.
+     */
+    @Nullable
+    public String getWidth() {
+        return mWidthStr;
+    }
+
+    /**
+     * The raw <code>height</code> attribute of the root element.
+     */
+    @Nullable
+    public String getHeight() {
+        return mHeightStr;
+    }
+
+    @Override
+    public String toString() {
+        return "SvgInfo[bounds=" + mBounds + ",viewBox=" + mViewBoxStr
+                + ",width=" + mWidthStr + ",height=" + mHeightStr + "]";
+    }
+}
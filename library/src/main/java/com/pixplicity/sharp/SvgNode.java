@@ -0,0 +1,401 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.angcyo.svg.DrawElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node of the parsed {@link SvgDocument} scene graph.
+ * <p>
+ * Nodes are built once by {@link Sharp.SvgHandler} and are not modified afterwards; styles are
+ * already resolved into paints, transforms into matrices and geometry into paths and rects.
+ * {@link SvgRenderer} walks the nodes to record them into a canvas.
+ */
+abstract class SvgNode {
+
+    /**
+     * The element's own transform, or null if it has none.
+     */
+    @Nullable
+    final Matrix mMatrix;
+
+    /**
+     * Whether the element was declared inside <code>&lt;defs&gt;</code>.
+     */
+    final boolean mInDefs;
+
+    SvgNode(@Nullable Matrix matrix, boolean inDefs) {
+        mMatrix = matrix;
+        mInDefs = inDefs;
+    }
+
+    abstract void render(@NonNull SvgRenderer renderer);
+
+    /**
+     * An estimate of the memory held by the node, used to size {@link SharpCache}.
+     */
+    abstract long getByteCount();
+
+    /**
+     * Whether drawing the node on a hardware canvas may fail, see
+     * {@link SharpDrawable#setHardwareModeEnabled(boolean)}.
+     */
+    boolean requiresSoftware() {
+        return false;
+    }
+
+    /**
+     * Whether the node has text, which is measured with the fonts of the device while parsing.
+     */
+    boolean hasText() {
+        return false;
+    }
+
+    static long getByteCount(@Nullable Matrix matrix) {
+        return matrix == null ? 0 : 64;
+    }
+
+    static long getByteCount(@Nullable String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    static long getByteCount(@Nullable Paint paint) {
+        // Mostly native; shaders and typefaces are shared or small
+        return paint == null ? 0 : 160;
+    }
+
+    /**
+     * A <code>&lt;g&gt;</code> element and its children.
+     */
+    static final class Group extends SvgNode {
+
+        @NonNull
+        final Sharp.SvgHandler.SvgGroup mGroup;
+        /**
+         * Group opacity, a value below 1 renders the group into a layer.
+         */
+        final float mOpacity;
+        final List<SvgNode> mChildren = new ArrayList<>();
+
+        Group(@NonNull Sharp.SvgHandler.SvgGroup group, @Nullable Matrix matrix, float opacity, boolean inDefs) {
+            super(matrix, inDefs);
+            mGroup = group;
+            mOpacity = opacity;
+        }
+
+        @Override
+        void render(@NonNull SvgRenderer renderer) {
+            renderer.renderGroup(this);
+        }
+
+        @Override
+        long getByteCount() {
+            long count = 48 + getByteCount(mMatrix);
+            for (SvgNode child : mChildren) {
+                count += child.getByteCount();
+            }
+            return count;
+        }
+
+        @Override
+        boolean requiresSoftware() {
+            for (SvgNode child : mChildren) {
+                if (child.requiresSoftware()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        boolean hasText() {
+            for (SvgNode child : mChildren) {
+                if (child.hasText()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A rect, line, circle, ellipse, polygon, polyline or path element.
+     */
+    static final class Shape extends SvgNode {
+
+        @NonNull
+        final DrawElement.DrawType mType;
+        @Nullable
+        final String mId;
+        @Nullable
+        final String mDataName;
+        /**
+         * The path data for {@link DrawElement.DrawType#PATH} shapes; null for polygons and
+         * polylines, whose data is built from {@link #mPathData} when a listener needs it.
+         */
+        @Nullable
+        final String mData;
+        /**
+         * The geometry of rects, ovals and lines (as x1, y1, x2, y2), or the bounds of a path.
+         */
+        @NonNull
+        final RectF mRect;
+        @Nullable
+        final SvgPathData mPathData;
+        /**
+         * Holds {@link #mPathData}; shared by every <code>&lt;use&gt;</code> of the same path.
+         */
+        @Nullable
+        final PathGeometry mGeometry;
+        //mGeometry由其他节点计入内存大小
+        private final boolean mSharedGeometry;
+        final float mRx, mRy;
+        @Nullable
+        final Paint mFillPaint;
+        @Nullable
+        final Paint mStrokePaint;
+
+        Shape(@NonNull DrawElement.DrawType type,
+              @Nullable String id,
+              @Nullable String dataName,
+              @Nullable String data,
+              @Nullable Matrix matrix,
+              @NonNull RectF rect,
+              @Nullable SvgPathData pathData,
+              float rx,
+              float ry,
+              @Nullable Paint fillPaint,
+              @Nullable Paint strokePaint,
+              boolean inDefs) {
+            this(type, id, dataName, data, matrix, rect,
+                    pathData == null ? null : new PathGeometry(pathData), false,
+                    rx, ry, fillPaint, strokePaint, inDefs);
+        }
+
+        /**
+         * @param sharedGeometry whether another node already accounts for the geometry's memory
+         */
+        Shape(@NonNull DrawElement.DrawType type,
+              @Nullable String id,
+              @Nullable String dataName,
+              @Nullable String data,
+              @Nullable Matrix matrix,
+              @NonNull RectF rect,
+              @Nullable PathGeometry geometry,
+              boolean sharedGeometry,
+              float rx,
+              float ry,
+              @Nullable Paint fillPaint,
+              @Nullable Paint strokePaint,
+              boolean inDefs) {
+            super(matrix, inDefs);
+            mType = type;
+            mId = id;
+            mDataName = dataName;
+            mData = data;
+            mRect = rect;
+            mGeometry = geometry;
+            mPathData = geometry == null ? null : geometry.mPathData;
+            mSharedGeometry = sharedGeometry;
+            mRx = rx;
+            mRy = ry;
+            mFillPaint = fillPaint;
+            mStrokePaint = strokePaint;
+        }
+
+        /**
+         * The path of {@link DrawElement.DrawType#PATH} shapes, created on first use.
+         */
+        @Nullable
+        Path getPath() {
+            return mGeometry == null ? null : mGeometry.getPath();
+        }
+
+        @Override
+        void render(@NonNull SvgRenderer renderer) {
+            renderer.renderShape(this);
+        }
+
+        @Override
+        long getByteCount() {
+            long count = 96 + getByteCount(mMatrix)
+                    + getByteCount(mId) + getByteCount(mDataName) + getByteCount(mData)
+                    + getByteCount(mFillPaint) + getByteCount(mStrokePaint);
+            if (mGeometry != null && !mSharedGeometry) {
+                count += mGeometry.getByteCount();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Parsed path commands and the {@link Path} made from them on first use. A path declared in
+     * <code>&lt;defs&gt;</code> is parsed once into a geometry that all its uses draw, each with
+     * its own matrix.
+     */
+    static final class PathGeometry {
+
+        @NonNull
+        final SvgPathData mPathData;
+        //由mPathData懒创建
+        @Nullable
+        private volatile Path mPath;
+
+        PathGeometry(@NonNull SvgPathData pathData) {
+            mPathData = pathData;
+        }
+
+        @NonNull
+        Path getPath() {
+            // Documents may be shared between threads; creating the path twice is harmless
+            Path path = mPath;
+            if (path == null) {
+                path = mPathData.toPath();
+                mPath = path;
+            }
+            return path;
+        }
+
+        long getByteCount() {
+            // The commands, and about as much again for the native path made from them
+            return 2L * (mPathData.getVerbCount() + 4L * mPathData.getPointCount());
+        }
+    }
+
+    /**
+     * A <code>&lt;text&gt;</code> element; its spans are drawn in the order they were closed, so
+     * nested <code>&lt;tspan&gt;</code> elements come before the text itself.
+     */
+    static final class Text extends SvgNode {
+
+        final List<Sharp.SvgHandler.SvgText> mSpans = new ArrayList<>();
+
+        Text(@Nullable Matrix matrix, boolean inDefs) {
+            super(matrix, inDefs);
+        }
+
+        @Override
+        void render(@NonNull SvgRenderer renderer) {
+            renderer.renderText(this);
+        }
+
+        @Override
+        long getByteCount() {
+            long count = 48 + getByteCount(mMatrix);
+            for (Sharp.SvgHandler.SvgText span : mSpans) {
+                count += 96 + getByteCount(span.id) + getByteCount(span.dataName)
+                        + getByteCount(span.text) + getByteCount(span.fill) + getByteCount(span.stroke);
+            }
+            return count;
+        }
+
+        @Override
+        boolean hasText() {
+            return true;
+        }
+    }
+
+    /**
+     * An <code>&lt;image&gt;</code> element with its decoded bitmap.
+     */
+    static final class Image extends SvgNode {
+
+        //所有设备都支持的纹理尺寸
+        private static final int MAX_TEXTURE_SIZE = 4096;
+
+        @Nullable
+        final String mId;
+        @Nullable
+        final String mDataName;
+        @NonNull
+        final Bitmap mBitmap;
+        @NonNull
+        final RectF mRect;
+        @NonNull
+        final Paint mPaint;
+        //图片的base64 data URI, 编译时原样保存编码后的图片, 不重新压缩
+        @Nullable
+        final String mHref;
+        //base64数据在mHref中的起始位置
+        final int mDataOffset;
+        //mBitmap解码时的inSampleSize
+        final int mSampleSize;
+
+        /**
+         * @param href       the data URI the bitmap was decoded from, if any
+         * @param dataOffset the offset of the base64 data in <code>href</code>
+         * @param sampleSize the <code>inSampleSize</code> the bitmap was decoded at
+         */
+        Image(@Nullable String id,
+              @Nullable String dataName,
+              @Nullable Matrix matrix,
+              @NonNull Bitmap bitmap,
+              @NonNull RectF rect,
+              @NonNull Paint paint,
+              @Nullable String href,
+              int dataOffset,
+              int sampleSize,
+              boolean inDefs) {
+            super(matrix, inDefs);
+            mId = id;
+            mDataName = dataName;
+            mBitmap = bitmap;
+            mRect = rect;
+            mPaint = paint;
+            mHref = href;
+            mDataOffset = dataOffset;
+            mSampleSize = sampleSize;
+        }
+
+        @Override
+        void render(@NonNull SvgRenderer renderer) {
+            renderer.renderImage(this);
+        }
+
+        @Override
+        long getByteCount() {
+            return 64 + getByteCount(mMatrix) + getByteCount(mId) + getByteCount(mDataName)
+                    + getByteCount(mPaint) + getByteCount(mHref)
+                    + (long) mBitmap.getRowBytes() * mBitmap.getHeight();
+        }
+
+        @Override
+        boolean requiresSoftware() {
+            // Larger bitmaps may not fit in a texture
+            return mBitmap.getWidth() > MAX_TEXTURE_SIZE || mBitmap.getHeight() > MAX_TEXTURE_SIZE;
+        }
+    }
+}
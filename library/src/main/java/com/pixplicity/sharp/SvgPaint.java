@@ -0,0 +1,186 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.DashPathEffect;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PathEffect;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A paint that remembers how its shader, dash effect and typeface were made.
+ * <p>
+ * Android cannot describe those objects once they are set on a paint, so the parser records
+ * them here; that is what allows a parsed document to be compiled. Setting a shader, path
+ * effect or typeface through the plain {@link Paint} setters forgets the description.
+ */
+final class SvgPaint extends TextPaint {
+
+    @Nullable
+    private ShaderSpec mShaderSpec;
+    @Nullable
+    private float[] mDashIntervals;
+    //字体名称, null表示系统默认字体
+    @Nullable
+    private String mFontFamily;
+    private int mFontStyle = Typeface.NORMAL;
+    private boolean mFontSet;
+
+    SvgPaint() {
+        super();
+    }
+
+    SvgPaint(@NonNull Paint paint) {
+        super(paint);
+        if (paint instanceof SvgPaint) {
+            SvgPaint svgPaint = (SvgPaint) paint;
+            mShaderSpec = svgPaint.mShaderSpec;
+            mDashIntervals = svgPaint.mDashIntervals;
+            mFontFamily = svgPaint.mFontFamily;
+            mFontStyle = svgPaint.mFontStyle;
+            mFontSet = svgPaint.mFontSet;
+        }
+    }
+
+    @Override
+    public Shader setShader(Shader shader) {
+        mShaderSpec = null;
+        return super.setShader(shader);
+    }
+
+    void setShader(@NonNull Shader shader, @NonNull ShaderSpec spec) {
+        super.setShader(shader);
+        mShaderSpec = spec;
+    }
+
+    @Override
+    public PathEffect setPathEffect(PathEffect effect) {
+        mDashIntervals = null;
+        return super.setPathEffect(effect);
+    }
+
+    void setDash(@NonNull float[] intervals) {
+        super.setPathEffect(new DashPathEffect(intervals, 0));
+        mDashIntervals = intervals;
+    }
+
+    @Override
+    public Typeface setTypeface(Typeface typeface) {
+        mFontSet = false;
+        return super.setTypeface(typeface);
+    }
+
+    void setTypeface(Typeface typeface, @Nullable String family, int style) {
+        super.setTypeface(typeface);
+        mFontFamily = family;
+        mFontStyle = style;
+        mFontSet = true;
+    }
+
+    @Nullable
+    ShaderSpec getShaderSpec() {
+        return mShaderSpec;
+    }
+
+    @Nullable
+    float[] getDashIntervals() {
+        return mDashIntervals;
+    }
+
+    /**
+     * Whether the typeface was set by the parser, see {@link #getFontFamily()} and
+     * {@link #getFontStyle()}.
+     */
+    boolean isFontSet() {
+        return mFontSet;
+    }
+
+    @Nullable
+    String getFontFamily() {
+        return mFontFamily;
+    }
+
+    int getFontStyle() {
+        return mFontStyle;
+    }
+
+    /**
+     * Everything needed to create a gradient shader again.
+     */
+    static final class ShaderSpec {
+
+        final boolean mLinear;
+        /**
+         * x1, y1, x2, y2 for linear gradients; cx, cy, r for radial ones.
+         */
+        @NonNull
+        final float[] mGeometry;
+        @NonNull
+        final int[] mColors;
+        @NonNull
+        final float[] mPositions;
+        @NonNull
+        final Shader.TileMode mTileMode;
+        @Nullable
+        final Matrix mLocalMatrix;
+
+        ShaderSpec(boolean linear,
+                   @NonNull float[] geometry,
+                   @NonNull int[] colors,
+                   @NonNull float[] positions,
+                   @NonNull Shader.TileMode tileMode,
+                   @Nullable Matrix localMatrix) {
+            mLinear = linear;
+            mGeometry = geometry;
+            mColors = colors;
+            mPositions = positions;
+            mTileMode = tileMode;
+            mLocalMatrix = localMatrix;
+        }
+
+        @NonNull
+        Shader createShader() {
+            Shader shader;
+            if (mLinear) {
+                shader = new LinearGradient(mGeometry[0], mGeometry[1], mGeometry[2], mGeometry[3],
+                        mColors, mPositions, mTileMode);
+            } else {
+                shader = new RadialGradient(mGeometry[0], mGeometry[1], mGeometry[2],
+                        mColors, mPositions, mTileMode);
+            }
+            if (mLocalMatrix != null) {
+                shader.setLocalMatrix(mLocalMatrix);
+            }
+            return shader;
+        }
+    }
+}
@@ -23,6 +23,10 @@
 
 package com.pixplicity.sharp;
 
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
 /**
  * Parses numbers from SVG text. Based on the Batik Number Parser (Apache 2 License).
  *
@@ -68,15 +72,55 @@ public class SvgParserHelper {
     }
 
     private char current;
-    private final CharSequence s;
+    private CharSequence s;
     public int pos;
-    private final int n;
+    private int n;
 
     public SvgParserHelper(CharSequence s, int pos) {
+        reset(s, pos);
+    }
+
+    /**
+     * Starts reading another text, so a single helper can be reused.
+     */
+    public void reset(CharSequence s, int pos) {
         this.s = s;
         this.pos = pos;
         n = s.length();
-        current = s.charAt(pos);
+        current = pos < n ? s.charAt(pos) : '\0';
+    }
+
+    public boolean isAtEnd() {
+        return pos >= n;
+    }
+
+    /**
+     * Skips the character if it is next.
+     */
+    public boolean skipChar(char c) {
+        if (pos < n && current == c) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips the text if it is next.
+     */
+    public boolean skipText(@NonNull String text) {
+        int len = text.length();
+        if (pos + len > n) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(pos + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        pos += len;
+        current = pos < n ? s.charAt(pos) : '\0';
+        return true;
     }
 
     private char read() {
@@ -107,6 +151,7 @@ public class SvgParserHelper {
                 case ' ':
                 case ',':
                 case '\n':
+                case '\r':
                 case '\t':
                     advance();
                     break;
@@ -398,6 +443,69 @@ public class SvgParserHelper {
         throw new RuntimeException("Unexpected char '" + c + "'.");
     }
 
+    /**
+     * Whether a number follows, after any whitespace.
+     */
+    public boolean hasFloat() {
+        skipWhitespace();
+        if (pos >= n) {
+            return false;
+        }
+        switch (current) {
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+            case '.':
+            case '-':
+            case '+':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads numbers into the array until it is full or no number follows.
+     *
+     * @return the number of values read
+     */
+    public int nextFloats(@NonNull float[] values) {
+        int count = 0;
+        while (count < values.length && hasFloat()) {
+            values[count++] = nextFloat();
+        }
+        return count;
+    }
+
+    /**
+     * Parses a list of numbers separated by whitespace and/or commas, such as the points of a
+     * polyline or a viewBox, without boxing or substrings. Parsing stops at the first character
+     * that cannot start a number.
+     */
+    @NonNull
+    public static float[] parseFloats(@NonNull CharSequence s) {
+        if (s.length() == 0) {
+            return new float[0];
+        }
+        SvgParserHelper ph = new SvgParserHelper(s, 0);
+        float[] values = new float[16];
+        int count = 0;
+        while (ph.hasFloat()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = ph.nextFloat();
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
     public float nextFloat() {
         skipWhitespace();
         float f = parseFloat();
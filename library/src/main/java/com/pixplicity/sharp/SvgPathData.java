@@ -0,0 +1,516 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The geometry of a path as a list of absolute drawing commands.
+ * <p>
+ * Unlike {@link Path}, the commands can be read back, which is what allows parsed documents
+ * to be compiled and loaded again. Each verb consumes a fixed number of points:
+ * {@link #MOVE} and {@link #LINE} one, {@link #QUAD} two, {@link #CUBIC} three and
+ * {@link #CLOSE} none.
+ * <p>
+ * Bounds, length and a flattened outline are computed from the commands directly, without
+ * going through {@link Path}.
+ */
+public final class SvgPathData {
+
+    public static final byte MOVE = 0;
+    public static final byte LINE = 1;
+    public static final byte QUAD = 2;
+    public static final byte CUBIC = 3;
+    public static final byte CLOSE = 4;
+
+    private byte[] mVerbs;
+    private int mVerbCount;
+    private float[] mPoints;
+    //坐标数量, 每个点占2个
+    private int mPointCount;
+
+    public SvgPathData() {
+        mVerbs = new byte[16];
+        mPoints = new float[32];
+    }
+
+    /**
+     * Copies the commands of another path.
+     */
+    public SvgPathData(@NonNull SvgPathData other) {
+        mVerbs = Arrays.copyOf(other.mVerbs, Math.max(other.mVerbCount, 1));
+        mVerbCount = other.mVerbCount;
+        mPoints = Arrays.copyOf(other.mPoints, Math.max(other.mPointCount, 2));
+        mPointCount = other.mPointCount;
+    }
+
+    /**
+     * Wraps existing commands, e.g. as read from a compiled document. The arrays are not copied.
+     */
+    SvgPathData(@NonNull byte[] verbs, int verbCount, @NonNull float[] points, int pointCount) {
+        mVerbs = verbs;
+        mVerbCount = verbCount;
+        mPoints = points;
+        mPointCount = pointCount;
+    }
+
+    public void moveTo(float x, float y) {
+        addVerb(MOVE, 2);
+        addPoint(x, y);
+    }
+
+    public void lineTo(float x, float y) {
+        addVerb(LINE, 2);
+        addPoint(x, y);
+    }
+
+    public void quadTo(float x1, float y1, float x, float y) {
+        addVerb(QUAD, 4);
+        addPoint(x1, y1);
+        addPoint(x, y);
+    }
+
+    public void cubicTo(float x1, float y1, float x2, float y2, float x, float y) {
+        addVerb(CUBIC, 6);
+        addPoint(x1, y1);
+        addPoint(x2, y2);
+        addPoint(x, y);
+    }
+
+    public void close() {
+        addVerb(CLOSE, 0);
+    }
+
+    public boolean isEmpty() {
+        return mVerbCount == 0;
+    }
+
+    public int getVerbCount() {
+        return mVerbCount;
+    }
+
+    public byte getVerb(int index) {
+        return mVerbs[index];
+    }
+
+    /**
+     * The number of coordinates; each point takes two.
+     */
+    public int getPointCount() {
+        return mPointCount;
+    }
+
+    public float getPoint(int index) {
+        return mPoints[index];
+    }
+
+    byte[] getVerbs() {
+        return mVerbs;
+    }
+
+    float[] getPoints() {
+        return mPoints;
+    }
+
+    /**
+     * Computes the bounds of all points, control points included, like
+     * {@link Path#computeBounds(RectF, boolean)} does.
+     */
+    public void computeBounds(@NonNull RectF bounds) {
+        computeBounds(bounds, false);
+    }
+
+    /**
+     * Computes the bounds of the path.
+     *
+     * @param exact true for the bounds of the curves themselves, false to include their
+     *              control points, which is faster but may be larger
+     */
+    public void computeBounds(@NonNull RectF bounds, boolean exact) {
+        if (exact) {
+            computeExactBounds(bounds);
+            return;
+        }
+        if (mPointCount == 0) {
+            bounds.setEmpty();
+            return;
+        }
+        float left = mPoints[0], top = mPoints[1], right = left, bottom = top;
+        for (int i = 2; i < mPointCount; i += 2) {
+            float x = mPoints[i];
+            float y = mPoints[i + 1];
+            if (x < left) {
+                left = x;
+            } else if (x > right) {
+                right = x;
+            }
+            if (y < top) {
+                top = y;
+            } else if (y > bottom) {
+                bottom = y;
+            }
+        }
+        bounds.set(left, top, right, bottom);
+    }
+
+    private void computeExactBounds(@NonNull RectF bounds) {
+        if (mPointCount == 0) {
+            bounds.setEmpty();
+            return;
+        }
+        final byte[] verbs = mVerbs;
+        final float[] pts = mPoints;
+        // Start with the end points, then add the extrema of every curve
+        float[] b = {pts[0], pts[1], pts[0], pts[1]};
+        float x0 = 0, y0 = 0;
+        float startX = 0, startY = 0;
+        int p = 0;
+        for (int i = 0; i < mVerbCount; i++) {
+            switch (verbs[i]) {
+                case MOVE:
+                    x0 = startX = pts[p];
+                    y0 = startY = pts[p + 1];
+                    include(b, x0, y0);
+                    p += 2;
+                    break;
+                case LINE:
+                    x0 = pts[p];
+                    y0 = pts[p + 1];
+                    include(b, x0, y0);
+                    p += 2;
+                    break;
+                case QUAD: {
+                    float x1 = pts[p], y1 = pts[p + 1], x2 = pts[p + 2], y2 = pts[p + 3];
+                    include(b, x2, y2);
+                    includeQuadExtremum(b, x0, y0, x1, y1, x2, y2);
+                    x0 = x2;
+                    y0 = y2;
+                    p += 4;
+                    break;
+                }
+                case CUBIC: {
+                    float x1 = pts[p], y1 = pts[p + 1], x2 = pts[p + 2], y2 = pts[p + 3];
+                    float x3 = pts[p + 4], y3 = pts[p + 5];
+                    include(b, x3, y3);
+                    includeCubicExtrema(b, x0, y0, x1, y1, x2, y2, x3, y3);
+                    x0 = x3;
+                    y0 = y3;
+                    p += 6;
+                    break;
+                }
+                case CLOSE:
+                    x0 = startX;
+                    y0 = startY;
+                    break;
+            }
+        }
+        bounds.set(b[0], b[1], b[2], b[3]);
+    }
+
+    private static void include(float[] b, float x, float y) {
+        if (x < b[0]) {
+            b[0] = x;
+        }
+        if (y < b[1]) {
+            b[1] = y;
+        }
+        if (x > b[2]) {
+            b[2] = x;
+        }
+        if (y > b[3]) {
+            b[3] = y;
+        }
+    }
+
+    private static void includeQuadExtremum(float[] b, float x0, float y0, float x1, float y1, float x2, float y2) {
+        // B'(t) = 0 where t = (p0 - p1) / (p0 - 2 p1 + p2), per axis
+        for (int axis = 0; axis < 2; axis++) {
+            float p0 = axis == 0 ? x0 : y0, p1 = axis == 0 ? x1 : y1, p2 = axis == 0 ? x2 : y2;
+            float d = p0 - 2 * p1 + p2;
+            if (d == 0) {
+                continue;
+            }
+            float t = (p0 - p1) / d;
+            if (t > 0 && t < 1) {
+                float mt = 1 - t;
+                include(b, mt * mt * x0 + 2 * mt * t * x1 + t * t * x2,
+                        mt * mt * y0 + 2 * mt * t * y1 + t * t * y2);
+            }
+        }
+    }
+
+    private static void includeCubicExtrema(float[] b, float x0, float y0, float x1, float y1,
+                                            float x2, float y2, float x3, float y3) {
+        // B'(t) / 3 = a t^2 + b t + c, per axis
+        for (int axis = 0; axis < 2; axis++) {
+            float p0 = axis == 0 ? x0 : y0, p1 = axis == 0 ? x1 : y1;
+            float p2 = axis == 0 ? x2 : y2, p3 = axis == 0 ? x3 : y3;
+            double a = -p0 + 3 * p1 - 3 * p2 + p3;
+            double bb = 2 * (p0 - 2 * p1 + p2);
+            double c = p1 - p0;
+            if (Math.abs(a) < 1e-12) {
+                if (bb != 0) {
+                    includeCubicAt(b, -c / bb, x0, y0, x1, y1, x2, y2, x3, y3);
+                }
+                continue;
+            }
+            double disc = bb * bb - 4 * a * c;
+            if (disc < 0) {
+                continue;
+            }
+            double sq = Math.sqrt(disc);
+            includeCubicAt(b, (-bb + sq) / (2 * a), x0, y0, x1, y1, x2, y2, x3, y3);
+            includeCubicAt(b, (-bb - sq) / (2 * a), x0, y0, x1, y1, x2, y2, x3, y3);
+        }
+    }
+
+    private static void includeCubicAt(float[] b, double t, float x0, float y0, float x1, float y1,
+                                       float x2, float y2, float x3, float y3) {
+        if (t <= 0 || t >= 1) {
+            return;
+        }
+        double mt = 1 - t;
+        double c0 = mt * mt * mt, c1 = 3 * mt * mt * t, c2 = 3 * mt * t * t, c3 = t * t * t;
+        include(b, (float) (c0 * x0 + c1 * x1 + c2 * x2 + c3 * x3),
+                (float) (c0 * y0 + c1 * y1 + c2 * y2 + c3 * y3));
+    }
+
+    /**
+     * The total length of all contours, closing segments included.
+     */
+    public float getLength() {
+        return getLength(getDefaultTolerance());
+    }
+
+    /**
+     * The total length of all contours, closing segments included.
+     *
+     * @param tolerance the maximum distance between a curve and the lines measured instead
+     */
+    public float getLength(float tolerance) {
+        double length = 0;
+        for (float[] polyline : flatten(tolerance)) {
+            for (int i = 2; i < polyline.length; i += 2) {
+                length += Math.hypot(polyline[i] - polyline[i - 2], polyline[i + 1] - polyline[i - 1]);
+            }
+        }
+        return (float) length;
+    }
+
+    /**
+     * Approximates every contour by a polyline.
+     *
+     * @param tolerance the maximum distance between a curve and the lines replacing it
+     * @return one array of x, y coordinates per contour; closed contours end at their start
+     */
+    @NonNull
+    public List<float[]> flatten(float tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("tolerance <= 0");
+        }
+        List<float[]> result = new ArrayList<>();
+        final byte[] verbs = mVerbs;
+        final float[] pts = mPoints;
+        float[] line = new float[16];
+        int n = 0;
+        float x0 = 0, y0 = 0;
+        float startX = 0, startY = 0;
+        int p = 0;
+        for (int i = 0; i < mVerbCount; i++) {
+            byte verb = verbs[i];
+            if (verb == MOVE) {
+                if (n > 2) {
+                    result.add(Arrays.copyOf(line, n));
+                }
+                n = 0;
+                x0 = startX = pts[p];
+                y0 = startY = pts[p + 1];
+                line = addPoint(line, n, x0, y0);
+                n += 2;
+                p += 2;
+                continue;
+            }
+            if (n == 0) {
+                // A contour that continues after a close starts where the last one started
+                line = addPoint(line, n, x0, y0);
+                n += 2;
+            }
+            switch (verb) {
+                case LINE:
+                    x0 = pts[p];
+                    y0 = pts[p + 1];
+                    line = addPoint(line, n, x0, y0);
+                    n += 2;
+                    p += 2;
+                    break;
+                case QUAD: {
+                    float x1 = pts[p], y1 = pts[p + 1], x2 = pts[p + 2], y2 = pts[p + 3];
+                    // Wang's formula for the number of segments
+                    float dd = (float) Math.hypot(x0 - 2 * x1 + x2, y0 - 2 * y1 + y2);
+                    int segments = segments((float) Math.sqrt(dd / (4 * tolerance)));
+                    for (int s = 1; s <= segments; s++) {
+                        float t = (float) s / segments, mt = 1 - t;
+                        line = addPoint(line, n, mt * mt * x0 + 2 * mt * t * x1 + t * t * x2,
+                                mt * mt * y0 + 2 * mt * t * y1 + t * t * y2);
+                        n += 2;
+                    }
+                    x0 = x2;
+                    y0 = y2;
+                    p += 4;
+                    break;
+                }
+                case CUBIC: {
+                    float x1 = pts[p], y1 = pts[p + 1], x2 = pts[p + 2], y2 = pts[p + 3];
+                    float x3 = pts[p + 4], y3 = pts[p + 5];
+                    float dd = (float) Math.max(Math.hypot(x0 - 2 * x1 + x2, y0 - 2 * y1 + y2),
+                            Math.hypot(x1 - 2 * x2 + x3, y1 - 2 * y2 + y3));
+                    int segments = segments((float) Math.sqrt(0.75f * dd / tolerance));
+                    for (int s = 1; s <= segments; s++) {
+                        float t = (float) s / segments, mt = 1 - t;
+                        float c0 = mt * mt * mt, c1 = 3 * mt * mt * t, c2 = 3 * mt * t * t, c3 = t * t * t;
+                        line = addPoint(line, n, c0 * x0 + c1 * x1 + c2 * x2 + c3 * x3,
+                                c0 * y0 + c1 * y1 + c2 * y2 + c3 * y3);
+                        n += 2;
+                    }
+                    x0 = x3;
+                    y0 = y3;
+                    p += 6;
+                    break;
+                }
+                case CLOSE:
+                    if (x0 != startX || y0 != startY) {
+                        line = addPoint(line, n, startX, startY);
+                        n += 2;
+                    }
+                    if (n > 2) {
+                        result.add(Arrays.copyOf(line, n));
+                    }
+                    n = 0;
+                    x0 = startX;
+                    y0 = startY;
+                    break;
+            }
+        }
+        if (n > 2) {
+            result.add(Arrays.copyOf(line, n));
+        }
+        return result;
+    }
+
+    private static int segments(float estimate) {
+        // Bounded, so a huge curve with a tiny tolerance cannot exhaust memory
+        return Math.max(1, Math.min(1024, (int) Math.ceil(estimate)));
+    }
+
+    private static float[] addPoint(float[] line, int n, float x, float y) {
+        if (n + 2 > line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[n] = x;
+        line[n + 1] = y;
+        return line;
+    }
+
+    private float getDefaultTolerance() {
+        RectF bounds = new RectF();
+        computeBounds(bounds);
+        // A thousandth of the size, so the result does not depend on the coordinate scale
+        return Math.max(Math.max(bounds.width(), bounds.height()) / 1000f, 1e-6f);
+    }
+
+    /**
+     * Transforms all points in place. Unlike {@link Path#transform(Matrix)} this does not cross
+     * into native code for every path.
+     */
+    public void transform(@NonNull Matrix matrix) {
+        if (mPointCount > 0) {
+            matrix.mapPoints(mPoints, 0, mPoints, 0, mPointCount / 2);
+        }
+    }
+
+    /**
+     * Creates a new {@link Path} from the commands.
+     */
+    @NonNull
+    public Path toPath() {
+        Path path = new Path();
+        appendTo(path);
+        return path;
+    }
+
+    /**
+     * Replays the commands onto the given path.
+     */
+    public void appendTo(@NonNull Path path) {
+        final byte[] verbs = mVerbs;
+        final float[] pts = mPoints;
+        int p = 0;
+        for (int i = 0; i < mVerbCount; i++) {
+            switch (verbs[i]) {
+                case MOVE:
+                    path.moveTo(pts[p], pts[p + 1]);
+                    p += 2;
+                    break;
+                case LINE:
+                    path.lineTo(pts[p], pts[p + 1]);
+                    p += 2;
+                    break;
+                case QUAD:
+                    path.quadTo(pts[p], pts[p + 1], pts[p + 2], pts[p + 3]);
+                    p += 4;
+                    break;
+                case CUBIC:
+                    path.cubicTo(pts[p], pts[p + 1], pts[p + 2], pts[p + 3], pts[p + 4], pts[p + 5]);
+                    p += 6;
+                    break;
+                case CLOSE:
+                    path.close();
+                    break;
+            }
+        }
+    }
+
+    private void addVerb(byte verb, int coords) {
+        if (mVerbCount == mVerbs.length) {
+            mVerbs = Arrays.copyOf(mVerbs, Math.max(16, mVerbCount * 2));
+        }
+        mVerbs[mVerbCount++] = verb;
+        if (mPointCount + coords > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, Math.max(mPoints.length * 2, mPointCount + coords));
+        }
+    }
+
+    private void addPoint(float x, float y) {
+        mPoints[mPointCount++] = x;
+        mPoints[mPointCount++] = y;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RectF;
+import android.text.TextPaint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.angcyo.svg.DrawElement;
+
+import java.util.Stack;
+
+/**
+ * Records an {@link SvgDocument} into a {@link Picture}, notifying an optional
+ * {@link OnSvgElementListener} along the way. A renderer is used for a single recording.
+ */
+final class SvgRenderer {
+
+    @NonNull
+    private final SvgDocument mDocument;
+    @Nullable
+    private final OnSvgElementListener mListener;
+
+    private Canvas mCanvas;
+
+    private final Stack<Matrix> mMatrixStack = new Stack<>();
+    private final Stack<Sharp.SvgHandler.SvgGroup> mGroupStack = new Stack<>();
+
+    SvgRenderer(@NonNull SvgDocument document, @Nullable OnSvgElementListener listener) {
+        mDocument = document;
+        mListener = listener;
+    }
+
+    @NonNull
+    Picture render() {
+        Picture picture = new Picture();
+        RectF bounds = mDocument.mCanvasBounds;
+        if (bounds == null) {
+            // No root element, nothing to record
+            return picture;
+        }
+        mCanvas = picture.beginRecording(
+                (int) Math.ceil(bounds.width()),
+                (int) Math.ceil(bounds.height()));
+        mCanvas.translate(-bounds.left, -bounds.top);
+        mMatrixStack.push(new Matrix());
+        onSvgStart();
+        for (SvgNode node : mDocument.mNodes) {
+            node.render(this);
+        }
+        onSvgEnd();
+        picture.endRecording();
+        mCanvas = null;
+        mMatrixStack.clear();
+        return picture;
+    }
+
+    //<editor-fold desc="节点绘制">
+
+    void renderGroup(@NonNull SvgNode.Group group) {
+        if (group.mOpacity < 1f) {
+            // FIXME Ideally, we should compute the bounds of the enclosed group, and create
+            //       the layer exactly to its size; see issue #6
+            // Apply inverse of matrix to correct for any transformations
+            // It's okay to use getMatrix() here as we may assume its a software layer
+            Matrix m = mCanvas.getMatrix();
+            m.invert(m);
+            RectF r = new RectF(0, 0, mCanvas.getWidth(), mCanvas.getHeight());
+            m.mapRect(r);
+            // Store the layer with the opacity value
+            mCanvas.saveLayerAlpha(r, (int) (255 * group.mOpacity), Canvas.ALL_SAVE_FLAG);
+        } else {
+            mCanvas.save();
+        }
+        pushTransform(group.mMatrix);
+        mGroupStack.push(group.mGroup);
+        // FIXME compute bounds before drawing?
+        onSvgElement(group.mGroup.id, group.mGroup, null, null);
+
+        for (SvgNode child : group.mChildren) {
+            child.render(this);
+        }
+
+        mGroupStack.pop();
+        onSvgElementDrawn(group.mGroup.id, group.mGroup, null);
+        popTransform(group.mMatrix);
+        // Restore the previous canvas
+        mCanvas.restore();
+    }
+
+    void renderShape(@NonNull SvgNode.Shape shape) {
+        pushTransform(shape.mMatrix);
+        DrawElement drawElement = null;
+        RectF bounds = null;
+        if (mListener != null) {
+            // The listener may modify what it is handed, so it only ever sees copies
+            // (paints are copied in drawShape)
+            bounds = new RectF(shape.mRect);
+            drawElement = createDrawElement(shape.mType, shape.mInDefs);
+            drawElement.dataName = shape.mDataName;
+            drawElement.data = shape.mData;
+            drawElement.rx = shape.mRx;
+            drawElement.ry = shape.mRy;
+            if (shape.mType == DrawElement.DrawType.PATH) {
+                drawElement.pathBounds = bounds;
+                if (shape.mPathData != null) {
+                    drawElement.pathData = new SvgPathData(shape.mPathData);
+                    if (shape.mData == null) {
+                        // A polygon or polyline, see SvgNode.Shape#mData
+                        drawElement.updatePointsData(shape.mPathData);
+                    }
+                }
+            }
+        }
+        if (shape.mFillPaint != null) {
+            drawShape(shape, shape.mFillPaint, bounds, drawElement);
+        }
+        if (shape.mStrokePaint != null) {
+            drawShape(shape, shape.mStrokePaint, bounds, drawElement);
+        }
+        popTransform(shape.mMatrix);
+    }
+
+    private void drawShape(@NonNull SvgNode.Shape shape,
+                           @NonNull Paint paint,
+                           @Nullable RectF bounds,
+                           @Nullable DrawElement drawElement) {
+        Path path = shape.getPath();
+        if (drawElement == null) {
+            drawShape(shape.mType, path, shape.mRect, shape.mRx, shape.mRy, paint);
+            return;
+        }
+        paint = new Paint(paint);
+        if (path != null) {
+            Path p = onSvgElement(shape.mId, new Path(path), bounds, paint);
+            if (p != null) {
+                drawElement.paint = paint;
+                drawElement.element = p;
+                if (!onCanvasDraw(drawElement)) {
+                    drawShape(shape.mType, p, null, shape.mRx, shape.mRy, paint);
+                    onSvgElementDrawn(shape.mId, p, paint);
+                }
+            }
+        } else {
+            RectF rect = onSvgElement(shape.mId, new RectF(shape.mRect), bounds, paint);
+            if (rect != null) {
+                drawElement.paint = paint;
+                drawElement.element = rect;
+                if (!onCanvasDraw(drawElement)) {
+                    drawShape(shape.mType, null, rect, shape.mRx, shape.mRy, paint);
+                    onSvgElementDrawn(shape.mId, rect, paint);
+                }
+            }
+        }
+    }
+
+    private void drawShape(@NonNull DrawElement.DrawType type,
+                           @Nullable Path path,
+                           @Nullable RectF rect,
+                           float rx,
+                           float ry,
+                           @NonNull Paint paint) {
+        switch (type) {
+            case ROUND_RECT:
+                mCanvas.drawRoundRect(rect, rx, ry, paint);
+                break;
+            case LINE:
+                mCanvas.drawLine(rect.left, rect.top, rect.right, rect.bottom, paint);
+                break;
+            case OVAL:
+                mCanvas.drawOval(rect, paint);
+                break;
+            case PATH:
+                mCanvas.drawPath(path, paint);
+                break;
+        }
+    }
+
+    void renderText(@NonNull SvgNode.Text text) {
+        pushTransform(text.mMatrix);
+        for (Sharp.SvgHandler.SvgText span : text.mSpans) {
+            if (span.text == null) {
+                // Nothing to draw
+                continue;
+            }
+            if (span.fill != null) {
+                drawText(span, span.fill, text.mInDefs);
+            }
+            if (span.stroke != null) {
+                drawText(span, span.stroke, text.mInDefs);
+            }
+        }
+        popTransform(text.mMatrix);
+    }
+
+    private void drawText(@NonNull Sharp.SvgHandler.SvgText text, @NonNull TextPaint paint, boolean inDefs) {
+        if (mListener != null) {
+            // The listener may modify what it is handed, so it only ever sees copies
+            Sharp.SvgHandler.SvgText copy = new Sharp.SvgHandler.SvgText(text);
+            paint = paint == text.fill ? copy.fill : copy.stroke;
+            text = onSvgElement(copy.id, copy, copy.bounds, paint);
+            if (text == null) {
+                return;
+            }
+            DrawElement drawElement = createDrawElement(DrawElement.DrawType.TEXT, inDefs);
+            drawElement.paint = paint;
+            drawElement.element = text;
+            drawElement.dataName = text.dataName;
+            if (onCanvasDraw(drawElement)) {
+                return;
+            }
+        }
+        if (text.xCoords != null && text.xCoords.length > 0) {
+            // Draw each glyph separately according to their x coordinates
+            int i = 0;
+            float thisX = Sharp.parseFloat(text.xCoords[0], Float.NaN);
+            float nextX = 0f;
+            float x = text.x;
+            if (!Float.isNaN(thisX)) {
+                x = thisX;
+                for (i = 0; i < text.text.length(); i++) {
+                    if (i >= text.xCoords.length) {
+                        // Break early so we can draw the rest of the characters in one go
+                        i--;
+                        break;
+                    }
+                    if (i + 1 < text.xCoords.length) {
+                        nextX = Sharp.parseFloat(text.xCoords[i + 1], Float.NaN);
+                        if (Float.isNaN(nextX)) {
+                            // Break early so we can draw the rest of the characters in one go
+                            i--;
+                            break;
+                        }
+                    }
+                    // Draw the glyph
+                    String s = new String(new char[]{text.text.charAt(i)});
+                    mCanvas.drawText(s, x + text.xOffset, text.y + text.yOffset, paint);
+                    x = nextX;
+                }
+            }
+            if (i < text.text.length()) {
+                mCanvas.drawText(text.text.substring(i), x + text.xOffset, text.y + text.yOffset, paint);
+            }
+        } else {
+            // Draw the entire string //绘制完整的字符串
+            mCanvas.drawText(text.text, text.x + text.xOffset, text.y + text.yOffset, paint);
+        }
+        onSvgElementDrawn(text.id, text, paint);
+    }
+
+    void renderImage(@NonNull SvgNode.Image image) {
+        pushTransform(image.mMatrix);
+        boolean intercepted = false;
+        Paint paint = image.mPaint;
+        if (mListener != null) {
+            paint = new Paint(paint);
+            DrawElement drawElement = createDrawElement(DrawElement.DrawType.IMAGE, image.mInDefs);
+            drawElement.paint = paint;
+            drawElement.element = image.mBitmap;
+            drawElement.dataName = image.mDataName;
+            intercepted = onCanvasDraw(drawElement);
+        }
+        if (!intercepted) {
+            mCanvas.drawBitmap(image.mBitmap, null, image.mRect, paint);
+            onSvgElementDrawn(image.mId, image.mBitmap, paint);
+        }
+        popTransform(image.mMatrix);
+    }
+
+    //</editor-fold desc="节点绘制">
+
+    private void pushTransform(@Nullable Matrix matrix) {
+        if (matrix != null) {
+            mCanvas.save();
+            mCanvas.concat(matrix);
+            if (mListener != null) {
+                // Only needed to hand the total matrix to DrawElement
+                Matrix total = new Matrix(matrix);
+                total.postConcat(mMatrixStack.peek());
+                mMatrixStack.push(total);
+            }
+        }
+    }
+
+    private void popTransform(@Nullable Matrix matrix) {
+        if (matrix != null) {
+            mCanvas.restore();
+            if (mListener != null) {
+                mMatrixStack.pop();
+            }
+        }
+    }
+
+    private DrawElement createDrawElement(DrawElement.DrawType type, boolean inDefs) {
+        DrawElement drawElement = new DrawElement();
+        drawElement.type = type;
+        drawElement.svgRect = mDocument.mCanvasBounds;
+        drawElement.viewBoxStr = mDocument.mViewBoxStr;
+        drawElement.widthStr = mDocument.mWidthStr;
+        drawElement.heightStr = mDocument.mHeightStr;
+        drawElement.canvasMatrix = mCanvas.getMatrix();
+        drawElement.readingDefs = inDefs;
+        drawElement.updateStack(mMatrixStack, mGroupStack);
+        return drawElement;
+    }
+
+    //<editor-fold desc="回调">
+
+    private void onSvgStart() {
+        if (mListener != null) {
+            mListener.onSvgStart(mCanvas, mDocument.mCanvasBounds);
+        }
+    }
+
+    private void onSvgEnd() {
+        if (mListener != null) {
+            mListener.onSvgEnd(mCanvas, mDocument.mBounds);
+        }
+    }
+
+    private <T> T onSvgElement(@Nullable String id,
+                               @NonNull T element,
+                               @Nullable RectF elementBounds,
+                               @Nullable Paint paint) {
+        if (mListener != null) {
+            return mListener.onSvgElement(id, element, elementBounds, mCanvas, mDocument.mBounds, paint);
+        }
+        return element;
+    }
+
+    private <T> void onSvgElementDrawn(@Nullable String id,
+                                       @NonNull T element,
+                                       @Nullable Paint paint) {
+        if (mListener != null) {
+            mListener.onSvgElementDrawn(id, element, mCanvas, paint);
+        }
+    }
+
+    private boolean onCanvasDraw(@NonNull DrawElement drawElement) {
+        if (mListener != null) {
+            return mListener.onCanvasDraw(mCanvas, drawElement);
+        }
+        return false;
+    }
+
+    //</editor-fold desc="回调">
+}
@@ -0,0 +1,339 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rules of the <code>&lt;style&gt;</code> elements of a document.
+ * <p>
+ * Supports type, class and id selectors, compounds of them such as <code>path.st0</code>, the
+ * universal selector and selector groups. Rules with combinators, attribute selectors or
+ * pseudo-classes are skipped. Rules are indexed by their most specific part, and the cascade
+ * of an element is resolved once per combination of element name, id and class attribute, so
+ * elements sharing their classes share the same computed style.
+ */
+final class SvgStyleSheet {
+
+    private static final Comparator<Rule> CASCADE_ORDER = new Comparator<Rule>() {
+        @Override
+        public int compare(Rule a, Rule b) {
+            if (a.mSpecificity != b.mSpecificity) {
+                return a.mSpecificity < b.mSpecificity ? -1 : 1;
+            }
+            return a.mOrder < b.mOrder ? -1 : (a.mOrder == b.mOrder ? 0 : 1);
+        }
+    };
+
+    private static final class Rule {
+        //null表示匹配任意元素
+        @Nullable
+        final String mTag;
+        @Nullable
+        final String mId;
+        final String[] mClasses;
+        final Map<String, String> mDeclarations;
+        final int mSpecificity;
+        //在样式表中的顺序
+        final int mOrder;
+
+        Rule(@Nullable String tag, @Nullable String id, String[] classes,
+             Map<String, String> declarations, int order) {
+            mTag = tag;
+            mId = id;
+            mClasses = classes;
+            mDeclarations = declarations;
+            mSpecificity = (id != null ? 100 : 0) + classes.length * 10 + (tag != null ? 1 : 0);
+            mOrder = order;
+        }
+
+        boolean matches(String tag, @Nullable String id, List<String> classes) {
+            if (mTag != null && !mTag.equals(tag)) {
+                return false;
+            }
+            if (mId != null && !mId.equals(id)) {
+                return false;
+            }
+            for (String cls : mClasses) {
+                if (!classes.contains(cls)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final List<Rule> mUniversalRules = new ArrayList<>();
+    private final HashMap<String, List<Rule>> mTypeRules = new HashMap<>();
+    private final HashMap<String, List<Rule>> mClassRules = new HashMap<>();
+    private final HashMap<String, List<Rule>> mIdRules = new HashMap<>();
+    private int mRuleCount;
+
+    //元素名+id+class -> 计算后的样式, 值可能为null
+    private final HashMap<String, Map<String, String>> mResolved = new HashMap<>();
+
+    boolean isEmpty() {
+        return mRuleCount == 0;
+    }
+
+    /**
+     * Adds the rules of a <code>&lt;style&gt;</code> element. Rules added later win over earlier
+     * rules of the same specificity.
+     */
+    void parse(@NonNull String css) {
+        String text = stripComments(css);
+        int n = text.length();
+        int pos = 0;
+        while (pos < n) {
+            int open = text.indexOf('{', pos);
+            if (open < 0) {
+                break;
+            }
+            String prelude = text.substring(pos, open).trim();
+            if (prelude.startsWith("@")) {
+                int semicolon = prelude.indexOf(';');
+                if (semicolon >= 0) {
+                    // A statement such as @import, followed by a rule
+                    pos = text.indexOf(';', pos) + 1;
+                } else {
+                    // @media, @font-face, ...
+                    pos = skipBlock(text, open);
+                }
+                continue;
+            }
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                close = n;
+            }
+            HashMap<String, String> declarations = new HashMap<>();
+            SvgAttributes.putDeclarations(text.substring(open + 1, close), declarations);
+            if (!declarations.isEmpty()) {
+                for (String selector : prelude.split(",")) {
+                    addRule(selector.trim(), declarations);
+                }
+            }
+            pos = close + 1;
+        }
+        mResolved.clear();
+    }
+
+    private void addRule(String selector, Map<String, String> declarations) {
+        int n = selector.length();
+        if (n == 0) {
+            return;
+        }
+        String tag = null;
+        String id = null;
+        List<String> classes = new ArrayList<>(1);
+        int pos = selector.charAt(0) == '*' ? 1 : 0;
+        while (pos < n) {
+            char c = selector.charAt(pos);
+            int start = c == '.' || c == '#' ? pos + 1 : pos;
+            int end = start;
+            while (end < n && isNameChar(selector.charAt(end))) {
+                end++;
+            }
+            if (end < n && selector.charAt(end) != '.' && selector.charAt(end) != '#') {
+                // Combinators, attribute selectors and pseudo-classes
+                if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+                    Log.i(Sharp.TAG, "Unsupported CSS selector '" + selector + "'");
+                }
+                return;
+            }
+            String name = selector.substring(start, end);
+            if (c == '.') {
+                if (name.isEmpty()) {
+                    return;
+                }
+                classes.add(name);
+            } else if (c == '#') {
+                if (name.isEmpty()) {
+                    return;
+                }
+                id = name;
+            } else {
+                tag = name;
+            }
+            pos = end;
+        }
+        Rule rule = new Rule(tag, id, classes.toArray(new String[0]), declarations, mRuleCount++);
+        if (id != null) {
+            add(mIdRules, id, rule);
+        } else if (!classes.isEmpty()) {
+            add(mClassRules, classes.get(0), rule);
+        } else if (tag != null) {
+            add(mTypeRules, tag, rule);
+        } else {
+            mUniversalRules.add(rule);
+        }
+    }
+
+    private static void add(HashMap<String, List<Rule>> index, String key, Rule rule) {
+        List<Rule> rules = index.get(key);
+        if (rules == null) {
+            rules = new ArrayList<>(1);
+            index.put(key, rules);
+        }
+        rules.add(rule);
+    }
+
+    /**
+     * The declarations of all rules matching an element, in cascade order. The returned map is
+     * shared between elements and must not be modified.
+     *
+     * @param classes the class attribute of the element
+     * @return null if no rule matches
+     */
+    @Nullable
+    Map<String, String> resolve(@NonNull String tag, @Nullable String id, @Nullable String classes) {
+        if (mRuleCount == 0) {
+            return null;
+        }
+        if (id != null && !mIdRules.containsKey(id)) {
+            // Ids are unique, keep them out of the key unless a rule needs them
+            id = null;
+        }
+        String key = id == null
+                ? tag + ' ' + classes
+                : tag + '#' + id + ' ' + classes;
+        Map<String, String> style = mResolved.get(key);
+        if (style == null && !mResolved.containsKey(key)) {
+            style = computeStyle(tag, id, classes);
+            mResolved.put(key, style);
+        }
+        return style;
+    }
+
+    @Nullable
+    private Map<String, String> computeStyle(String tag, @Nullable String id, @Nullable String classes) {
+        List<String> classList = splitClasses(classes);
+        List<Rule> matched = new ArrayList<>();
+        collect(mUniversalRules, tag, id, classList, matched);
+        collect(mTypeRules.get(tag), tag, id, classList, matched);
+        for (int i = 0; i < classList.size(); i++) {
+            String cls = classList.get(i);
+            if (classList.indexOf(cls) == i) {
+                collect(mClassRules.get(cls), tag, id, classList, matched);
+            }
+        }
+        if (id != null) {
+            collect(mIdRules.get(id), tag, id, classList, matched);
+        }
+        if (matched.isEmpty()) {
+            return null;
+        }
+        if (matched.size() == 1) {
+            return matched.get(0).mDeclarations;
+        }
+        Collections.sort(matched, CASCADE_ORDER);
+        HashMap<String, String> style = new HashMap<>();
+        for (Rule rule : matched) {
+            style.putAll(rule.mDeclarations);
+        }
+        return style;
+    }
+
+    private static void collect(@Nullable List<Rule> rules, String tag, @Nullable String id,
+                                List<String> classes, List<Rule> matched) {
+        if (rules != null) {
+            for (Rule rule : rules) {
+                if (rule.matches(tag, id, classes)) {
+                    matched.add(rule);
+                }
+            }
+        }
+    }
+
+    private static List<String> splitClasses(@Nullable String classes) {
+        List<String> list = new ArrayList<>();
+        if (classes != null) {
+            int n = classes.length();
+            int start = 0;
+            while (start < n) {
+                while (start < n && Character.isWhitespace(classes.charAt(start))) {
+                    start++;
+                }
+                int end = start;
+                while (end < n && !Character.isWhitespace(classes.charAt(end))) {
+                    end++;
+                }
+                if (end > start) {
+                    list.add(classes.substring(start, end));
+                }
+                start = end;
+            }
+        }
+        return list;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    private static String stripComments(String css) {
+        int start = css.indexOf("/*");
+        if (start < 0) {
+            return css;
+        }
+        StringBuilder builder = new StringBuilder(css.length());
+        int pos = 0;
+        while (start >= 0) {
+            builder.append(css, pos, start);
+            int end = css.indexOf("*/", start + 2);
+            if (end < 0) {
+                return builder.toString();
+            }
+            pos = end + 2;
+            start = css.indexOf("/*", pos);
+        }
+        builder.append(css, pos, css.length());
+        return builder.toString();
+    }
+
+    /**
+     * @return the position after the block opened at the given brace, including nested blocks
+     */
+    private static int skipBlock(String text, int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+}
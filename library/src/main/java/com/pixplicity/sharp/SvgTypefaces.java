@@ -0,0 +1,192 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.content.res.AssetManager;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The typefaces in the <code>fonts/</code> directory of an app's assets, loaded on first use.
+ * <p>
+ * Each {@link AssetManager} has one instance, so every document drawn with the same assets
+ * shares the loaded typefaces. The directory is listed once, and a family that is not there is
+ * remembered as missing, so text elements never touch the assets again after the first lookup.
+ */
+final class SvgTypefaces {
+
+    private static final String FONTS_DIR = "fonts";
+    private static final String FONT_EXTENSION = ".ttf";
+
+    //不持有AssetManager, 否则WeakHashMap的key永远不会被回收
+    private static final WeakHashMap<AssetManager, SvgTypefaces> sInstances = new WeakHashMap<>();
+
+    //fonts/目录下的文件名, null表示还没有列出, 列出失败时为空集合
+    @Nullable
+    private Set<String> mFontFiles;
+    //列出目录是否失败, 失败时直接尝试加载
+    private boolean mListFailed;
+    //字体名 -> 字体, 值为null表示不存在
+    private final HashMap<String, Typeface> mTypefaces = new HashMap<>();
+    //font-family属性值 -> 解析出的字体名列表
+    private final HashMap<String, List<String>> mFamilies = new HashMap<>();
+
+    private SvgTypefaces() {
+    }
+
+    @NonNull
+    static SvgTypefaces get(@NonNull AssetManager assetManager) {
+        synchronized (sInstances) {
+            SvgTypefaces typefaces = sInstances.get(assetManager);
+            if (typefaces == null) {
+                typefaces = new SvgTypefaces();
+                sInstances.put(assetManager, typefaces);
+            }
+            return typefaces;
+        }
+    }
+
+    /**
+     * The first family of a <code>font-family</code> list that is in the assets.
+     *
+     * @param assetManager the assets this instance was obtained for
+     * @return null if none of the families is in the assets
+     */
+    @Nullable
+    synchronized Typeface getTypeface(@NonNull AssetManager assetManager, @NonNull String fontFamily) {
+        for (String family : getFamilies(fontFamily)) {
+            Typeface typeface = getAssetTypeface(assetManager, family);
+            if (typeface != null) {
+                return typeface;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits a <code>font-family</code> list such as <code>'Open Sans', Arial, sans-serif</code>
+     * into its unquoted families, in order.
+     */
+    @NonNull
+    synchronized List<String> getFamilies(@NonNull String fontFamily) {
+        List<String> families = mFamilies.get(fontFamily);
+        if (families == null) {
+            families = parseFamilies(fontFamily);
+            mFamilies.put(fontFamily, families);
+        }
+        return families;
+    }
+
+    @NonNull
+    private static List<String> parseFamilies(@NonNull String fontFamily) {
+        List<String> families = new ArrayList<>(1);
+        int n = fontFamily.length();
+        int start = 0;
+        while (start < n) {
+            int end = fontFamily.indexOf(',', start);
+            if (end < 0) {
+                end = n;
+            }
+            int s = start;
+            int e = end;
+            while (s < e && Character.isWhitespace(fontFamily.charAt(s))) {
+                s++;
+            }
+            while (e > s && Character.isWhitespace(fontFamily.charAt(e - 1))) {
+                e--;
+            }
+            if (e - s >= 2) {
+                char quote = fontFamily.charAt(s);
+                if ((quote == '\'' || quote == '"') && fontFamily.charAt(e - 1) == quote) {
+                    s++;
+                    e--;
+                }
+            }
+            if (e > s) {
+                families.add(fontFamily.substring(s, e));
+            }
+            start = end + 1;
+        }
+        return Collections.unmodifiableList(families);
+    }
+
+    @Nullable
+    private Typeface getAssetTypeface(@NonNull AssetManager assetManager, @NonNull String family) {
+        if (mTypefaces.containsKey(family)) {
+            return mTypefaces.get(family);
+        }
+        String fileName = family + FONT_EXTENSION;
+        Typeface typeface = null;
+        Set<String> fontFiles = getFontFiles(assetManager);
+        if (mListFailed || fontFiles.contains(fileName)) {
+            String typefaceFile = FONTS_DIR + "/" + fileName;
+            try {
+                typeface = Typeface.createFromAsset(assetManager, typefaceFile);
+                if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+                    Log.d(Sharp.TAG, "Loaded typeface from assets: " + typefaceFile);
+                }
+            } catch (RuntimeException e) {
+                if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_ERROR) {
+                    Log.e(Sharp.TAG, "Failed to create typeface from assets: " + typefaceFile, e);
+                }
+            }
+        } else if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_INFO) {
+            Log.i(Sharp.TAG, "Typeface is missing from assets: " + FONTS_DIR + "/" + fileName);
+        }
+        mTypefaces.put(family, typeface);
+        return typeface;
+    }
+
+    @NonNull
+    private Set<String> getFontFiles(@NonNull AssetManager assetManager) {
+        if (mFontFiles == null) {
+            Set<String> files = new HashSet<>();
+            try {
+                String[] list = assetManager.list(FONTS_DIR);
+                if (list != null) {
+                    Collections.addAll(files, list);
+                }
+            } catch (IOException e) {
+                mListFailed = true;
+                if (Sharp.LOG_LEVEL >= Sharp.LOG_LEVEL_ERROR) {
+                    Log.e(Sharp.TAG, "Failed listing assets directory for /" + FONTS_DIR, e);
+                }
+            }
+            mFontFiles = files;
+        }
+        return mFontFiles;
+    }
+}
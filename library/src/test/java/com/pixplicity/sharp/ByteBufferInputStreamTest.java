@@ -0,0 +1,57 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ByteBufferInputStreamTest {
+
+    @Test
+    public void resetReturnsToTheMark() throws IOException {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        assertEquals(1, in.read());
+        in.mark(2);
+        assertEquals(2, in.read());
+        assertEquals(3, in.read());
+        in.reset();
+        assertEquals(2, in.read());
+    }
+
+    @Test
+    public void resetWithoutMarkThrowsIOException() {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[]{1, 2}));
+        try {
+            in.reset();
+            fail("reset without a mark must fail");
+        } catch (IOException e) {
+            // Expected, as for any InputStream
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.content.res.AssetManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks which loads share the documents kept by {@link SharpCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpCacheTest {
+
+    private static final String SHAPES = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 100 100\">"
+            + "<rect x=\"5\" y=\"5\" width=\"10\" height=\"10\"/></svg>";
+
+    private static final String TEXT = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 100 100\">"
+            + "<text x=\"1\" y=\"50\" font-family=\"serif\">abc</text></svg>";
+
+    private AssetManager mAssets;
+
+    @Before
+    public void install() {
+        SharpCache.install(1024 * 1024);
+        mAssets = RuntimeEnvironment.getApplication().getAssets();
+    }
+
+    @After
+    public void uninstall() {
+        SharpCache.uninstall();
+    }
+
+    @Test
+    public void loadsWithoutAssetsShareDocuments() {
+        SvgDocument text = Sharp.loadString(TEXT).getSvgDocument();
+        assertSame(text, Sharp.loadString(TEXT).getSvgDocument());
+        SvgDocument shapes = Sharp.loadString(SHAPES).getSvgDocument();
+        assertSame(shapes, Sharp.loadString(SHAPES).getSvgDocument());
+    }
+
+    @Test
+    public void documentsWithoutTextAreSharedWithLoadsWithAssets() {
+        SvgDocument shapes = Sharp.loadString(SHAPES).getSvgDocument();
+        assertSame(shapes, Sharp.loadString(SHAPES).withAssets(mAssets).getSvgDocument());
+    }
+
+    @Test
+    public void textIsNotSharedWithLoadsWithAssets() {
+        SvgDocument plain = Sharp.loadString(TEXT).getSvgDocument();
+        SvgDocument withAssets = Sharp.loadString(TEXT).withAssets(mAssets).getSvgDocument();
+        assertNotSame(plain, withAssets);
+        // Nor is the document measured with the assets kept for loads without them
+        assertSame(plain, Sharp.loadString(TEXT).getSvgDocument());
+        assertNotSame(withAssets, Sharp.loadString(TEXT).withAssets(mAssets).getSvgDocument());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles SVGs as <code>sharp-precompile.gradle</code> does at build time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpCompiledStoreTest {
+
+    private static final String SHAPES = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 100 100\">"
+            + "<g transform=\"rotate(10)\"><path d=\"M10 10 L90 10 Q50 50 90 90 Z\" fill=\"red\"/>"
+            + "<rect x=\"5\" y=\"5\" width=\"10\" height=\"10\"/></g></svg>";
+
+    private static final String TEXT = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 100 100\">"
+            + "<rect x=\"5\" y=\"5\" width=\"10\" height=\"10\"/>"
+            + "<g><text x=\"1\" y=\"50\">abc</text></g></svg>";
+
+    private static ByteArrayInputStream stream(String svg) {
+        return new ByteArrayInputStream(svg.getBytes(SvgDocumentReader.UTF_8));
+    }
+
+    @Test
+    public void precompileWritesTheCompiledDocument() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Sharp.loadString(SHAPES).getSvgDocument().writeTo(expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(SharpCompiledStore.precompile(stream(SHAPES), out));
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        SvgDocumentReader.read(ByteBuffer.wrap(out.toByteArray()), null).writeTo(read);
+        assertArrayEquals(out.toByteArray(), read.toByteArray());
+    }
+
+    @Test
+    public void documentsWithTextAreLeftToTheDevice() throws IOException {
+        assertTrue(Sharp.loadString(TEXT).getSvgDocument().hasText());
+        assertFalse(Sharp.loadString(SHAPES).getSvgDocument().hasText());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(SharpCompiledStore.precompile(stream(TEXT), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void externalDtdsAreNotLoaded() throws IOException {
+        // The public identifier of SVG 1.1, whose DTD the host parser would otherwise download
+        String svg = "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\""
+                + " \"http://localhost:1/svg11.dtd\">" + SHAPES;
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Sharp.loadString(SHAPES).getSvgDocument().writeTo(expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(SharpCompiledStore.precompile(stream(svg), out));
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+}
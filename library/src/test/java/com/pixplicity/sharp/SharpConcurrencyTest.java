@@ -0,0 +1,190 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Parses documents on many threads at once and checks every result against the same documents
+ * parsed one after another.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int PARSES_PER_THREAD = 40;
+
+    private static final String[] UNITS = {"", "px", "pt", "mm", "cm", "in"};
+
+    /**
+     * A document whose lengths all use the given unit, so a parse that picks up the unit of
+     * another parse fails its unit check.
+     */
+    private static String svg(String unit, int seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100").append(unit)
+                .append("\" height=\"80").append(unit).append("\">");
+        sb.append("<style>.c").append(seed).append(" { fill: #").append(Integer.toHexString(0x100000 + seed * 4099))
+                .append("; }</style>");
+        sb.append("<defs><linearGradient id=\"g\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"1\">")
+                .append("<stop offset=\"0\" stop-color=\"red\"/><stop offset=\"1\" stop-color=\"blue\"/>")
+                .append("</linearGradient></defs>");
+        sb.append("<g transform=\"translate(").append(seed).append(",2) rotate(").append(seed * 7).append(")\">");
+        for (int i = 0; i < 20; i++) {
+            float x = random.nextInt(90);
+            float y = random.nextInt(70);
+            switch (i % 4) {
+                case 0:
+                    sb.append("<rect class=\"c").append(seed).append("\" x=\"").append(x).append(unit)
+                            .append("\" y=\"").append(y).append(unit).append("\" width=\"5").append(unit)
+                            .append("\" height=\"4").append(unit).append("\"/>");
+                    break;
+                case 1:
+                    sb.append("<circle fill=\"url(#g)\" cx=\"").append(x).append(unit).append("\" cy=\"")
+                            .append(y).append(unit).append("\" r=\"3").append(unit).append("\"/>");
+                    break;
+                case 2:
+                    sb.append("<path stroke=\"black\" stroke-width=\"0.5\" d=\"M").append(x).append(' ').append(y)
+                            .append(" a 4 3 30 1 0 8 2 l 3 -4 c 1 2 3 4 5 6 z\"/>");
+                    break;
+                default:
+                    sb.append("<polygon points=\"").append(x).append(',').append(y).append(' ')
+                            .append(x + 4).append(',').append(y + 1).append(' ')
+                            .append(x + 2).append(',').append(y + 5).append("\"/>");
+                    break;
+            }
+        }
+        sb.append("</g></svg>");
+        return sb.toString();
+    }
+
+    private static byte[] compile(String svg) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sharp.loadString(svg).getSvgDocument().writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void concurrentParsesMatchSerialParses() throws Exception {
+        final String[] svgs = new String[UNITS.length * 2];
+        final byte[][] expected = new byte[svgs.length][];
+        for (int i = 0; i < svgs.length; i++) {
+            svgs[i] = svg(UNITS[i % UNITS.length], i);
+            expected[i] = compile(svgs[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        Random random = new Random(thread);
+                        int parsed = 0;
+                        for (int i = 0; i < PARSES_PER_THREAD; i++) {
+                            int index = random.nextInt(svgs.length);
+                            assertArrayEquals("Document " + index + " differs on thread " + thread,
+                                    expected[index], compile(svgs[index]));
+                            parsed++;
+                        }
+                        return parsed;
+                    }
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(THREADS * PARSES_PER_THREAD, total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void mixedUnitsStillFailWhileOtherParsesRun() throws Exception {
+        final String mixed = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10mm\" height=\"10mm\">"
+                + "<rect x=\"1in\" y=\"1mm\" width=\"2mm\" height=\"2mm\"/></svg>";
+        final String plain = svg("mm", 1);
+        final byte[] expected = compile(plain);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> others = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < 100; i++) {
+                        assertArrayEquals(expected, compile(plain));
+                    }
+                    return null;
+                }
+            });
+            for (int i = 0; i < 100; i++) {
+                try {
+                    compile(mixed);
+                    fail("Mixed units must fail the unit check");
+                } catch (RuntimeException e) {
+                    assertTrue(String.valueOf(e), String.valueOf(e).contains("Mixing units"));
+                }
+            }
+            others.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedUnitCheckDoesNothingOutsideAParse() {
+        Sharp.checkAssumedUnits("mm");
+        Sharp.checkAssumedUnits("in");
+    }
+}
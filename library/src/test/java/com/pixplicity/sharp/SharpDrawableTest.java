@@ -0,0 +1,167 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class SharpDrawableTest {
+
+    // Build.VERSION_CODES of the test SDK lacks the later levels
+    private static final int JELLY_BEAN = 16;
+    private static final int LOLLIPOP = 21;
+    private static final int LOLLIPOP_MR1 = 22;
+    private static final int M = 23;
+    private static final int P = 28;
+    private static final int Q = 29;
+    private static final int TIRAMISU = 33;
+
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"100\">"
+            + "<rect x=\"10\" y=\"10\" width=\"80\" height=\"80\" fill=\"red\"/></svg>";
+
+    @After
+    public void tearDown() {
+        SharpDrawable.setHardwareModeEnabled(false);
+        Sharp.setLogLevel(Sharp.LOG_LEVEL_ERROR);
+    }
+
+    /**
+     * A canvas that claims to record into a display list.
+     */
+    private static Canvas hardwareCanvas(Bitmap bitmap) {
+        return new Canvas(bitmap) {
+            @Override
+            public boolean isHardwareAccelerated() {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void softwareCanvasesAreDrawnDirectly() {
+        for (int sdk = JELLY_BEAN; sdk <= TIRAMISU; sdk++) {
+            assertEquals(SharpDrawable.MODE_DIRECT, SharpDrawable.selectMode(false, true, sdk, false));
+            assertEquals(SharpDrawable.MODE_DIRECT, SharpDrawable.selectMode(false, true, sdk, true));
+            assertEquals(SharpDrawable.MODE_DIRECT, SharpDrawable.selectMode(false, false, sdk, true));
+        }
+    }
+
+    @Test
+    public void hardwareCanvasesWithoutHardwareModeAreDrawnDirectly() {
+        assertEquals(SharpDrawable.MODE_DIRECT,
+                SharpDrawable.selectMode(true, false, Q, false));
+        assertEquals(SharpDrawable.MODE_DIRECT,
+                SharpDrawable.selectMode(true, false, LOLLIPOP, true));
+    }
+
+    @Test
+    public void hardwareModeDependsOnTheApiLevel() {
+        assertEquals(SharpDrawable.MODE_RASTER,
+                SharpDrawable.selectMode(true, true, LOLLIPOP_MR1, false));
+        assertEquals(SharpDrawable.MODE_DIRECT,
+                SharpDrawable.selectMode(true, true, M, false));
+        assertEquals(SharpDrawable.MODE_DIRECT,
+                SharpDrawable.selectMode(true, true, P, false));
+        assertEquals(SharpDrawable.MODE_RENDER_NODE,
+                SharpDrawable.selectMode(true, true, Q, false));
+        assertEquals(SharpDrawable.MODE_RENDER_NODE,
+                SharpDrawable.selectMode(true, true, TIRAMISU, false));
+    }
+
+    @Test
+    public void contentThatNeedsSoftwareIsRasterized() {
+        assertEquals(SharpDrawable.MODE_RASTER,
+                SharpDrawable.selectMode(true, true, M, true));
+        assertEquals(SharpDrawable.MODE_RASTER,
+                SharpDrawable.selectMode(true, true, Q, true));
+    }
+
+    @Test
+    public void prepareViewSetsASoftwareLayer() {
+        View view = new View(RuntimeEnvironment.getApplication());
+        SharpDrawable.prepareView(view);
+        assertEquals(View.LAYER_TYPE_SOFTWARE, view.getLayerType());
+    }
+
+    @Test
+    public void prepareViewDoesNothingInHardwareMode() {
+        SharpDrawable.setHardwareModeEnabled(true);
+        View view = new View(RuntimeEnvironment.getApplication());
+        SharpDrawable.prepareView(view);
+        assertEquals(View.LAYER_TYPE_NONE, view.getLayerType());
+
+        Sharp.loadString(SVG).into(view);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(View.LAYER_TYPE_NONE, view.getLayerType());
+    }
+
+    @Test
+    public void tilingSwitchesItsViewToASoftwareLayer() {
+        SharpDrawable.setHardwareModeEnabled(true);
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        ImageView view = new ImageView(activity);
+        activity.setContentView(view);
+        SharpDrawable drawable = Sharp.loadString(SVG).getDrawable();
+        drawable.setTiling(true);
+        view.setImageDrawable(drawable);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(View.LAYER_TYPE_NONE, view.getLayerType());
+
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        drawable.draw(hardwareCanvas(bitmap));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(View.LAYER_TYPE_SOFTWARE, view.getLayerType());
+    }
+
+    @Test
+    public void tilingWithoutAViewOnAHardwareCanvasWarnsOnce() {
+        Sharp.setLogLevel(Sharp.LOG_LEVEL_WARN);
+        ShadowLog.clear();
+        SharpDrawable drawable = Sharp.loadString(SVG).getDrawable();
+        drawable.setTiling(true);
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        drawable.draw(hardwareCanvas(bitmap));
+        drawable.draw(hardwareCanvas(bitmap));
+        assertEquals(1, ShadowLog.getLogsForTag(Sharp.TAG).size());
+    }
+}
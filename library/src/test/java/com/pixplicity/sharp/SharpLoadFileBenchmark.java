@@ -0,0 +1,114 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link Sharp#loadFile(File, boolean)} with a mapped file against the
+ * {@link java.io.FileInputStream} of {@link Sharp#loadFile(File)} on a large file, both for
+ * reading the raw stream and for parsing it.
+ * <p>
+ * Wall-clock times flake on loaded machines, so the test task only runs this benchmark with
+ * <code>-Pbenchmarks</code>; {@link SharpLoadFileTest} checks that both load the same document.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpLoadFileBenchmark {
+
+    private static final int PATHS = 20000;
+    private static final int RUNS = 5;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * The time of reading the whole stream, in nanoseconds.
+     */
+    private static long timeRead(Sharp sharp) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        long start = System.nanoTime();
+        InputStream in = sharp.getInputStream();
+        try {
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer, 0, buffer.length) != -1) {
+            }
+        } finally {
+            sharp.close(in);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The time of a parse, in nanoseconds.
+     */
+    private static long timeParse(Sharp sharp) {
+        long start = System.nanoTime();
+        sharp.getSvgDocument();
+        return System.nanoTime() - start;
+    }
+
+    private static String throughput(long bytes, long nanos) {
+        return String.format("%.1f MB/s", bytes / (nanos / 1e9) / (1024 * 1024));
+    }
+
+    @Test
+    public void mappedFileIsAtLeastAsFastAsFileInputStream() throws IOException {
+        File file = SharpLoadFileTest.createSvg(mFolder.newFile("large.svg"), PATHS);
+        Sharp streamed = Sharp.loadFile(file);
+        Sharp mapped = Sharp.loadFile(file, true);
+
+        assertArrayEquals(SharpLoadFileTest.compile(streamed), SharpLoadFileTest.compile(mapped));
+
+        // Best of a few runs, alternating so that neither path gets all the warm-up
+        long streamedRead = Long.MAX_VALUE;
+        long mappedRead = Long.MAX_VALUE;
+        long streamedParse = Long.MAX_VALUE;
+        long mappedParse = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            streamedRead = Math.min(streamedRead, timeRead(streamed));
+            mappedRead = Math.min(mappedRead, timeRead(mapped));
+            streamedParse = Math.min(streamedParse, timeParse(streamed));
+            mappedParse = Math.min(mappedParse, timeParse(mapped));
+        }
+
+        // Generous margins, the point is to catch a mapped path that is clearly slower
+        assertTrue("Mapped read is slower: " + throughput(file.length(), mappedRead) + " vs "
+                + throughput(file.length(), streamedRead) + " streamed", mappedRead <= streamedRead * 2);
+        assertTrue("Mapped parse is slower: " + throughput(file.length(), mappedParse) + " vs "
+                + throughput(file.length(), streamedParse) + " streamed", mappedParse <= streamedParse * 1.5);
+    }
+}
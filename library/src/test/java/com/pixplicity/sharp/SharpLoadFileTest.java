@@ -0,0 +1,105 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Loads files through {@link Sharp#loadFile(File, boolean)} with and without mapping them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpLoadFileTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * A document of random squares, larger than the buffers of the streams.
+     */
+    static File createSvg(File file, int paths) throws IOException {
+        Random random = new Random(7);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 1000 1000\">");
+            for (int i = 0; i < paths; i++) {
+                out.write("<path fill=\"#" + Integer.toHexString(0x100000 + random.nextInt(0xefffff))
+                        + "\" d=\"M" + random.nextInt(1000) + " " + random.nextInt(1000)
+                        + " l10 0 0 10 -10 0 z\"/>\n");
+            }
+            out.write("</svg>");
+        }
+        return file;
+    }
+
+    static byte[] compile(Sharp sharp) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sharp.getSvgDocument().writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] read(Sharp sharp) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        InputStream in = sharp.getInputStream();
+        try {
+            int read;
+            while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            sharp.close(in);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void mappedFilesReadLikeStreamedFiles() throws IOException {
+        File file = createSvg(mFolder.newFile("squares.svg"), 2000);
+        Sharp streamed = Sharp.loadFile(file);
+        Sharp mapped = Sharp.loadFile(file, true);
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertArrayEquals(content, read(streamed));
+        assertArrayEquals(content, read(mapped));
+        assertArrayEquals(compile(streamed), compile(mapped));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times {@link Sharp#loadPath(String)} on paths of rotated arcs of growing length. Each arc is
+ * appended as a few cubics, so the time per arc stays the same however long the path is; a
+ * converter that transforms the whole path for every arc would grow with the square.
+ * <p>
+ * Wall-clock times flake on loaded machines, so the test task only runs this benchmark with
+ * <code>-Pbenchmarks</code>.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpLoadPathBenchmark {
+
+    private static final int SHORT_ARCS = 1000;
+    //路径长度的倍数, 二次方的耗时会增长这么多倍
+    private static final int GROWTH = 8;
+    private static final int RUNS = 7;
+
+    private static String arcs(int count) {
+        StringBuilder sb = new StringBuilder("M10 10");
+        for (int i = 0; i < count; i++) {
+            sb.append(" a").append(4 + i % 5).append(' ').append(3 + i % 3).append(' ').append(i % 180)
+                    .append(' ').append(i % 2).append(' ').append((i / 2) % 2)
+                    .append(i % 4 < 2 ? " 5 2" : " -3 4");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The best time of a few parses, in nanoseconds.
+     */
+    private static long time(String path) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Path parsed = Sharp.loadPath(path);
+            best = Math.min(best, System.nanoTime() - start);
+            RectF bounds = new RectF();
+            parsed.computeBounds(bounds, true);
+            assertTrue(bounds.width() > 0 && bounds.height() > 0);
+        }
+        return best;
+    }
+
+    @Test
+    public void timePerArcDoesNotGrowWithThePath() {
+        String shortPath = arcs(SHORT_ARCS);
+        String longPath = arcs(SHORT_ARCS * GROWTH);
+        // Warm up both
+        time(shortPath);
+        time(longPath);
+
+        double shortPerArc = (double) time(shortPath) / SHORT_ARCS;
+        double longPerArc = (double) time(longPath) / (SHORT_ARCS * GROWTH);
+
+        // Linear growth keeps the ratio near 1, quadratic growth near GROWTH
+        assertTrue(String.format("Time per arc grows with the path: %.0f ns for %d arcs, %.0f ns for %d arcs",
+                shortPerArc, SHORT_ARCS, longPerArc, SHORT_ARCS * GROWTH), longPerArc <= shortPerArc * 3);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpMipmapsTest {
+
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"100\">"
+            + "<rect x=\"10\" y=\"10\" width=\"80\" height=\"80\" fill=\"red\"/></svg>";
+
+    //100x100的ARGB_8888层级
+    private static final long LEVEL_SIZE = 100 * 100 * 4;
+
+    @Before
+    public void setUp() {
+        SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, SharpMipmaps.getGlobalSize());
+    }
+
+    @After
+    public void tearDown() {
+        SharpBitmapPool.uninstall(RuntimeEnvironment.getApplication());
+    }
+
+    private static SharpDrawable drawCached() {
+        SharpDrawable drawable = Sharp.loadString(SVG).getDrawable();
+        drawable.setCaching(true);
+        drawable.draw(new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888)));
+        return drawable;
+    }
+
+    /**
+     * A canvas that claims to record into a display list.
+     */
+    private static Canvas hardwareCanvas() {
+        return new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888)) {
+            @Override
+            public boolean isHardwareAccelerated() {
+                return true;
+            }
+        };
+    }
+
+    private static WeakReference<SharpDrawable> drawCachedAndForget() {
+        return new WeakReference<>(drawCached());
+    }
+
+    @Test
+    public void levelsDoNotKeepTheirDrawable() throws InterruptedException {
+        WeakReference<SharpDrawable> forgotten = drawCachedAndForget();
+        assertEquals(LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+
+        for (int i = 0; i < 50 && forgotten.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("The cache keeps a discarded drawable", forgotten.get());
+
+        // The collected drawable is noticed once its reference is enqueued
+        SharpDrawable kept = drawCached();
+        for (int i = 0; i < 50 && SharpMipmaps.getGlobalSize() != LEVEL_SIZE; i++) {
+            Thread.sleep(20);
+            SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        }
+        assertEquals(LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+        kept.setCaching(false);
+        assertEquals(0, SharpMipmaps.getGlobalSize());
+    }
+
+    @Test
+    public void trimMemoryDropsLevels() {
+        SharpDrawable first = drawCached();
+        SharpDrawable second = drawCached();
+        assertEquals(2 * LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+
+        SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(2 * LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+
+        SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+
+        SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(0, SharpMipmaps.getGlobalSize());
+
+        // Rendered again when drawn
+        first.draw(new Canvas(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888)));
+        assertEquals(LEVEL_SIZE, SharpMipmaps.getGlobalSize());
+        first.setCaching(false);
+        second.setCaching(false);
+        assertEquals(0, SharpMipmaps.getGlobalSize());
+    }
+
+    @Test
+    public void softwareDrawnLevelsArePooled() {
+        SharpBitmapPool pool = SharpBitmapPool.install(RuntimeEnvironment.getApplication(), 1024 * 1024);
+        SharpDrawable drawable = drawCached();
+        drawable.setCaching(false);
+        assertEquals(LEVEL_SIZE, pool.size());
+    }
+
+    @Test
+    public void hardwareDrawnLevelsAreNotPooled() {
+        SharpBitmapPool pool = SharpBitmapPool.install(RuntimeEnvironment.getApplication(), 1024 * 1024);
+        SharpDrawable drawable = drawCached();
+        drawable.draw(hardwareCanvas());
+        drawable.setCaching(false);
+        assertEquals(0, pool.size());
+
+        // Nor when the global cache evicts them, or when memory is trimmed
+        SharpDrawable.setGlobalCacheMaxSize(LEVEL_SIZE);
+        try {
+            SharpDrawable evicted = drawCached();
+            evicted.draw(hardwareCanvas());
+            SharpDrawable trimmed = drawCached();
+            trimmed.draw(hardwareCanvas());
+            assertEquals(0, pool.size());
+            SharpDrawable.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+            assertEquals(0, pool.size());
+            assertEquals(0, SharpMipmaps.getGlobalSize());
+        } finally {
+            SharpDrawable.setGlobalCacheMaxSize(SharpMipmaps.DEFAULT_GLOBAL_MAX_SIZE);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SharpParseFloatTest {
+
+    private static final float ABSENT = -1f;
+
+    @After
+    public void resetLogLevel() {
+        Sharp.setLogLevel(Sharp.LOG_LEVEL_ERROR);
+    }
+
+    @Test
+    public void parsesNumbersAndSupportedUnits() {
+        assertEquals(12.5f, Sharp.parseFloat(" 12.5 ", ABSENT), 0f);
+        assertEquals(10f, Sharp.parseFloat("10px", ABSENT), 0f);
+        assertEquals(0.5f, Sharp.parseFloat("50%", ABSENT), 0f);
+        assertEquals(96f * 100, Sharp.parseFloat("1in", ABSENT), 0.01f);
+        assertEquals(1e3f, Sharp.parseFloat("1e3", ABSENT), 0f);
+    }
+
+    @Test
+    public void unsupportedUnitsAreAbsent() {
+        assertEquals(ABSENT, Sharp.parseFloat("10pc", ABSENT), 0f);
+        assertEquals(ABSENT, Sharp.parseFloat("10foo", ABSENT), 0f);
+        assertEquals(ABSENT, Sharp.parseFloat("1em", ABSENT), 0f);
+        assertEquals(ABSENT, Sharp.parseFloat("2ex", ABSENT), 0f);
+        assertEquals(ABSENT, Sharp.parseFloat("px", ABSENT), 0f);
+    }
+
+    @Test
+    public void unsupportedUnitsAreLogged() {
+        Sharp.setLogLevel(Sharp.LOG_LEVEL_WARN);
+        ShadowLog.clear();
+        Sharp.parseFloat("10pc", ABSENT);
+        Sharp.parseFloat("1em", ABSENT);
+        assertEquals(2, ShadowLog.getLogsForTag(Sharp.TAG).size());
+        assertTrue(ShadowLog.getLogsForTag(Sharp.TAG).get(1).msg.contains("1em"));
+    }
+}
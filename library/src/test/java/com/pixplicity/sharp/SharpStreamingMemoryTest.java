@@ -0,0 +1,184 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap held while {@link Sharp#loadResource(Resources, int)} parses a large file,
+ * which streams the data to the parser instead of holding a copy of it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SharpStreamingMemoryTest {
+
+    private static final int MEGABYTE = 1024 * 1024;
+    //文件大小
+    private static final int FILE_SIZE = 16 * MEGABYTE;
+    //每读这么多字节测一次堆
+    private static final int SAMPLE_INTERVAL = MEGABYTE;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * A document padded with metadata, which the parser skips, so the parsed document is tiny.
+     */
+    private File createPaddedSvg() throws IOException {
+        File file = mFolder.newFile("padded.svg");
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 180; i++) {
+            padding.append((char) ('a' + i % 26));
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"100\">\n<metadata>\n");
+            long written = 0;
+            while (written < FILE_SIZE) {
+                String line = "<item value=\"" + padding + "\"/>\n";
+                out.write(line);
+                written += line.length();
+            }
+            out.write("</metadata>\n<rect x=\"10\" y=\"10\" width=\"80\" height=\"80\" fill=\"red\"/>\n</svg>");
+        }
+        return file;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * A stream that measures the heap in use every {@link #SAMPLE_INTERVAL} bytes read.
+     */
+    private static class SamplingInputStream extends FilterInputStream {
+
+        long mRead;
+        long mNextSample = SAMPLE_INTERVAL;
+        long mPeak;
+
+        SamplingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                onRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int r = super.read(b, off, len);
+            if (r > 0) {
+                onRead(r);
+            }
+            return r;
+        }
+
+        private void onRead(int count) {
+            mRead += count;
+            if (mRead >= mNextSample) {
+                mNextSample += SAMPLE_INTERVAL;
+                mPeak = Math.max(mPeak, usedHeap());
+            }
+        }
+    }
+
+    @Test
+    public void loadResourceDoesNotHoldTheFile() throws Exception {
+        final File file = createPaddedSvg();
+        Context context = RuntimeEnvironment.getApplication();
+        Resources base = context.getResources();
+        final SamplingInputStream[] opened = new SamplingInputStream[1];
+        @SuppressWarnings("deprecation")
+        final Resources resources = new Resources(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration()) {
+            @NonNull
+            @Override
+            public InputStream openRawResource(int resId) {
+                try {
+                    opened[0] = new SamplingInputStream(new FileInputStream(file));
+                    return opened[0];
+                } catch (FileNotFoundException e) {
+                    throw new NotFoundException(e.toString());
+                }
+            }
+        };
+
+        // Off the main thread, where loading used to copy the whole stream first
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long baseline = usedHeap();
+            SvgDocument document = executor.submit(new Callable<SvgDocument>() {
+                @Override
+                public SvgDocument call() {
+                    return Sharp.loadResource(resources, 1).getSvgDocument();
+                }
+            }).get(120, TimeUnit.SECONDS);
+            assertTrue("Metadata was kept", document.getByteCount() < 64 * 1024);
+
+            SamplingInputStream in = opened[0];
+            assertTrue("Read only " + in.mRead + " bytes", in.mRead >= FILE_SIZE);
+            long peak = in.mPeak - baseline;
+            assertTrue("Held " + peak + " bytes while parsing " + file.length() + " bytes",
+                    peak < file.length() / 8);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
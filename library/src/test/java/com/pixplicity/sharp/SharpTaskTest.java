@@ -0,0 +1,194 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.content.res.Resources;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Loads SVGs through {@link Sharp#getSharpPicture(Executor, long, Sharp.PictureCallback, Sharp.ErrorCallback)}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpTaskTest {
+
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20\" height=\"10\">"
+            + "<rect x=\"1\" y=\"1\" width=\"5\" height=\"5\"/></svg>";
+
+    /**
+     * Runs the loads when asked to, on the calling thread.
+     */
+    private static final class QueueExecutor implements Executor {
+
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : mQueue) {
+                command.run();
+            }
+            mQueue.clear();
+        }
+    }
+
+    private static final class Result implements Sharp.PictureCallback, Sharp.ErrorCallback {
+
+        SharpPicture mPicture;
+        SvgParseException mError;
+        int mCalls;
+
+        @Override
+        public void onPictureReady(SharpPicture sharpPicture) {
+            mPicture = sharpPicture;
+            mCalls++;
+        }
+
+        @Override
+        public void onError(SvgParseException e) {
+            mError = e;
+            mCalls++;
+        }
+    }
+
+    private static Result load(Sharp sharp, long timeoutMillis) {
+        QueueExecutor executor = new QueueExecutor();
+        Result result = new Result();
+        SharpTask task = sharp.getSharpPicture(executor, timeoutMillis, result, result);
+        assertFalse(task.isDone());
+        executor.runAll();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue(task.isDone());
+        return result;
+    }
+
+    @Test
+    public void picturesArriveOnTheMainThread() {
+        Result result = load(Sharp.loadString(SVG), 0);
+        assertEquals(1, result.mCalls);
+        assertNull(result.mError);
+        assertNotNull(result.mPicture);
+        assertEquals(20, result.mPicture.getPicture().getWidth());
+    }
+
+    @Test
+    public void parseErrorsReachTheErrorCallback() {
+        Result result = load(Sharp.loadString("<svg><path d=\"M0 0"), 0);
+        assertEquals(1, result.mCalls);
+        assertNull(result.mPicture);
+        assertNotNull(result.mError);
+    }
+
+    @Test
+    public void missingResourcesReachTheErrorCallback() {
+        Resources resources = RuntimeEnvironment.getApplication().getResources();
+        Result result = load(Sharp.loadResource(resources, 0x7f7fffff), 0);
+        assertEquals(1, result.mCalls);
+        assertNull(result.mPicture);
+        assertTrue(String.valueOf(result.mError.getCause()),
+                result.mError.getCause() instanceof Resources.NotFoundException);
+    }
+
+    @Test
+    public void missingStreamsReachTheErrorCallback() {
+        Result result = load(Sharp.loadInputStream((InputStream) null), 0);
+        assertEquals(1, result.mCalls);
+        assertTrue(String.valueOf(result.mError.getCause()),
+                result.mError.getCause() instanceof NullPointerException);
+    }
+
+    @Test
+    public void cancelledLoadsCallNothing() {
+        QueueExecutor executor = new QueueExecutor();
+        Result result = new Result();
+        SharpTask task = Sharp.loadString(SVG).getSharpPicture(executor, 0, result, result);
+        assertTrue(task.cancel());
+        executor.runAll();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(0, result.mCalls);
+        assertTrue(task.isCancelled());
+        assertTrue(task.isDone());
+    }
+
+    @Test
+    public void loadsCancelledAfterParsingCallNothing() {
+        QueueExecutor executor = new QueueExecutor();
+        Result result = new Result();
+        SharpTask task = Sharp.loadString(SVG).getSharpPicture(executor, 0, result, result);
+        executor.runAll();
+        assertTrue(task.cancel());
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(0, result.mCalls);
+    }
+
+    @Test
+    public void completedLoadsCannotBeCancelled() {
+        QueueExecutor executor = new QueueExecutor();
+        Result result = new Result();
+        SharpTask task = Sharp.loadString(SVG).getSharpPicture(executor, 0, result, result);
+        executor.runAll();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertFalse(task.cancel());
+        assertFalse(task.isCancelled());
+        assertEquals(1, result.mCalls);
+    }
+
+    @Test
+    public void timedOutLoadsReachTheErrorCallback() {
+        QueueExecutor executor = new QueueExecutor();
+        Result result = new Result();
+        SharpTask task = Sharp.loadString(SVG).getSharpPicture(executor, 100, result, result);
+        // Waits in the queue past its deadline
+        SystemClock.sleep(200);
+        executor.runAll();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(1, result.mCalls);
+        assertNull(result.mPicture);
+        assertEquals("Load timed out", result.mError.getMessage());
+        assertTrue(task.isDone());
+    }
+}
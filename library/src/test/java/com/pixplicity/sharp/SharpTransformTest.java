@@ -0,0 +1,160 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import android.graphics.Matrix;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Parses <code>transform</code> attributes and compares them with matrices composed by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SharpTransformTest {
+
+    //<editor-fold desc="手工组合的矩阵">
+
+    private static double[] matrix(double a, double b, double c, double d, double e, double f) {
+        return new double[]{a, c, e, b, d, f, 0, 0, 1};
+    }
+
+    private static double[] translate(double tx, double ty) {
+        return matrix(1, 0, 0, 1, tx, ty);
+    }
+
+    private static double[] scale(double sx, double sy) {
+        return matrix(sx, 0, 0, sy, 0, 0);
+    }
+
+    private static double[] rotate(double degrees) {
+        double r = Math.toRadians(degrees);
+        return matrix(Math.cos(r), Math.sin(r), -Math.sin(r), Math.cos(r), 0, 0);
+    }
+
+    private static double[] skewX(double degrees) {
+        return matrix(1, 0, Math.tan(Math.toRadians(degrees)), 1, 0, 0);
+    }
+
+    private static double[] skewY(double degrees) {
+        return matrix(1, Math.tan(Math.toRadians(degrees)), 0, 1, 0, 0);
+    }
+
+    /**
+     * The product of the matrices, applied to a point right to left as in a transform list.
+     */
+    private static double[] times(double[]... matrices) {
+        double[] result = translate(0, 0);
+        for (double[] m : matrices) {
+            double[] product = new double[9];
+            for (int row = 0; row < 3; row++) {
+                for (int col = 0; col < 3; col++) {
+                    for (int k = 0; k < 3; k++) {
+                        product[row * 3 + col] += result[row * 3 + k] * m[k * 3 + col];
+                    }
+                }
+            }
+            result = product;
+        }
+        return result;
+    }
+
+    //</editor-fold desc="手工组合的矩阵">
+
+    /**
+     * The transform that the parser gives a group with the transform attribute.
+     */
+    private static Matrix parse(String transform) {
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\">"
+                + "<g transform=\"" + transform + "\"><rect width=\"1\" height=\"1\"/></g></svg>";
+        SvgDocument document = Sharp.loadString(svg).getSvgDocument();
+        assertEquals(1, document.mNodes.size());
+        return document.mNodes.get(0).mMatrix;
+    }
+
+    private static void assertTransform(double[] expected, String transform) {
+        Matrix matrix = parse(transform);
+        assertNotNull(transform, matrix);
+        float[] values = new float[9];
+        matrix.getValues(values);
+        for (int i = 0; i < 9; i++) {
+            assertEquals(transform + " " + matrix + " [" + i + "]", expected[i], values[i], 1e-4);
+        }
+    }
+
+    @Test
+    public void singleTransforms() {
+        assertTransform(translate(10, 20), "translate(10 20)");
+        assertTransform(translate(10, 0), "translate(10)");
+        assertTransform(scale(2, 3), "scale(2,3)");
+        assertTransform(scale(2, 2), "scale(2)");
+        assertTransform(rotate(30), "rotate(30)");
+        assertTransform(times(translate(10, 5), rotate(45), translate(-10, -5)), "rotate(45 10 5)");
+        assertTransform(matrix(1, 2, 3, 4, 5, 6), "matrix(1 2 3 4 5 6)");
+    }
+
+    @Test
+    public void skewsTakeDegrees() {
+        assertTransform(skewX(30), "skewX(30)");
+        assertTransform(skewY(-20), "skewY(-20)");
+        assertTransform(times(skewX(10), skewY(20)), "skewX(10) skewY(20)");
+    }
+
+    @Test
+    public void listsComposeInDocumentOrder() {
+        assertTransform(times(translate(10, 20), rotate(30), translate(-5, -6)),
+                "translate(10 20) rotate(30) translate(-5 -6)");
+        assertTransform(times(scale(2, 2), scale(3, 4), translate(1, 0), translate(2, 3)),
+                "scale(2) scale(3 4) translate(1) translate(2,3)");
+        assertTransform(times(rotate(90), translate(5, 0), rotate(-30)),
+                "rotate(90),translate(5)  ,  rotate(-30)");
+    }
+
+    @Test
+    public void matrixAfterOtherTransforms() {
+        assertTransform(times(translate(5, 5), matrix(1, 2, 3, 4, 5, 6), scale(2, 2)),
+                "translate(5,5) matrix(1 2 3 4 5 6) scale(2)");
+        assertTransform(times(rotate(30), matrix(0.5, 0, 0, 0.5, 7, 8), matrix(1, 0, 1, 1, 0, 0)),
+                "rotate(30) matrix(0.5,0,0,0.5,7,8) matrix(1 0 1 1 0 0)");
+    }
+
+    @Test
+    public void invalidTransformsEndTheList() {
+        assertNull(parse("rotate("));
+        assertNull(parse("matrix(1 2 3)"));
+        assertNull(parse("foo(1)"));
+        assertNull(parse("rotate()"));
+        assertTransform(translate(10, 0), "translate(10) rotate(");
+        assertTransform(scale(2, 2), "scale(2) foo(3) translate(4)");
+        assertTransform(scale(2, 2), "scale(2) translate(1 2");
+    }
+}
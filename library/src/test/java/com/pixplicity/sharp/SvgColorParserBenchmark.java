@@ -0,0 +1,114 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the bytes that {@link SvgColorParser#get(String)} allocates on cache hits, with the
+ * allocation counter of the current thread.
+ */
+public class SvgColorParserBenchmark {
+
+    private static final String[] COLORS = {
+            "#f00", "#ff000080", "#336699", "rgb(12, 34, 56)", "rgba(10%, 20%, 30%, 0.5)",
+            "hsl(120deg 50% 25%)", "hsla(200, 40%, 60%, .3)", "cornflowerblue", " red ", "transparent",
+    };
+    private static final int WARM_UP = 200000;
+    private static final int HITS = 1000000;
+
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("No allocation counter", threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue("No allocation counter", counter.isThreadAllocatedMemorySupported());
+        counter.setThreadAllocatedMemoryEnabled(true);
+        return counter;
+    }
+
+    /**
+     * Copies of the colors, as the XML parser hands out a new string for every attribute.
+     */
+    private static String[] copies() {
+        String[] copies = new String[COLORS.length];
+        for (int i = 0; i < COLORS.length; i++) {
+            copies[i] = new String(COLORS[i].toCharArray());
+        }
+        return copies;
+    }
+
+    private static int hit(SvgColorParser parser, String[] colors, int count) {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += parser.get(colors[i % colors.length]);
+        }
+        return sum;
+    }
+
+    private static int miss(String[] colors, int count) {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += SvgColorParser.parse(colors[i % colors.length]);
+        }
+        return sum;
+    }
+
+    @Test
+    public void cacheHitsAllocateNothing() {
+        com.sun.management.ThreadMXBean counter = threads();
+        long thread = Thread.currentThread().getId();
+        SvgColorParser parser = new SvgColorParser();
+        String[] colors = copies();
+        for (int i = 0; i < COLORS.length; i++) {
+            assertSame(parser.get(COLORS[i]), parser.get(colors[i]));
+        }
+        // Compiled before measuring, so the interpreter does not count
+        hit(parser, colors, WARM_UP);
+        miss(colors, WARM_UP);
+
+        long before = counter.getThreadAllocatedBytes(thread);
+        long overhead = counter.getThreadAllocatedBytes(thread) - before;
+        before = counter.getThreadAllocatedBytes(thread);
+        int hits = hit(parser, colors, HITS);
+        long hitBytes = counter.getThreadAllocatedBytes(thread) - before - overhead;
+
+        before = counter.getThreadAllocatedBytes(thread);
+        int misses = miss(colors, HITS);
+        long missBytes = counter.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals(misses, hits);
+        // A single allocation per hit would be 16 MB
+        assertTrue("Cache hits allocated " + hitBytes + " bytes for " + HITS + " hits", hitBytes < 1024);
+        assertTrue("Parses allocated only " + missBytes + " bytes for " + HITS + " parses", missBytes > HITS);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Feeds truncated and corrupted compiled documents to the reader, which must fail with
+ * {@link SvgParseException} and nothing else.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SvgDocumentReaderTest {
+
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 100 100\">"
+            + "<defs><linearGradient id=\"g\"><stop offset=\"0\" stop-color=\"red\"/>"
+            + "<stop offset=\"1\" stop-color=\"blue\"/></linearGradient></defs>"
+            + "<g id=\"group\" opacity=\"0.5\" transform=\"rotate(10)\">"
+            + "<path id=\"p\" d=\"M10 10 L90 10 Q50 50 90 90 C70 80 30 80 10 90 Z\" fill=\"url(#g)\""
+            + " stroke=\"black\" stroke-dasharray=\"2,1\"/>"
+            + "<rect x=\"5\" y=\"5\" width=\"10\" height=\"10\" rx=\"2\"/>"
+            + "</g>"
+            + "<text x=\"1 2 3\" y=\"50\" font-family=\"serif\">abc</text>"
+            + "</svg>";
+
+    private byte[] mCompiled;
+
+    @Before
+    public void compile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sharp.loadString(SVG).getSvgDocument().writeTo(out);
+        mCompiled = out.toByteArray();
+    }
+
+    private static void assertFailsCleanly(byte[] data, String what) {
+        try {
+            SvgDocumentReader.read(ByteBuffer.wrap(data), null);
+        } catch (SvgParseException e) {
+            return;
+        } catch (Throwable t) {
+            throw new AssertionError(what + " failed with " + t, t);
+        }
+        fail(what + " was read");
+    }
+
+    /**
+     * Reads corrupt data, which may happen to still be a valid document.
+     */
+    private static void assertReadsOrFailsCleanly(byte[] data, String what) {
+        try {
+            SvgDocumentReader.read(ByteBuffer.wrap(data), null);
+        } catch (SvgParseException e) {
+            // Detected
+        } catch (Throwable t) {
+            throw new AssertionError(what + " failed with " + t, t);
+        }
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgDocumentReader.read(ByteBuffer.wrap(mCompiled), null).writeTo(out);
+        assertArrayEquals(mCompiled, out.toByteArray());
+    }
+
+    @Test
+    public void imagesKeepTheirEncodedData() throws IOException {
+        Bitmap photo = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        Random random = new Random(42);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                photo.setPixel(x, y, Color.rgb(random.nextInt(256), x * 4, y * 4));
+            }
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        assertTrue(photo.compress(Bitmap.CompressFormat.JPEG, 80, jpeg));
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 16 16\">"
+                + "<image width=\"16\" height=\"16\" href=\"data:image/jpeg;base64,"
+                + Base64.encodeToString(jpeg.toByteArray(), Base64.NO_WRAP) + "\"/></svg>";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Sharp.loadString(svg).getSvgDocument().writeTo(out);
+        byte[] compiled = out.toByteArray();
+        assertTrue("The JPEG is stored as is", indexOf(compiled, jpeg.toByteArray()) >= 0);
+        assertTrue("Compiled to " + compiled.length + " bytes",
+                compiled.length < jpeg.size() + 1024);
+
+        SvgDocument document = SvgDocumentReader.read(ByteBuffer.wrap(compiled), null);
+        SvgNode.Image image = (SvgNode.Image) document.mNodes.get(0);
+        // Decoded at the same quarter size as when parsing
+        assertEquals(16, image.mBitmap.getWidth());
+        assertEquals(16, image.mBitmap.getHeight());
+    }
+
+    @Test
+    public void truncatedDocumentsFail() {
+        for (int length = 0; length < mCompiled.length; length++) {
+            assertFailsCleanly(Arrays.copyOf(mCompiled, length), "Truncated at " + length);
+        }
+    }
+
+    @Test
+    public void corruptLengthsFail() {
+        // Every int in the data set to values that allocate too much, or a negative size
+        int[] values = {Integer.MAX_VALUE, Integer.MIN_VALUE, -2, 0x10000000, 1 << 20};
+        for (int offset = 6; offset + 4 <= mCompiled.length; offset++) {
+            for (int value : values) {
+                byte[] data = mCompiled.clone();
+                ByteBuffer.wrap(data).putInt(offset, value);
+                assertReadsOrFailsCleanly(data, "Int " + value + " at " + offset);
+            }
+        }
+    }
+
+    @Test
+    public void randomCorruptionFailsCleanly() {
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            byte[] data = mCompiled.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int f = 0; f < flips; f++) {
+                // Keep the header, which is checked first anyway
+                int offset = 6 + random.nextInt(data.length - 6);
+                data[offset] = (byte) random.nextInt(256);
+            }
+            assertReadsOrFailsCleanly(data, "Corruption " + i);
+        }
+    }
+
+    @Test
+    public void compiledStreamsAreChecked() {
+        byte[] data = mCompiled.clone();
+        // The length of the view box string
+        byte[] viewBox = "0 0 100 100".getBytes(SvgDocumentReader.UTF_8);
+        int offset = indexOf(data, viewBox) - 4;
+        assertTrue(offset > 0);
+        ByteBuffer.wrap(data).putInt(offset, Integer.MAX_VALUE);
+        try {
+            Sharp.loadInputStream(new ByteArrayInputStream(data)).getSvgDocument();
+            fail("Corrupt compiled stream was read");
+        } catch (SvgParseException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void corruptStoredDocumentsAreParsedAgain() throws IOException {
+        Context context = RuntimeEnvironment.getApplication();
+        SharpCompiledStore.install(context, new SharpCompiledStore.Index() {
+            @Override
+            public String getRawHash(@NonNull String name) {
+                return name;
+            }
+
+            @Override
+            public String getAssetHash(@NonNull String path) {
+                return null;
+            }
+        });
+        try {
+            byte[] corrupt = mCompiled.clone();
+            ByteBuffer.wrap(corrupt).putInt(corrupt.length / 2, Integer.MIN_VALUE);
+            File dir = new File(context.getCodeCacheDir(), "sharp-compiled");
+            assertTrue(dir.isDirectory() || dir.mkdirs());
+            File file = new File(dir, "corrupt.v" + SvgDocumentReader.VERSION + ".shrp");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(corrupt);
+            }
+
+            Resources base = context.getResources();
+            @SuppressWarnings("deprecation")
+            Resources resources = new Resources(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration()) {
+                @NonNull
+                @Override
+                public String getResourceTypeName(int resId) {
+                    return "raw";
+                }
+
+                @NonNull
+                @Override
+                public String getResourceEntryName(int resId) {
+                    return "corrupt";
+                }
+
+                @NonNull
+                @Override
+                public InputStream openRawResource(int resId) {
+                    return new ByteArrayInputStream(SVG.getBytes(SvgDocumentReader.UTF_8));
+                }
+            };
+            Sharp sharp = Sharp.loadResource(resources, 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            sharp.getSvgDocument().writeTo(out);
+            assertArrayEquals(mCompiled, out.toByteArray());
+            // Replaced by the newly parsed document
+            byte[] stored = new byte[(int) file.length()];
+            try (FileInputStream in = new FileInputStream(file)) {
+                assertEquals(stored.length, in.read(stored));
+            }
+            assertArrayEquals(mCompiled, stored);
+        } finally {
+            SharpCompiledStore.uninstall();
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i + part.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + part.length), part)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
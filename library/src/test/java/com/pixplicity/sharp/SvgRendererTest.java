@@ -0,0 +1,160 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+package com.pixplicity.sharp;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.angcyo.svg.DrawElement;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SvgRendererTest {
+
+    private static final String SVG = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"100\">"
+            + "<rect id=\"r\" x=\"10\" y=\"10\" width=\"20\" height=\"20\" fill=\"red\" stroke=\"blue\"/>"
+            + "<path id=\"p\" d=\"M0 0 L50 50\" stroke=\"green\"/>"
+            + "<text id=\"t\" x=\"5\" y=\"90\" fill=\"black\" stroke=\"white\" font-size=\"12\">Hello</text>"
+            + "</svg>";
+
+    /**
+     * Modifies everything it is handed.
+     */
+    private static class VandalListener implements OnSvgElementListener {
+
+        boolean mSawText;
+
+        @Override
+        public void onSvgStart(@NonNull Canvas canvas, @Nullable RectF bounds) {
+        }
+
+        @Override
+        public void onSvgEnd(@NonNull Canvas canvas, @Nullable RectF bounds) {
+        }
+
+        @Override
+        public <T> T onSvgElement(@Nullable String id, @NonNull T element, @Nullable RectF elementBounds,
+                                  @NonNull Canvas canvas, @Nullable RectF canvasBounds, @Nullable Paint paint) {
+            if (paint != null) {
+                paint.setColor(Color.MAGENTA);
+                paint.setStrokeWidth(42f);
+                paint.setTextSize(99f);
+            }
+            if (elementBounds != null) {
+                elementBounds.set(1, 2, 3, 4);
+            }
+            if (element instanceof RectF) {
+                ((RectF) element).offset(100, 100);
+            }
+            if (element instanceof Sharp.SvgHandler.SvgText) {
+                Sharp.SvgHandler.SvgText text = (Sharp.SvgHandler.SvgText) element;
+                mSawText = true;
+                text.text = "Vandalized";
+                text.xOffset = 50;
+                text.hAlign = Sharp.SvgHandler.SvgText.RIGHT;
+                text.bounds.set(7, 7, 7, 7);
+                if (text.fill != null) {
+                    text.fill.setColor(Color.CYAN);
+                }
+                if (text.stroke != null) {
+                    text.stroke.setColor(Color.CYAN);
+                }
+            }
+            return element;
+        }
+
+        @Override
+        public <T> void onSvgElementDrawn(@Nullable String id, @NonNull T element, @NonNull Canvas canvas,
+                                          @Nullable Paint paint) {
+        }
+
+        @Override
+        public boolean onCanvasDraw(@NonNull Canvas canvas, @NonNull DrawElement drawElement) {
+            if (drawElement.paint != null) {
+                drawElement.paint.setAlpha(0);
+            }
+            return false;
+        }
+    }
+
+    private static byte[] compile(SvgDocument document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void listenersCannotModifyTheDocument() throws IOException {
+        SvgDocument document = Sharp.loadString(SVG).getSvgDocument();
+        byte[] before = compile(document);
+
+        VandalListener listener = new VandalListener();
+        document.getSharpPicture(listener);
+        document.getSharpPicture(listener);
+
+        assertTrue(listener.mSawText);
+        assertArrayEquals(before, compile(document));
+    }
+
+    @Test
+    public void polygonDataIsOnlyBuiltForListeners() {
+        SvgDocument document = Sharp.loadString("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\">"
+                + "<polygon points=\"1,2 3,4 5,6\"/><polyline points=\"1 2 3 4\" fill=\"none\" stroke=\"red\"/></svg>")
+                .getSvgDocument();
+        for (SvgNode node : document.mNodes) {
+            assertNull(((SvgNode.Shape) node).mData);
+        }
+
+        final List<String> data = new ArrayList<>();
+        document.getSharpPicture(new VandalListener() {
+            @Override
+            public boolean onCanvasDraw(@NonNull Canvas canvas, @NonNull DrawElement drawElement) {
+                data.add(drawElement.data);
+                return false;
+            }
+        });
+        assertEquals(Arrays.asList("M1.0,2.0L3.0,4.0L5.0,6.0Z", "M1.0,2.0L3.0,4.0"), data);
+    }
+}
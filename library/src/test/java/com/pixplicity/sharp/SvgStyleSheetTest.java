@@ -0,0 +1,162 @@
+/*
+    Copyright 2011, 2015 Pixplicity, Larva Labs LLC and Google, Inc.
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+    Sharp is heavily based on prior work. It was originally forked from
+        https://github.com/pents90/svg-android
+    And changes from other forks have been consolidated:
+        https://github.com/b2renger/svg-android
+        https://github.com/mindon/svg-android
+        https://github.com/josefpavlik/svg-android
+ */
+
+
+package com.pixplicity.sharp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Resolves stylesheet rules and the cascade of {@link SvgAttributes}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SvgStyleSheetTest {
+
+    private static SvgStyleSheet sheet(String css) {
+        SvgStyleSheet sheet = new SvgStyleSheet();
+        sheet.parse(css);
+        return sheet;
+    }
+
+    private static String fill(SvgStyleSheet sheet, String tag, String id, String classes) {
+        Map<String, String> style = sheet.resolve(tag, id, classes);
+        return style == null ? null : style.get("fill");
+    }
+
+    private static SvgAttributes element(SvgStyleSheet sheet, String tag, String... attributes) {
+        AttributesImpl impl = new AttributesImpl();
+        for (int i = 0; i < attributes.length; i += 2) {
+            impl.addAttribute("", attributes[i], attributes[i], "CDATA", attributes[i + 1]);
+        }
+        return new SvgAttributes().reset(impl, tag, sheet);
+    }
+
+    @Test
+    public void moreSpecificRulesWin() {
+        String[] orders = {
+                ".st0 { fill: red } path.st0 { fill: green } #p { fill: blue }",
+                "#p { fill: blue } path.st0 { fill: green } .st0 { fill: red }",
+        };
+        for (String css : orders) {
+            SvgStyleSheet sheet = sheet(css);
+            assertEquals(css, "blue", fill(sheet, "path", "p", "st0"));
+            assertEquals(css, "green", fill(sheet, "path", "q", "st0"));
+            assertEquals(css, "red", fill(sheet, "rect", null, "st0"));
+            assertEquals(css, "blue", fill(sheet, "rect", "p", null));
+            assertNull(css, fill(sheet, "rect", null, "st1"));
+        }
+    }
+
+    @Test
+    public void compoundsCountEveryPart() {
+        SvgStyleSheet sheet = sheet(".a.b { fill: green } path.a { fill: red } * { fill: gray }");
+        assertEquals("green", fill(sheet, "path", null, "b a"));
+        assertEquals("red", fill(sheet, "path", null, "a"));
+        assertEquals("gray", fill(sheet, "circle", null, "b"));
+    }
+
+    @Test
+    public void laterRulesWinAtEqualSpecificity() {
+        assertEquals("green", fill(sheet(".a { fill: red } .b { fill: green }"), "path", null, "a b"));
+        assertEquals("red", fill(sheet(".b { fill: green } .a { fill: red }"), "path", null, "a b"));
+        // Also across style elements
+        SvgStyleSheet sheet = sheet(".a { fill: red }");
+        sheet.parse(".a { fill: green }");
+        assertEquals("green", fill(sheet, "path", null, "a"));
+    }
+
+    @Test
+    public void declarationsOfMatchingRulesAreMerged() {
+        SvgStyleSheet sheet = sheet("path { fill: red; stroke: black } .a { fill: green }");
+        Map<String, String> style = sheet.resolve("path", null, "a");
+        assertNotNull(style);
+        assertEquals("green", style.get("fill"));
+        assertEquals("black", style.get("stroke"));
+    }
+
+    @Test
+    public void groupedSelectorsAddARulePerSelector() {
+        SvgStyleSheet sheet = sheet("rect, .c ,#i,path.d { stroke: black }");
+        assertEquals("black", sheet.resolve("rect", null, null).get("stroke"));
+        assertEquals("black", sheet.resolve("circle", null, "c").get("stroke"));
+        assertEquals("black", sheet.resolve("circle", "i", null).get("stroke"));
+        assertEquals("black", sheet.resolve("path", null, "d").get("stroke"));
+        assertNull(sheet.resolve("circle", null, "d"));
+    }
+
+    @Test
+    public void atRulesAndUnsupportedSelectorsAreSkipped() {
+        SvgStyleSheet sheet = sheet("@import url(other.css); path { fill: red }"
+                + " @media print { path { fill: blue } rect { fill: blue } }"
+                + " @font-face { font-family: x; src: url(x.ttf) }"
+                + " /* rect { fill: blue } */ rect { fill: green }"
+                + " g > circle, circle:hover, circle[r] { fill: blue } circle.c { fill: yellow }");
+        assertEquals("red", fill(sheet, "path", null, null));
+        assertEquals("green", fill(sheet, "rect", null, null));
+        assertNull(fill(sheet, "circle", null, null));
+        assertEquals("yellow", fill(sheet, "circle", null, "c"));
+    }
+
+    @Test
+    public void styleBeatsStylesheetBeatsAttributes() {
+        SvgStyleSheet sheet = sheet(".st0 { fill: red; stroke: black }");
+        SvgAttributes atts = element(sheet, "path", "class", "st0", "fill", "yellow",
+                "stroke-width", "2", "style", "stroke: blue");
+        assertEquals("red", atts.getComputed("fill"));
+        assertEquals("blue", atts.getComputed("stroke"));
+        assertEquals("2", atts.getComputed("stroke-width"));
+        assertEquals("yellow", atts.get("fill"));
+
+        atts = element(sheet, "path", "class", "st0", "fill", "yellow", "style", "fill: green");
+        assertEquals("green", atts.getComputed("fill"));
+        assertEquals("black", atts.getComputed("stroke"));
+
+        atts = element(sheet, "path", "fill", "yellow");
+        assertEquals("yellow", atts.getComputed("fill"));
+        assertNull(atts.getComputed("stroke"));
+    }
+
+    @Test
+    public void elementsWithTheSameClassesShareTheirStyle() {
+        SvgStyleSheet sheet = sheet("path { stroke: black } .a { fill: red } .b { fill: green } #x { fill: blue }");
+        Map<String, String> first = sheet.resolve("path", "one", "a b");
+        assertSame(first, sheet.resolve("path", "two", "a b"));
+        assertSame(first, sheet.resolve("path", null, "a b"));
+        // An id some rule selects has a style of its own
+        assertEquals("blue", fill(sheet, "path", "x", "a b"));
+        assertEquals("green", first.get("fill"));
+        // A new style element invalidates the resolved styles
+        sheet.parse(".a { fill: yellow } .b { fill: yellow }");
+        assertEquals("yellow", fill(sheet, "path", "one", "a b"));
+    }
+}